@@ -19,7 +19,11 @@
  */
 package io.wcm.caravan.hal.comparison;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 import org.osgi.annotation.versioning.ProviderType;
+import org.reactivestreams.Publisher;
 
 import io.wcm.caravan.hal.resource.HalResource;
 import rx.Observable;
@@ -39,4 +43,43 @@ public interface HalComparison {
    * @return an {@link Observable} that emits one {@link HalDifference} object for each difference that was detected
    */
   Observable<HalDifference> compare(HalComparisonSource expected, HalComparisonSource actual, HalComparisonStrategy strategy);
+
+  /**
+   * Recursively crawl and compare the linked and embedded {@link HalResource}s from two different HAL API entry points,
+   * but only as fast as the subscriber requests the differences: linked resources are only resolved and compared while
+   * there is outstanding demand, so the memory usage doesn't depend on the size of the crawl. Each subscription starts
+   * a new comparison. If {@link HalComparisonStrategy#getMaxConcurrentLinkResolutions()} is greater than 1, the
+   * differences of the linked resources that are compared at the same time are buffered to keep them in order.
+   * @param expected a {@link HalComparisonSource} that provides the ground truth for the comparison
+   * @param actual a {@link HalComparisonSource} that provides the resources that should be compared with the expected
+   *          resources
+   * @param strategy can be implemented to limit the crawling and comparison depth (e.g. ignore specific link relations)
+   * @return a Reactive Streams {@link Publisher} that emits one {@link HalDifference} object for each difference that
+   *         was detected
+   */
+  Publisher<HalDifference> publishDifferences(HalComparisonSource expected, HalComparisonSource actual, HalComparisonStrategy strategy);
+
+  /**
+   * Recursively crawl and compare the linked and embedded {@link HalResource}s from two different HAL API entry points,
+   * but skip the comparison of linked resources that haven't changed since the previous run. For each pair of linked
+   * resources (including the entry points) whose content is the same as in the previous run, the differences of that
+   * run are emitted again, and only the links that were followed in the previous run are followed again (so that
+   * changes further down the tree are still detected).
+   * @param expected a {@link HalComparisonSource} that provides the ground truth for the comparison
+   * @param actual a {@link HalComparisonSource} that provides the resources that should be compared with the expected
+   *          resources
+   * @param strategy can be implemented to limit the crawling and comparison depth (e.g. ignore specific link relations)
+   * @param history the results of the previous run, which is updated when the comparison completes
+   * @return an {@link Observable} that emits one {@link HalDifference} object for each difference that was detected
+   */
+  Observable<HalDifference> compare(HalComparisonSource expected, HalComparisonSource actual, HalComparisonStrategy strategy,
+      HalComparisonHistory history);
+
+  /**
+   * @param file a file that was written with {@link HalComparisonHistory#save()} (if it doesn't exist, an empty history
+   *          is created)
+   * @return the history to use for incremental comparisons
+   * @throws IOException if the file exists but can't be read
+   */
+  HalComparisonHistory loadHistory(Path file) throws IOException;
 }
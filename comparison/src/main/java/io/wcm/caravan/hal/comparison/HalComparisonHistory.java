@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison;
+
+import java.io.IOException;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Keeps the results of the previous comparison run, so that pairs of linked resources which haven't changed since
+ * then don't have to be compared again. Instances are loaded with {@link HalComparison#loadHistory(java.nio.file.Path)}
+ * and updated whenever a comparison that was started with
+ * {@link HalComparison#compare(HalComparisonSource, HalComparisonSource, HalComparisonStrategy, HalComparisonHistory)}
+ * completes successfully. If links were not followed because a crawl budget of the strategy was used up, the pairs of
+ * the previous run that were not reached are kept in the history.
+ * <p>
+ * A history is only valid for a single {@link HalComparisonStrategy}, because the differences of unchanged resources
+ * are carried over from the previous run. If a comparison is started with a strategy that has a different
+ * {@link HalComparisonStrategy#getHistoryKey()} (e.g. of a different class, or with a changed configuration), the
+ * pairs in the history are not reused.
+ * </p>
+ */
+@ProviderType
+public interface HalComparisonHistory {
+
+  /**
+   * @return the number of pairs of resources (identified by their expected and actual URL) in the history
+   */
+  int getPairCount();
+
+  /**
+   * @return the number of pairs in the last run that were not compared again, because both resources were unchanged
+   */
+  int getReusedPairCount();
+
+  /**
+   * @return the number of pairs in the last run that were compared (because they were new or had changed)
+   */
+  int getRecomparedPairCount();
+
+  /**
+   * Writes the history to the file from which it was loaded
+   * @throws IOException if the file can't be written
+   */
+  void save() throws IOException;
+
+}
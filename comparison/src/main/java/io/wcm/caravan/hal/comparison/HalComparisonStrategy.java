@@ -19,6 +19,7 @@
  */
 package io.wcm.caravan.hal.comparison;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +27,9 @@ import java.util.function.Function;
 
 import org.osgi.annotation.versioning.ConsumerType;
 
+import io.wcm.caravan.hal.comparison.util.BloomFilterVisitedUrlSet;
+import io.wcm.caravan.hal.comparison.util.FingerprintVisitedUrlSet;
+import io.wcm.caravan.hal.comparison.util.VisitedUrlSet;
 import io.wcm.caravan.hal.resource.HalResource;
 import io.wcm.caravan.hal.resource.Link;
 
@@ -87,4 +91,86 @@ public interface HalComparisonStrategy {
     return null;
   }
 
+  /**
+   * Can be implemented by the service consumer to resolve and compare multiple pairs of linked resources at the same
+   * time. The differences are still emitted in the same order as with sequential processing, but if the same resource
+   * is linked from multiple locations, it may be compared in the context of a different link.
+   * @return the maximum number of linked resource pairs that are resolved at the same time (default is 1)
+   */
+  default int getMaxConcurrentLinkResolutions() {
+    return 1;
+  }
+
+  /**
+   * Can be implemented by the service consumer to change how the URLs of the resources that were already compared are
+   * stored. By default, an exact set of 128 bit URL fingerprints is used. For very large crawls, a
+   * {@link BloomFilterVisitedUrlSet} uses less memory, but skips a few resources that weren't compared yet.
+   * @return a new set (this method is called once for each comparison)
+   * @see FingerprintVisitedUrlSet
+   */
+  default VisitedUrlSet createVisitedUrlSet() {
+    return new FingerprintVisitedUrlSet();
+  }
+
+  /**
+   * Can be implemented by the service consumer to limit how deep the crawler follows links. If any links were not
+   * followed, a {@link HalDifference} with change type {@link HalDifference.ChangeType#INCOMPLETE} is emitted at the
+   * end of the comparison.
+   * @return the maximum number of relations in the HAL path of a linked resource (default is unlimited)
+   */
+  default int getMaxHalPathDepth() {
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Can be implemented by the service consumer to limit the number of resources that are loaded from each source
+   * (including the entry point). When the limit is reached, no more links are followed, and a {@link HalDifference}
+   * with change type {@link HalDifference.ChangeType#INCOMPLETE} is emitted at the end of the comparison.
+   * @return the maximum number of resources to resolve from each source (default is unlimited)
+   */
+  default int getMaxResourcesPerSource() {
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Can be implemented by the service consumer to limit the duration of a comparison. When the time is used up, no
+   * more links are followed (but the resources that are already being loaded are still compared), and a
+   * {@link HalDifference} with change type {@link HalDifference.ChangeType#INCOMPLETE} is emitted at the end of the
+   * comparison.
+   * @return the time budget for the comparison, starting with the subscription (default is null for no time budget)
+   */
+  default Duration getMaxDuration() {
+    return null;
+  }
+
+  /**
+   * Can be implemented by the service consumer to limit the load on the services that provide the resources. Requests
+   * that exceed the rate are delayed.
+   * @return the maximum number of requests per second for each source (default is unlimited)
+   */
+  default double getMaxRequestsPerSecond() {
+    return Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Embedded resources with exactly the same content in both trees are not compared property by property, but the links
+   * within them are still followed. This can be implemented by the service consumer to skip these links as well (which
+   * is faster if the same resources are embedded in many places, and linked from elsewhere anyway).
+   * @return false if links in identical embedded resources should not be followed (default is true)
+   */
+  default boolean followLinksInIdenticalEmbeddedResources() {
+    return true;
+  }
+
+  /**
+   * The differences of unchanged resources are carried over from a {@link HalComparisonHistory}, so a history is only
+   * reused by comparisons with a strategy that has the same key. This should be implemented by the service consumer if
+   * the rules of the strategy can be configured (e.g. by including a version or hash of the configuration), so that a
+   * history of a run with a different configuration is discarded automatically.
+   * @return a key that identifies the rules of this strategy (default is the class name)
+   */
+  default String getHistoryKey() {
+    return getClass().getName();
+  }
+
 }
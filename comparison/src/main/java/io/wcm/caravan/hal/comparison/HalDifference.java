@@ -83,9 +83,11 @@ public interface HalDifference {
   }
 
   /**
-   * defines the different types of modifications that can be detected
+   * defines the different types of modifications that can be detected. {@link #INCOMPLETE} is not a modification, but
+   * is reported at the end of the comparison if links were not followed because a crawl budget of the
+   * {@link HalComparisonStrategy} was used up
    */
   enum ChangeType {
-    ADDITIONAL, MISSING, MODIFIED, REORDERED
+    ADDITIONAL, MISSING, MODIFIED, REORDERED, INCOMPLETE
   }
 }
@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+import io.wcm.caravan.hal.comparison.HalComparisonContext;
+import io.wcm.caravan.hal.comparison.impl.context.HalComparisonContextImpl;
+import io.wcm.caravan.hal.resource.HalResource;
+
+/**
+ * The context of a difference that was carried over from a previous run, located relative to the context of the linked
+ * resource in which it was found.
+ */
+class CarriedOverContext implements HalComparisonContext {
+
+  private final HalComparisonContextImpl pairContext;
+  private final String halPathSuffix;
+  private final List<String> relations;
+  private final List<String> propertyNames;
+
+  CarriedOverContext(HalComparisonContextImpl pairContext, String halPathSuffix, List<String> relationSuffix, List<String> propertyNames) {
+    this.pairContext = pairContext;
+    this.halPathSuffix = halPathSuffix;
+    this.relations = ImmutableList.<String>builder().addAll(pairContext.getAllRelations()).addAll(relationSuffix).build();
+    this.propertyNames = ImmutableList.copyOf(propertyNames);
+  }
+
+  @Override
+  public String getLastRelation() {
+    return relations.isEmpty() ? "" : relations.get(relations.size() - 1);
+  }
+
+  @Override
+  public List<String> getAllRelations() {
+    return relations;
+  }
+
+  @Override
+  public HalResource getParentResourceWithRelation(String relation) {
+    // the resources within the linked resource are not available, because they were not compared again
+    return pairContext.getParentResourceWithRelation(relation);
+  }
+
+  @Override
+  public String getLastProperyName() {
+    return propertyNames.isEmpty() ? "" : propertyNames.get(propertyNames.size() - 1);
+  }
+
+  @Override
+  public List<String> getAllPropertyNames() {
+    return propertyNames;
+  }
+
+  @Override
+  public String getExpectedUrl() {
+    return pairContext.getExpectedUrl();
+  }
+
+  @Override
+  public String getActualUrl() {
+    return pairContext.getActualUrl();
+  }
+
+  @Override
+  public String toString() {
+    return pairContext.toString() + halPathSuffix;
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import rx.Observable;
+import rx.Subscriber;
+
+/**
+ * Limits the number of source {@link Observable}s that are subscribed at the same time: additional subscriptions are
+ * queued, and the next queued source is subscribed as soon as another one terminates or is unsubscribed.
+ */
+class ConcurrencyLimiter {
+
+  private final int maxConcurrent;
+
+  private final Queue<Runnable> queue = new ArrayDeque<>();
+  private int active;
+
+  /**
+   * @param maxConcurrent the maximum number of sources that are subscribed at the same time
+   */
+  ConcurrencyLimiter(int maxConcurrent) {
+    if (maxConcurrent < 1) {
+      throw new IllegalArgumentException("maxConcurrent must be at least 1, but was " + maxConcurrent);
+    }
+    this.maxConcurrent = maxConcurrent;
+  }
+
+  /**
+   * @param source the observable to limit
+   * @param <T> emission type
+   * @return an observable that subscribes to the source when a slot is available
+   */
+  <T> Observable<T> limit(Observable<T> source) {
+    return Observable.create(subscriber -> {
+      AtomicBoolean released = new AtomicBoolean();
+      Runnable release = () -> {
+        if (released.compareAndSet(false, true)) {
+          startNext();
+        }
+      };
+      acquire(() -> subscribe(source, subscriber, release));
+    });
+  }
+
+  private <T> void subscribe(Observable<T> source, Subscriber<? super T> subscriber, Runnable release) {
+    if (subscriber.isUnsubscribed()) {
+      release.run();
+      return;
+    }
+    source
+        .doOnTerminate(release::run)
+        .doOnUnsubscribe(release::run)
+        .unsafeSubscribe(subscriber);
+  }
+
+  private void acquire(Runnable start) {
+    synchronized (queue) {
+      if (active >= maxConcurrent) {
+        queue.add(start);
+        return;
+      }
+      active++;
+    }
+    start.run();
+  }
+
+  private void startNext() {
+    Runnable next;
+    synchronized (queue) {
+      next = queue.poll();
+      if (next == null) {
+        active--;
+        return;
+      }
+    }
+    // the slot is handed over to the next queued source
+    next.run();
+  }
+
+}
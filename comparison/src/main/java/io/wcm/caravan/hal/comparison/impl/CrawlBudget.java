@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.wcm.caravan.hal.comparison.HalComparisonStrategy;
+import io.wcm.caravan.hal.comparison.HalDifference;
+import io.wcm.caravan.hal.comparison.HalDifference.ChangeType;
+import io.wcm.caravan.hal.comparison.HalDifference.EntityType;
+import io.wcm.caravan.hal.comparison.impl.context.HalComparisonContextImpl;
+import io.wcm.caravan.hal.comparison.impl.difference.HalDifferenceImpl;
+import io.wcm.caravan.hal.resource.Link;
+import rx.Observable;
+
+/**
+ * Keeps track of the crawl budgets configured in the {@link HalComparisonStrategy} for a single comparison, decides
+ * whether a link can still be followed, and creates the {@link ChangeType#INCOMPLETE} differences that explain why
+ * links were not followed.
+ */
+class CrawlBudget {
+
+  private final int maxHalPathDepth;
+  private final int maxResourcesPerSource;
+  private final Duration maxDuration;
+
+  // the entry points are always resolved
+  private final AtomicInteger resolvedResources = new AtomicInteger(1);
+  private volatile long startNanos;
+
+  private final Map<Reason, SkippedLinks> skippedLinks = new EnumMap<>(Reason.class);
+
+  /**
+   * @param strategy provides the budgets
+   */
+  CrawlBudget(HalComparisonStrategy strategy) {
+    this(strategy.getMaxHalPathDepth(), strategy.getMaxResourcesPerSource(), strategy.getMaxDuration());
+  }
+
+  CrawlBudget(int maxHalPathDepth, int maxResourcesPerSource, Duration maxDuration) {
+    this.maxHalPathDepth = maxHalPathDepth;
+    this.maxResourcesPerSource = maxResourcesPerSource;
+    this.maxDuration = maxDuration;
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Restarts the clock for the time budget (when the comparison is actually started)
+   */
+  void start() {
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * @param newContext the context of the linked resources
+   * @param pair the links to follow
+   * @return true if the linked resources are within the maximum HAL path depth
+   */
+  boolean isWithinDepth(HalComparisonContextImpl newContext, PairWithRelation<Link> pair) {
+    if (newContext.getAllRelations().size() <= maxHalPathDepth) {
+      return true;
+    }
+    skip(Reason.MAX_HAL_PATH_DEPTH, newContext, pair);
+    return false;
+  }
+
+  /**
+   * Must be called immediately before the linked resources are resolved
+   * @param newContext the context of the linked resources
+   * @param pair the links to follow
+   * @return true if there is enough time and resource budget left to resolve the linked resources
+   */
+  boolean tryResolve(HalComparisonContextImpl newContext, PairWithRelation<Link> pair) {
+    if (maxDuration != null && System.nanoTime() - startNanos >= maxDuration.toNanos()) {
+      skip(Reason.MAX_DURATION, newContext, pair);
+      return false;
+    }
+    if (resolvedResources.getAndIncrement() >= maxResourcesPerSource) {
+      skip(Reason.MAX_RESOURCES, newContext, pair);
+      return false;
+    }
+    return true;
+  }
+
+  private void skip(Reason reason, HalComparisonContextImpl newContext, PairWithRelation<Link> pair) {
+    synchronized (skippedLinks) {
+      skippedLinks.computeIfAbsent(reason, r -> new SkippedLinks(newContext, pair)).count++;
+    }
+  }
+
+  /**
+   * @return true if any links were not followed because a budget was used up
+   */
+  boolean hasSkippedLinks() {
+    synchronized (skippedLinks) {
+      return !skippedLinks.isEmpty();
+    }
+  }
+
+  /**
+   * @return an observable that emits one difference for each budget that was used up, and is meant to be appended to
+   *         the end of the comparison
+   */
+  Observable<HalDifference> createDifferencesForSkippedLinks() {
+    return Observable.defer(() -> {
+      synchronized (skippedLinks) {
+        return Observable.from(skippedLinks.entrySet().stream()
+            .map(entry -> entry.getValue().toDifference(entry.getKey()))
+            .toArray(HalDifference[]::new));
+      }
+    });
+  }
+
+  private String describe(Reason reason, int count) {
+    String notFollowed = " (" + count + " link" + (count == 1 ? " was" : "s were") + " not followed)";
+    switch (reason) {
+      case MAX_HAL_PATH_DEPTH:
+        return "Links beyond the maximum HAL path depth of " + maxHalPathDepth + " were not compared" + notFollowed;
+      case MAX_RESOURCES:
+        return "The comparison was stopped after " + maxResourcesPerSource + " resources were resolved from each source" + notFollowed;
+      default:
+        return "The comparison was stopped after the time budget of " + maxDuration.toMillis() + "ms was used up" + notFollowed;
+    }
+  }
+
+  /**
+   * The budgets that can be used up (in the order in which the differences are emitted)
+   */
+  private enum Reason {
+    MAX_HAL_PATH_DEPTH, MAX_RESOURCES, MAX_DURATION
+  }
+
+  /**
+   * The first link that was not followed for a specific reason, and how many links were not followed in total
+   */
+  private final class SkippedLinks {
+
+    private final HalComparisonContextImpl context;
+    private final PairWithRelation<Link> pair;
+    private int count;
+
+    SkippedLinks(HalComparisonContextImpl context, PairWithRelation<Link> pair) {
+      this.context = context;
+      this.pair = pair;
+    }
+
+    HalDifference toDifference(Reason reason) {
+      return new HalDifferenceImpl(context, ChangeType.INCOMPLETE, EntityType.LINK,
+          pair.getExpected().getModel(), pair.getActual().getModel(), describe(reason, count));
+    }
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.wcm.caravan.hal.comparison.HalComparisonHistory;
+import io.wcm.caravan.hal.comparison.HalComparisonStrategy;
+
+/**
+ * Implementation of {@link HalComparisonHistory} that stores the {@link PairRecord}s of the last completed run as a
+ * JSON file. The {@link HalComparisonStrategy#getHistoryKey()} of the strategy that was used is stored as well, and the
+ * pairs are not reused if a comparison is started with a strategy that has a different key.
+ */
+class HalComparisonHistoryImpl implements HalComparisonHistory {
+
+  private static final int FORMAT_VERSION = 1;
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final Path file;
+
+  private volatile Map<String, PairRecord> pairs;
+  private volatile String strategyFingerprint;
+  private volatile int reusedPairCount;
+  private volatile int recomparedPairCount;
+
+  private HalComparisonHistoryImpl(Path file, Map<String, PairRecord> pairs, String strategyFingerprint) {
+    this.file = file;
+    this.pairs = pairs;
+    this.strategyFingerprint = strategyFingerprint;
+  }
+
+  /**
+   * @param file to read the history from
+   * @return the history from the given file, or an empty history if the file doesn't exist
+   * @throws IOException if the file exists but can't be read
+   */
+  static HalComparisonHistoryImpl load(Path file) throws IOException {
+    if (!Files.exists(file)) {
+      return new HalComparisonHistoryImpl(file, Collections.emptyMap(), null);
+    }
+
+    JsonNode json;
+    try (InputStream is = Files.newInputStream(file)) {
+      json = OBJECT_MAPPER.readTree(is);
+    }
+    if (json == null || json.path("version").asInt() != FORMAT_VERSION) {
+      throw new IOException("Unsupported comparison history format in " + file);
+    }
+
+    Map<String, PairRecord> pairs = new HashMap<>();
+    Iterator<Map.Entry<String, JsonNode>> fields = json.path("pairs").fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      pairs.put(field.getKey(), PairRecord.fromJson(field.getValue()));
+    }
+    return new HalComparisonHistoryImpl(file, pairs, json.path("strategy").asText(null));
+  }
+
+  @Override
+  public void save() throws IOException {
+    ObjectNode json = OBJECT_MAPPER.createObjectNode();
+    json.put("version", FORMAT_VERSION);
+    json.put("strategy", strategyFingerprint);
+    ObjectNode pairsJson = json.putObject("pairs");
+    pairs.forEach((key, record) -> pairsJson.set(key, record.toJson()));
+
+    try (OutputStream os = Files.newOutputStream(file)) {
+      OBJECT_MAPPER.writeValue(os, json);
+    }
+  }
+
+  @Override
+  public int getPairCount() {
+    return pairs.size();
+  }
+
+  @Override
+  public int getReusedPairCount() {
+    return reusedPairCount;
+  }
+
+  @Override
+  public int getRecomparedPairCount() {
+    return recomparedPairCount;
+  }
+
+  /**
+   * @param strategy the strategy of the new run
+   * @param digests used to calculate the hashes of the compared resources
+   * @return a new run that uses the current history (unless it was created with a strategy that has a different key),
+   *         and replaces it when it is completed
+   */
+  synchronized IncrementalRun startRun(HalComparisonStrategy strategy, SubtreeDigests digests) {
+    String fingerprint = strategy.getHistoryKey();
+    Map<String, PairRecord> previousPairs = Objects.equals(fingerprint, strategyFingerprint) ? pairs : Collections.emptyMap();
+    return new IncrementalRun(this, previousPairs, fingerprint, digests);
+  }
+
+  /**
+   * @param newPairs the pairs that were compared (or reused) in the run
+   * @param newStrategyFingerprint identifies the strategy that was used in the run
+   * @param reused number of pairs that were reused
+   * @param recompared number of pairs that were compared again
+   */
+  synchronized void onRunCompleted(Map<String, PairRecord> newPairs, String newStrategyFingerprint, int reused, int recompared) {
+    this.pairs = newPairs;
+    this.strategyFingerprint = newStrategyFingerprint;
+    this.reusedPairCount = reused;
+    this.recomparedPairCount = recompared;
+  }
+
+}
@@ -19,9 +19,14 @@
  */
 package io.wcm.caravan.hal.comparison.impl;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 import org.osgi.service.component.annotations.Component;
+import org.reactivestreams.Publisher;
 
 import io.wcm.caravan.hal.comparison.HalComparison;
+import io.wcm.caravan.hal.comparison.HalComparisonHistory;
 import io.wcm.caravan.hal.comparison.HalComparisonSource;
 import io.wcm.caravan.hal.comparison.HalComparisonStrategy;
 import io.wcm.caravan.hal.comparison.HalDifference;
@@ -49,21 +54,74 @@ public class HalComparisonImpl implements HalComparison {
 
   @Override
   public Observable<HalDifference> compare(HalComparisonSource expected, HalComparisonSource actual, HalComparisonStrategy strategy) {
+    return startComparison(expected, actual, strategy, null);
+  }
+
+  @Override
+  public Observable<HalDifference> compare(HalComparisonSource expected, HalComparisonSource actual, HalComparisonStrategy strategy,
+      HalComparisonHistory history) {
+
+    if (!(history instanceof HalComparisonHistoryImpl)) {
+      throw new IllegalArgumentException("The history must be loaded with HalComparison#loadHistory");
+    }
+
+    // a new run is started for each subscription, and the history is only updated if the comparison completes
+    return Observable.defer(() -> startComparison(expected, actual, strategy, (HalComparisonHistoryImpl)history));
+  }
+
+  @Override
+  public HalComparisonHistory loadHistory(Path file) throws IOException {
+    return HalComparisonHistoryImpl.load(file);
+  }
+
+  private Observable<HalDifference> startComparison(HalComparisonSource expected, HalComparisonSource actual, HalComparisonStrategy strategy,
+      HalComparisonHistoryImpl history) {
 
-    HalComparisonRecursionImpl recursion = wireImplementationClasses(expected, actual, strategy);
+    HalComparisonSource limitedExpected = limitRequestRate(expected, strategy);
+    HalComparisonSource limitedActual = limitRequestRate(actual, strategy);
+
+    CrawlBudget budget = new CrawlBudget(strategy);
+    SubtreeDigests digests = new SubtreeDigests();
+    IncrementalRun run = history != null ? history.startRun(strategy, digests) : null;
+
+    HalComparisonRecursionImpl recursion = wireImplementationClasses(limitedExpected, limitedActual, strategy, budget, run, digests);
+
+    HalComparisonContextImpl context = createContextForEntryPoint(limitedExpected, limitedActual, strategy);
+
+    Observable<HalDifference> diffs = loadEntryPointsAndStartRecursion(recursion, context, limitedExpected, limitedActual)
+        // explain at the very end if the comparison is incomplete because any of the budgets was used up
+        .concatWith(budget.createDifferencesForSkippedLinks())
+        .doOnSubscribe(budget::start);
+
+    return run != null ? diffs.doOnCompleted(() -> run.complete(!budget.hasSkippedLinks())) : diffs;
+  }
+
+  @Override
+  public Publisher<HalDifference> publishDifferences(HalComparisonSource expected, HalComparisonSource actual, HalComparisonStrategy strategy) {
+
+    // the state of the recursion must not be shared if the publisher is subscribed multiple times
+    return new ObservablePublisher<>(Observable.defer(() -> compare(expected, actual, strategy)));
+  }
 
-    HalComparisonContextImpl context = createContextForEntryPoint(expected, actual, strategy);
+  private HalComparisonSource limitRequestRate(HalComparisonSource source, HalComparisonStrategy strategy) {
 
-    return loadEntryPointsAndStartRecursion(recursion, context, expected, actual);
+    double maxRequestsPerSecond = strategy.getMaxRequestsPerSecond();
+    if (maxRequestsPerSecond == Double.POSITIVE_INFINITY) {
+      return source;
+    }
+    return new RateLimitedHalComparisonSource(source, maxRequestsPerSecond);
   }
 
-  private HalComparisonRecursionImpl wireImplementationClasses(HalComparisonSource expected, HalComparisonSource actual, HalComparisonStrategy strategy) {
+  private HalComparisonRecursionImpl wireImplementationClasses(HalComparisonSource expected, HalComparisonSource actual, HalComparisonStrategy strategy,
+      CrawlBudget budget, IncrementalRun run, SubtreeDigests digests) {
 
     PropertyProcessing propertyProcessing = new PropertyDiffDetector();
     EmbeddedProcessing embeddedProcessing = new EmbeddedProcessingImpl(strategy);
     LinkProcessing linkProcessing = new LinkProcessingImpl(strategy);
 
-    return new HalComparisonRecursionImpl(expected, actual, propertyProcessing, embeddedProcessing, linkProcessing);
+    return new HalComparisonRecursionImpl(expected, actual, propertyProcessing, embeddedProcessing, linkProcessing,
+        strategy.getMaxConcurrentLinkResolutions(), strategy.createVisitedUrlSet(), budget, run,
+        digests, strategy.followLinksInIdenticalEmbeddedResources());
   }
 
   private HalComparisonContextImpl createContextForEntryPoint(HalComparisonSource expected, HalComparisonSource actual, HalComparisonStrategy strategy) {
@@ -81,8 +139,10 @@ public class HalComparisonImpl implements HalComparison {
     Single<HalResource> actualEntryPoint = actual.resolveLink(context.getActualUrl());
 
     // wait until both entry points are loaded before starting the comparison
-    return expectedEntryPoint.zipWith(actualEntryPoint, (e, a) -> recursion.compareRecursively(context, e, a))
-        // flatten the Single<Observable<HalDifference>> returned by zipWith
-        .flatMapObservable(r -> r);
+    return expectedEntryPoint.zipWith(actualEntryPoint, (e, a) -> recursion.compareResolvedPair(context, e, a))
+        // flatten the Single<Observable<HalDifference>> returned by zipWith (with concatMap, because it respects
+        // backpressure)
+        .toObservable()
+        .concatMap(r -> r);
   }
 }
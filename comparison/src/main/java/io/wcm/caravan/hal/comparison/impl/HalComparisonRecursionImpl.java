@@ -19,10 +19,9 @@
  */
 package io.wcm.caravan.hal.comparison.impl;
 
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+
+import org.apache.commons.lang3.tuple.Pair;
 
 import io.wcm.caravan.hal.comparison.HalComparisonContext;
 import io.wcm.caravan.hal.comparison.HalComparisonSource;
@@ -31,9 +30,13 @@ import io.wcm.caravan.hal.comparison.impl.context.HalComparisonContextImpl;
 import io.wcm.caravan.hal.comparison.impl.embedded.EmbeddedProcessing;
 import io.wcm.caravan.hal.comparison.impl.links.LinkProcessing;
 import io.wcm.caravan.hal.comparison.impl.properties.PropertyProcessing;
+import io.wcm.caravan.hal.comparison.util.FingerprintVisitedUrlSet;
+import io.wcm.caravan.hal.comparison.util.VisitedUrlSet;
 import io.wcm.caravan.hal.resource.HalResource;
 import io.wcm.caravan.hal.resource.Link;
 import rx.Observable;
+import rx.functions.Func1;
+import rx.subscriptions.CompositeSubscription;
 
 /**
  * Implements the main recursion logic and asynchronous loading of resources (but delegates the actual comparison via
@@ -48,10 +51,31 @@ public class HalComparisonRecursionImpl {
   private final EmbeddedProcessing embeddedProcessing;
   private final LinkProcessing linkProcessing;
 
-  private final Set<String> expectedUrlsToIgnore = Collections.synchronizedSet(new HashSet<>());
+  private final int maxConcurrency;
+  private final ConcurrencyLimiter limiter;
+
+  private final VisitedUrlSet expectedUrlsToIgnore;
+
+  private final CrawlBudget budget;
+
+  private final IncrementalRun incrementalRun;
+
+  private final SubtreeDigests digests;
+  private final boolean followLinksInIdenticalEmbedded;
 
   HalComparisonRecursionImpl(HalComparisonSource expectedSource, HalComparisonSource actualSource,
       PropertyProcessing propertyProcessing, EmbeddedProcessing embeddedProcessing, LinkProcessing linkProcessing) {
+    this(expectedSource, actualSource, propertyProcessing, embeddedProcessing, linkProcessing, 1, new FingerprintVisitedUrlSet(),
+        new CrawlBudget(Integer.MAX_VALUE, Integer.MAX_VALUE, null), null, null, true);
+  }
+
+  HalComparisonRecursionImpl(HalComparisonSource expectedSource, HalComparisonSource actualSource,
+      PropertyProcessing propertyProcessing, EmbeddedProcessing embeddedProcessing, LinkProcessing linkProcessing,
+      int maxConcurrency, VisitedUrlSet expectedUrlsToIgnore, CrawlBudget budget, IncrementalRun incrementalRun,
+      SubtreeDigests digests, boolean followLinksInIdenticalEmbedded) {
+
+    this.maxConcurrency = maxConcurrency;
+    this.limiter = maxConcurrency > 1 ? new ConcurrencyLimiter(maxConcurrency) : null;
 
     this.expectedSource = expectedSource;
     this.actualSource = actualSource;
@@ -60,7 +84,52 @@ public class HalComparisonRecursionImpl {
     this.embeddedProcessing = embeddedProcessing;
     this.linkProcessing = linkProcessing;
 
+    this.expectedUrlsToIgnore = expectedUrlsToIgnore;
     this.expectedUrlsToIgnore.add(expectedSource.getEntryPointUrl());
+
+    this.budget = budget;
+    this.incrementalRun = incrementalRun;
+
+    this.digests = digests;
+    this.followLinksInIdenticalEmbedded = followLinksInIdenticalEmbedded;
+  }
+
+  /**
+   * Compares a pair of linked resources (or the entry points). For incremental comparisons, the differences and
+   * followed links of the previous run are reused if both resources haven't changed since then.
+   * @param context of the linked resources
+   * @param expected the "ground truth" resource
+   * @param actual the resource to be compared against the ground truth
+   * @return an {@link Observable} that emits one {@link HalDifference} object for each difference that was detected in
+   *         the given resources (and its linked/embedded resources)
+   */
+  Observable<HalDifference> compareResolvedPair(HalComparisonContextImpl context, HalResource expected, HalResource actual) {
+
+    if (incrementalRun == null) {
+      return compareRecursively(context, expected, actual);
+    }
+
+    PairRecord unchanged = incrementalRun.findUnchanged(context, expected, actual);
+    if (unchanged == null) {
+      return compareRecursively(context, expected, actual)
+          .doOnNext(diff -> incrementalRun.onDifference(context, diff))
+          .doOnCompleted(() -> incrementalRun.onPairCompleted(context));
+    }
+
+    return Observable.defer(() -> {
+      ignoreEmbeddedSelfLinks(expected);
+
+      Observable<HalDifference> carriedOverDiffs = Observable.from(unchanged.getDifferences())
+          .map(diff -> diff.toDifference(context));
+
+      // the linked resources may have changed, so the links have to be followed again
+      Observable<LinkedPair> linksToFollow = Observable.from(unchanged.getLinks())
+          .map(link -> link.resolve(context, expected))
+          .filter(link -> link != null)
+          .map(link -> new LinkedPair(link.getContext(), link.getParentOfExpected(), link.getPair()));
+
+      return carriedOverDiffs.concatWith(followLinks(linksToFollow));
+    });
   }
 
   /**
@@ -75,16 +144,43 @@ public class HalComparisonRecursionImpl {
    */
   public Observable<HalDifference> compareRecursively(HalComparisonContextImpl context, HalResource expected, HalResource actual) {
 
-    // don't follow links to any resources later that are already embedded (and have a self link) in the current resource
-    expected.collectLinks("self").stream()
-        .map(Link::getHref)
-        .forEach(url -> expectedUrlsToIgnore.add(url));
+    ignoreEmbeddedSelfLinks(expected);
+
+    if (digests != null && digests.isIdentical(expected, actual)) {
+      // there can't be any differences in identical resources, but the links within them still have to be followed
+      return followLinksInIdenticalResource(context, expected);
+    }
 
     return collectLocalDifferences(context, expected, actual)
         .concatWith(collectEmbeddedDifferences(context, expected, actual))
         .concatWith(collectLinkedDifferences(context, expected, actual));
   }
 
+  private Observable<HalDifference> followLinksInIdenticalResource(HalComparisonContextImpl context, HalResource resource) {
+
+    if (!digests.containsLinks(resource)) {
+      return Observable.empty();
+    }
+
+    if (!followLinksInIdenticalEmbedded) {
+      // the strategy opted out of following the links of identical embedded resources
+      return collectLinkedDifferences(context, resource, resource);
+    }
+
+    // the processing is still required to apply the strategy's rules to the embedded resources and links
+    Observable<HalDifference> diffsFromEmbedded = embeddedProcessing.process(context, resource, resource).getPairsToCompare()
+        .concatMap(pair -> followLinksInIdenticalResource(context.withHalPathOfEmbeddedResource(pair, resource), pair.getExpected()));
+
+    return diffsFromEmbedded.concatWith(collectLinkedDifferences(context, resource, resource));
+  }
+
+  private void ignoreEmbeddedSelfLinks(HalResource expected) {
+    // don't follow links to any resources later that are already embedded (and have a self link) in the current resource
+    expected.collectLinks("self").stream()
+        .map(Link::getHref)
+        .forEach(url -> expectedUrlsToIgnore.add(url));
+  }
+
   Observable<HalDifference> collectLocalDifferences(HalComparisonContextImpl context, HalResource expected, HalResource actual) {
 
     List<HalDifference> diffs = propertyProcessing.process(context, expected, actual);
@@ -105,6 +201,10 @@ public class HalComparisonRecursionImpl {
   private Observable<HalDifference> recurseWithEmbeddedResourcePair(HalComparisonContextImpl context, HalResource expected,
       PairWithRelation<HalResource> pair) {
 
+    if (!followLinksInIdenticalEmbedded && digests != null && digests.isIdentical(pair.getExpected(), pair.getActual())) {
+      return Observable.empty();
+    }
+
     HalComparisonContextImpl newContext = context.withHalPathOfEmbeddedResource(pair, expected);
 
     return compareRecursively(newContext, pair.getExpected(), pair.getActual());
@@ -114,37 +214,131 @@ public class HalComparisonRecursionImpl {
 
     ProcessingResult<Link> processingResult = linkProcessing.process(context, expected, actual);
 
-    Observable<HalDifference> diffsFromRecursion = processingResult.getPairsToCompare()
-        .filter(pair -> !expectedUrlsToIgnore.contains(pair.getExpected().getHref()))
-        .concatMap(pair -> recurseWithLinkedResourcePair(context, expected, pair));
+    Observable<PairWithRelation<Link>> pairsToCompare = processingResult.getPairsToCompare();
+    if (incrementalRun != null) {
+      // all links are recorded (even if they were already visited), because they might not be visited first next time
+      pairsToCompare = pairsToCompare.doOnNext(pair -> incrementalRun.onLinkToFollow(context, pair));
+    }
+
+    Observable<HalDifference> diffsFromRecursion = followLinks(pairsToCompare.map(pair -> new LinkedPair(context, expected, pair)));
 
     return processingResult.getDifferences().concatWith(diffsFromRecursion);
   }
 
-  private Observable<HalDifference> recurseWithLinkedResourcePair(HalComparisonContextImpl context, HalResource parentOfExpected, PairWithRelation<Link> pair) {
-
-    String expectedUrl = pair.getExpected().getHref();
-    String actualUrl = pair.getActual().getHref();
-
-    expectedUrlsToIgnore.add(expectedUrl);
-
-    HalComparisonContextImpl newContext = context
-        .withHalPathOfLinkedResource(pair, parentOfExpected)
-        .withNewExpectedUrl(expectedUrl)
-        .withNewActualUrl(actualUrl);
-
-    Observable<HalResource> expectedObs = resolveLinkAndAddContextToErrors(
-        expectedSource, expectedUrl, context.getExpectedUrl(), newContext);
-
-    Observable<HalResource> actualObs = resolveLinkAndAddContextToErrors(
-        actualSource, actualUrl, context.getActualUrl(), newContext);
-
-    return expectedObs
-        // wait for both resources to be retrieved before they can be compared
-        .zipWith(actualObs, (expectedResource, actualResource) -> compareRecursively(newContext, expectedResource, actualResource))
-        // then flatten the Observable<Observable<HalDifference>> returned by zipWith
-        .flatMap(diffs -> diffs);
+  /**
+   * Follows the given links in the same order as {@link Observable#concatMap(Func1)}. The URLs are claimed in the order
+   * of the links before any of them is followed, so it doesn't depend on the timing of concurrent resolutions through
+   * which link a resource that is linked several times is compared. If concurrent link resolution is enabled, the
+   * resources of up to {@link #maxConcurrency} links ahead are resolved while the current link is being followed, but
+   * the recursion into those resources only starts when it is their turn.
+   */
+  private Observable<HalDifference> followLinks(Observable<LinkedPair> links) {
+
+    return links
+        .filter(LinkedPair::claim)
+        .toList()
+        .concatMap(list -> {
+          if (limiter == null) {
+            return Observable.from(list).concatMap(LinkedPair::follow);
+          }
+          return Observable.using(CompositeSubscription::new,
+              prefetches -> Observable.range(0, list.size()).concatMap(index -> Observable.defer(() -> {
+                for (int ahead = index + 1; ahead < Math.min(list.size(), index + maxConcurrency); ahead++) {
+                  list.get(ahead).prefetch(prefetches);
+                }
+                return list.get(index).follow();
+              })),
+              CompositeSubscription::unsubscribe);
+        });
+  }
 
+  /**
+   * A pair of links that is to be followed, and the resources that were already resolved ahead of time
+   */
+  private final class LinkedPair {
+
+    private final HalComparisonContextImpl context;
+    private final PairWithRelation<Link> pair;
+    private final HalComparisonContextImpl newContext;
+
+    private Observable<Pair<HalResource, HalResource>> prefetched;
+
+    LinkedPair(HalComparisonContextImpl context, HalResource parentOfExpected, PairWithRelation<Link> pair) {
+      this.context = context;
+      this.pair = pair;
+      this.newContext = context
+          .withHalPathOfLinkedResource(pair, parentOfExpected)
+          .withNewExpectedUrl(pair.getExpected().getHref())
+          .withNewActualUrl(pair.getActual().getHref());
+    }
+
+    /**
+     * @return false if the linked resource was already visited (or is not to be followed at all)
+     */
+    boolean claim() {
+      String expectedUrl = pair.getExpected().getHref();
+      if (expectedUrlsToIgnore.contains(expectedUrl)) {
+        return false;
+      }
+
+      // a resource that is too deep here may still be reached through a shorter path, so it's not marked as visited
+      if (!budget.isWithinDepth(newContext, pair)) {
+        return false;
+      }
+
+      expectedUrlsToIgnore.add(expectedUrl);
+      return true;
+    }
+
+    /**
+     * Starts resolving the linked resources, and keeps them until {@link #follow()} is called
+     * @param prefetches to which the subscription is added (so it can be cancelled)
+     */
+    void prefetch(CompositeSubscription prefetches) {
+      if (prefetched == null) {
+        prefetched = resolve().cache();
+        // any errors are only handled when it's this pair's turn to be followed
+        prefetches.add(prefetched.subscribe(resources -> {
+          // only the cached resources are used
+        }, ex -> {
+          // the error is emitted again in #follow
+        }));
+      }
+    }
+
+    Observable<HalDifference> follow() {
+      Observable<Pair<HalResource, HalResource>> resolvedPair = prefetched != null ? prefetched : resolve();
+
+      // concatMap (rather than flatMap) forwards the downstream demand to the recursion, so that further links are only
+      // resolved when the differences found so far have been requested
+      return resolvedPair
+          .concatMap(resources -> compareResolvedPair(newContext, resources.getLeft(), resources.getRight()));
+    }
+
+    private Observable<Pair<HalResource, HalResource>> resolve() {
+
+      // wait for both resources to be retrieved before they can be compared, but check the time and resource budgets
+      // (and ask the sources for the resources) only when the resources are actually about to be resolved
+      Observable<Pair<HalResource, HalResource>> resolvedPair = Observable.defer(() -> {
+        if (!budget.tryResolve(newContext, pair)) {
+          return Observable.empty();
+        }
+
+        Observable<HalResource> expectedObs = resolveLinkAndAddContextToErrors(
+            expectedSource, pair.getExpected().getHref(), context.getExpectedUrl(), newContext);
+
+        Observable<HalResource> actualObs = resolveLinkAndAddContextToErrors(
+            actualSource, pair.getActual().getHref(), context.getActualUrl(), newContext);
+
+        return expectedObs.zipWith(actualObs, Pair::of);
+      });
+
+      if (limiter != null) {
+        // the limit only applies while the resources are resolved, not to the recursion that follows
+        resolvedPair = limiter.limit(resolvedPair);
+      }
+      return resolvedPair;
+    }
   }
 
   private Observable<HalResource> resolveLinkAndAddContextToErrors(HalComparisonSource source, String resourceUrl, String contextUrl,
@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.wcm.caravan.hal.comparison.HalComparisonContext;
+import io.wcm.caravan.hal.comparison.HalDifference;
+import io.wcm.caravan.hal.comparison.impl.PairRecord.DifferenceRecord;
+import io.wcm.caravan.hal.comparison.impl.PairRecord.LinkRecord;
+import io.wcm.caravan.hal.comparison.impl.context.HalComparisonContextImpl;
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+/**
+ * Keeps track of the pairs of linked resources that are reused or compared during a single incremental comparison, and
+ * records the differences and followed links of each pair that is compared.
+ */
+class IncrementalRun {
+
+  private final HalComparisonHistoryImpl history;
+  private final Map<String, PairRecord> previousPairs;
+  private final String strategyFingerprint;
+  private final SubtreeDigests digests;
+
+  private final Map<String, PairRecord> currentPairs = new ConcurrentHashMap<>();
+  private final Map<String, Recorder> activeRecorders = new ConcurrentHashMap<>();
+
+  private final AtomicInteger reusedCount = new AtomicInteger();
+  private final AtomicInteger recomparedCount = new AtomicInteger();
+
+  IncrementalRun(HalComparisonHistoryImpl history, Map<String, PairRecord> previousPairs, String strategyFingerprint,
+      SubtreeDigests digests) {
+    this.history = history;
+    this.previousPairs = previousPairs;
+    this.strategyFingerprint = strategyFingerprint;
+    this.digests = digests;
+  }
+
+  static String getKey(HalComparisonContext context) {
+    return context.getExpectedUrl() + " " + context.getActualUrl();
+  }
+
+  /**
+   * @param context of the linked resources
+   * @param expected the expected resource
+   * @param actual the actual resource
+   * @return the record of the previous run if both resources are unchanged, or null if they have to be compared (in
+   *         which case the differences and links of the pair are recorded from now on)
+   */
+  PairRecord findUnchanged(HalComparisonContextImpl context, HalResource expected, HalResource actual) {
+    String key = getKey(context);
+    String expectedHash = hash(expected);
+    String actualHash = hash(actual);
+
+    PairRecord previous = previousPairs.get(key);
+    if (previous != null && previous.hasSameContent(expectedHash, actualHash)) {
+      currentPairs.put(key, previous);
+      reusedCount.incrementAndGet();
+      return previous;
+    }
+
+    activeRecorders.put(key, new Recorder(context, expectedHash, actualHash));
+    recomparedCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * @param context of the linked resources that are being compared
+   * @param diff a difference that was emitted while comparing the pair (which is only recorded if it was found in the
+   *          linked resources or their embedded resources, and not in any resource linked from there)
+   */
+  void onDifference(HalComparisonContext context, HalDifference diff) {
+    String key = getKey(context);
+    if (!key.equals(getKey(diff.getHalContext()))) {
+      return;
+    }
+    Recorder recorder = activeRecorders.get(key);
+    if (recorder != null) {
+      recorder.differences.add(DifferenceRecord.of(recorder.context, diff));
+    }
+  }
+
+  /**
+   * @param context of the resource that contains the links
+   * @param pair of links that are going to be followed (unless they were already visited)
+   */
+  void onLinkToFollow(HalComparisonContextImpl context, PairWithRelation<Link> pair) {
+    Recorder recorder = activeRecorders.get(getKey(context));
+    if (recorder != null) {
+      recorder.links.add(LinkRecord.of(recorder.context, context, pair));
+    }
+  }
+
+  /**
+   * @param context of the linked resources that were compared completely
+   */
+  void onPairCompleted(HalComparisonContext context) {
+    String key = getKey(context);
+    Recorder recorder = activeRecorders.remove(key);
+    if (recorder != null) {
+      currentPairs.put(key, new PairRecord(recorder.expectedHash, recorder.actualHash, recorder.differences, recorder.links));
+    }
+  }
+
+  /**
+   * Replaces the history with the pairs of this run
+   * @param crawlComplete false if links were not followed because a crawl budget was used up, in which case the pairs
+   *          of the previous run that were not reached are kept as well
+   */
+  void complete(boolean crawlComplete) {
+    Map<String, PairRecord> newPairs = new ConcurrentHashMap<>();
+    if (!crawlComplete) {
+      newPairs.putAll(previousPairs);
+    }
+    newPairs.putAll(currentPairs);
+    history.onRunCompleted(newPairs, strategyFingerprint, reusedCount.get(), recomparedCount.get());
+  }
+
+  private String hash(HalResource resource) {
+    // the same digests are used to skip the comparison of identical resources, so each resource is only hashed once
+    return digests.getHash(resource).toString();
+  }
+
+  private static final class Recorder {
+
+    private final HalComparisonContextImpl context;
+    private final String expectedHash;
+    private final String actualHash;
+    private final List<DifferenceRecord> differences = Collections.synchronizedList(new ArrayList<>());
+    private final List<LinkRecord> links = Collections.synchronizedList(new ArrayList<>());
+
+    Recorder(HalComparisonContextImpl context, String expectedHash, String actualHash) {
+      this.context = context;
+      this.expectedHash = expectedHash;
+      this.actualHash = actualHash;
+    }
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import rx.Observable;
+
+/**
+ * Adapts an RxJava {@link Observable} to a Reactive Streams {@link Publisher}. The demand signalled by each
+ * {@link Subscriber} is forwarded as backpressure requests to the observable, so that nothing is emitted (and
+ * nothing has to be buffered) before it is requested.
+ * @param <T> emission type
+ */
+class ObservablePublisher<T> implements Publisher<T> {
+
+  private final Observable<T> observable;
+
+  /**
+   * @param observable a (cold) observable that is subscribed once for each subscriber
+   */
+  ObservablePublisher(Observable<T> observable) {
+    this.observable = observable;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super T> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("subscriber must not be null");
+    }
+
+    ForwardingSubscriber<T> bridge = new ForwardingSubscriber<>(subscriber);
+    subscriber.onSubscribe(new Subscription() {
+
+      @Override
+      public void request(long n) {
+        bridge.requestMore(n);
+      }
+
+      @Override
+      public void cancel() {
+        bridge.cancel();
+      }
+    });
+
+    if (!bridge.isUnsubscribed()) {
+      observable.subscribe(bridge);
+    }
+  }
+
+  /**
+   * Forwards the emissions to the Reactive Streams subscriber, and the requests and cancellation from the subscriber
+   * to the observable
+   */
+  private static final class ForwardingSubscriber<T> extends rx.Subscriber<T> {
+
+    private final Subscriber<? super T> subscriber;
+    private final AtomicBoolean terminated = new AtomicBoolean();
+
+    ForwardingSubscriber(Subscriber<? super T> subscriber) {
+      this.subscriber = subscriber;
+      // nothing is emitted until the subscriber requests it
+      request(0);
+    }
+
+    void requestMore(long n) {
+      if (n > 0) {
+        request(n);
+      }
+      else if (terminated.compareAndSet(false, true)) {
+        unsubscribe();
+        subscriber.onError(new IllegalArgumentException("The number of requested elements must be positive, but was " + n));
+      }
+    }
+
+    void cancel() {
+      terminated.set(true);
+      unsubscribe();
+    }
+
+    @Override
+    public void onNext(T item) {
+      if (!terminated.get()) {
+        subscriber.onNext(item);
+      }
+    }
+
+    @Override
+    public void onError(Throwable ex) {
+      if (terminated.compareAndSet(false, true)) {
+        subscriber.onError(ex);
+      }
+    }
+
+    @Override
+    public void onCompleted() {
+      if (terminated.compareAndSet(false, true)) {
+        subscriber.onComplete();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+
+import io.wcm.caravan.hal.comparison.HalComparisonContext;
+import io.wcm.caravan.hal.comparison.HalDifference;
+import io.wcm.caravan.hal.comparison.HalDifference.ChangeType;
+import io.wcm.caravan.hal.comparison.HalDifference.EntityType;
+import io.wcm.caravan.hal.comparison.impl.context.HalComparisonContextImpl;
+import io.wcm.caravan.hal.comparison.impl.difference.HalDifferenceImpl;
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+/**
+ * The result of comparing a pair of linked resources (and their embedded resources) in a previous run: the content
+ * hashes of both resources, the differences that were found, and the links that were followed from there. The hal
+ * paths of differences and links are stored relative to the linked resource, so they can be carried over even if the
+ * resource is reached through a different path in the next run.
+ */
+final class PairRecord {
+
+  private final String expectedHash;
+  private final String actualHash;
+  private final List<DifferenceRecord> differences;
+  private final List<LinkRecord> links;
+
+  PairRecord(String expectedHash, String actualHash, List<DifferenceRecord> differences, List<LinkRecord> links) {
+    this.expectedHash = expectedHash;
+    this.actualHash = actualHash;
+    this.differences = ImmutableList.copyOf(differences);
+    this.links = ImmutableList.copyOf(links);
+  }
+
+  boolean hasSameContent(String otherExpectedHash, String otherActualHash) {
+    return expectedHash.equals(otherExpectedHash) && actualHash.equals(otherActualHash);
+  }
+
+  List<DifferenceRecord> getDifferences() {
+    return differences;
+  }
+
+  List<LinkRecord> getLinks() {
+    return links;
+  }
+
+  ObjectNode toJson() {
+    ObjectNode json = JsonNodeFactory.instance.objectNode();
+    json.put("expectedHash", expectedHash);
+    json.put("actualHash", actualHash);
+    ArrayNode differencesJson = json.putArray("differences");
+    differences.forEach(diff -> differencesJson.add(diff.toJson()));
+    ArrayNode linksJson = json.putArray("links");
+    links.forEach(link -> linksJson.add(link.toJson()));
+    return json;
+  }
+
+  static PairRecord fromJson(JsonNode json) {
+    List<DifferenceRecord> differences = new ArrayList<>();
+    json.path("differences").forEach(diff -> differences.add(DifferenceRecord.fromJson(diff)));
+    List<LinkRecord> links = new ArrayList<>();
+    json.path("links").forEach(link -> links.add(LinkRecord.fromJson(link)));
+    return new PairRecord(json.path("expectedHash").asText(), json.path("actualHash").asText(), differences, links);
+  }
+
+  private static List<String> getStrings(JsonNode array) {
+    List<String> values = new ArrayList<>();
+    array.forEach(value -> values.add(value.asText()));
+    return values;
+  }
+
+  private static ArrayNode toArray(List<?> values) {
+    ArrayNode array = JsonNodeFactory.instance.arrayNode();
+    values.forEach(value -> array.add(value != null ? value.toString() : null));
+    return array;
+  }
+
+  private static JsonNode nullIfMissing(JsonNode json) {
+    return json.isMissingNode() || json.isNull() ? null : json;
+  }
+
+  /**
+   * A single difference that was found within the linked resource
+   */
+  static final class DifferenceRecord {
+
+    private final ChangeType changeType;
+    private final EntityType entityType;
+    private final String halPathSuffix;
+    private final List<String> relationSuffix;
+    private final List<String> propertyNames;
+    private final String description;
+    private final JsonNode expectedJson;
+    private final JsonNode actualJson;
+
+    private DifferenceRecord(ChangeType changeType, EntityType entityType, String halPathSuffix, List<String> relationSuffix,
+        List<String> propertyNames, String description, JsonNode expectedJson, JsonNode actualJson) {
+      this.changeType = changeType;
+      this.entityType = entityType;
+      this.halPathSuffix = halPathSuffix;
+      this.relationSuffix = ImmutableList.copyOf(relationSuffix);
+      this.propertyNames = ImmutableList.copyOf(propertyNames);
+      this.description = description;
+      this.expectedJson = expectedJson;
+      this.actualJson = actualJson;
+    }
+
+    /**
+     * @param pairContext the context of the linked resource
+     * @param diff a difference that was found within the linked resource
+     * @return a new record
+     */
+    static DifferenceRecord of(HalComparisonContextImpl pairContext, HalDifference diff) {
+      HalComparisonContext diffContext = diff.getHalContext();
+      List<String> relations = diffContext.getAllRelations();
+      return new DifferenceRecord(diff.getChangeType(), diff.getEntityType(),
+          diffContext.toString().substring(pairContext.toString().length()),
+          relations.subList(pairContext.getAllRelations().size(), relations.size()),
+          diffContext.getAllPropertyNames(), diff.getDescription(), diff.getExpectedJson(), diff.getActualJson());
+    }
+
+    /**
+     * @param pairContext the context of the linked resource in the current run
+     * @return a difference with the same location relative to the linked resource as in the previous run
+     */
+    HalDifference toDifference(HalComparisonContextImpl pairContext) {
+      CarriedOverContext context = new CarriedOverContext(pairContext, halPathSuffix, relationSuffix, propertyNames);
+      return new HalDifferenceImpl(context, changeType, entityType, expectedJson, actualJson, description);
+    }
+
+    ObjectNode toJson() {
+      ObjectNode json = JsonNodeFactory.instance.objectNode();
+      json.put("changeType", changeType.name());
+      json.put("entityType", entityType.name());
+      json.put("halPathSuffix", halPathSuffix);
+      json.set("relationSuffix", toArray(relationSuffix));
+      json.set("propertyNames", toArray(propertyNames));
+      json.put("description", description);
+      json.set("expectedJson", expectedJson);
+      json.set("actualJson", actualJson);
+      return json;
+    }
+
+    static DifferenceRecord fromJson(JsonNode json) {
+      return new DifferenceRecord(ChangeType.valueOf(json.path("changeType").asText()), EntityType.valueOf(json.path("entityType").asText()),
+          json.path("halPathSuffix").asText(), getStrings(json.path("relationSuffix")), getStrings(json.path("propertyNames")),
+          json.path("description").isTextual() ? json.path("description").asText() : null,
+          nullIfMissing(json.path("expectedJson")), nullIfMissing(json.path("actualJson")));
+    }
+  }
+
+  /**
+   * A pair of links that was followed from the linked resource, or any of its embedded resources
+   */
+  static final class LinkRecord {
+
+    private final List<String> embeddedRelations;
+    private final List<Integer> embeddedIndices;
+    private final String relation;
+    private final ObjectNode expectedLink;
+    private final ObjectNode actualLink;
+
+    private LinkRecord(List<String> embeddedRelations, List<Integer> embeddedIndices, String relation, ObjectNode expectedLink,
+        ObjectNode actualLink) {
+      this.embeddedRelations = ImmutableList.copyOf(embeddedRelations);
+      this.embeddedIndices = Collections.unmodifiableList(new ArrayList<>(embeddedIndices));
+      this.relation = relation;
+      this.expectedLink = expectedLink;
+      this.actualLink = actualLink;
+    }
+
+    /**
+     * @param pairContext the context of the linked resource
+     * @param context the context of the linked resource, or one of its embedded resources
+     * @param pair the links that were followed from there
+     * @return a new record
+     */
+    static LinkRecord of(HalComparisonContextImpl pairContext, HalComparisonContextImpl context, PairWithRelation<Link> pair) {
+      List<String> relations = context.getAllRelations();
+      List<Integer> indices = new ArrayList<>();
+      for (int i = pairContext.getAllRelations().size(); i < relations.size(); i++) {
+        indices.add(context.getHalPathIndex(i));
+      }
+      return new LinkRecord(relations.subList(pairContext.getAllRelations().size(), relations.size()), indices, pair.getRelation(),
+          pair.getExpected().getModel(), pair.getActual().getModel());
+    }
+
+    /**
+     * @param pairContext the context of the linked resource in the current run
+     * @param pairExpected the expected linked resource (which is the same as in the previous run)
+     * @return the context, resource and links to follow, or null if the embedded resource doesn't exist anymore
+     */
+    LinkToFollow resolve(HalComparisonContextImpl pairContext, HalResource pairExpected) {
+      HalComparisonContextImpl context = pairContext;
+      HalResource parent = pairExpected;
+      for (int i = 0; i < embeddedRelations.size(); i++) {
+        String embeddedRelation = embeddedRelations.get(i);
+        List<HalResource> embedded = parent.getEmbedded(embeddedRelation);
+        int index = embeddedIndices.get(i) != null ? embeddedIndices.get(i) : 0;
+        if (index >= embedded.size()) {
+          return null;
+        }
+        HalResource child = embedded.get(index);
+        context = context.withHalPathOfEmbeddedResource(new PairWithRelation<>(embeddedRelation, child, child), parent);
+        parent = child;
+      }
+      return new LinkToFollow(context, parent, new PairWithRelation<>(relation, new Link(expectedLink), new Link(actualLink)));
+    }
+
+    ObjectNode toJson() {
+      ObjectNode json = JsonNodeFactory.instance.objectNode();
+      json.set("embeddedRelations", toArray(embeddedRelations));
+      json.set("embeddedIndices", toArray(embeddedIndices));
+      json.put("relation", relation);
+      json.set("expectedLink", expectedLink);
+      json.set("actualLink", actualLink);
+      return json;
+    }
+
+    static LinkRecord fromJson(JsonNode json) {
+      List<Integer> indices = new ArrayList<>();
+      json.path("embeddedIndices").forEach(index -> indices.add(index.isNull() ? null : Integer.valueOf(index.asText())));
+      return new LinkRecord(getStrings(json.path("embeddedRelations")), indices, json.path("relation").asText(),
+          (ObjectNode)json.path("expectedLink"), (ObjectNode)json.path("actualLink"));
+    }
+  }
+
+  /**
+   * The links to follow from a specific resource within the linked resource
+   */
+  static final class LinkToFollow {
+
+    private final HalComparisonContextImpl context;
+    private final HalResource parentOfExpected;
+    private final PairWithRelation<Link> pair;
+
+    LinkToFollow(HalComparisonContextImpl context, HalResource parentOfExpected, PairWithRelation<Link> pair) {
+      this.context = context;
+      this.parentOfExpected = parentOfExpected;
+      this.pair = pair;
+    }
+
+    HalComparisonContextImpl getContext() {
+      return context;
+    }
+
+    HalResource getParentOfExpected() {
+      return parentOfExpected;
+    }
+
+    PairWithRelation<Link> getPair() {
+      return pair;
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.wcm.caravan.hal.comparison.HalComparisonSource;
+import io.wcm.caravan.hal.resource.HalResource;
+import rx.Observable;
+import rx.Single;
+
+/**
+ * Limits the rate of requests to a {@link HalComparisonSource}: each request is assigned the next free time slot, and
+ * the subscription to the underlying source is delayed until then (without blocking any threads).
+ */
+class RateLimitedHalComparisonSource implements HalComparisonSource {
+
+  private final HalComparisonSource delegate;
+  private final long intervalNanos;
+
+  private final AtomicLong nextSlotNanos = new AtomicLong(System.nanoTime());
+
+  /**
+   * @param delegate the source to limit
+   * @param maxRequestsPerSecond the maximum rate of requests
+   */
+  RateLimitedHalComparisonSource(HalComparisonSource delegate, double maxRequestsPerSecond) {
+    if (!(maxRequestsPerSecond > 0)) {
+      throw new IllegalArgumentException("maxRequestsPerSecond must be greater than 0, but was " + maxRequestsPerSecond);
+    }
+    this.delegate = delegate;
+    this.intervalNanos = (long)(TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond);
+  }
+
+  @Override
+  public String getEntryPointUrl() {
+    return delegate.getEntryPointUrl();
+  }
+
+  @Override
+  public Single<HalResource> resolveLink(String url) {
+    return Observable.defer(() -> {
+      Observable<HalResource> request = Observable.defer(() -> delegate.resolveLink(url).toObservable());
+      long delayNanos = reserveSlot();
+      return delayNanos > 0 ? request.delaySubscription(delayNanos, TimeUnit.NANOSECONDS) : request;
+    }).toSingle();
+  }
+
+  /**
+   * @return how long to wait until the reserved slot starts
+   */
+  long reserveSlot() {
+    long now = System.nanoTime();
+    while (true) {
+      long next = nextSlotNanos.get();
+      long slot = next - now > 0 ? next : now;
+      if (nextSlotNanos.compareAndSet(next, slot + intervalNanos)) {
+        return slot - now;
+      }
+    }
+  }
+
+}
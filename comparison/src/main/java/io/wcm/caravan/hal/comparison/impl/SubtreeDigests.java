@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.MapMaker;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import io.wcm.caravan.hal.comparison.impl.util.JsonHashing;
+import io.wcm.caravan.hal.resource.HalResource;
+
+/**
+ * Calculates a Merkle digest for each resource: the state and links of a resource are hashed together with the digests
+ * of its embedded resources, so that the digests of all embedded resources are calculated only once while the digest
+ * of the enclosing resource is calculated. Two resources with the same digest have the same content (including all
+ * embedded resources), and comparing them can't find any differences.
+ */
+class SubtreeDigests {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  // weak keys are compared by identity, and the digests are discarded together with the resources
+  private final ConcurrentMap<ObjectNode, Digest> digests = new MapMaker().weakKeys().makeMap();
+
+  /**
+   * @param expected the expected resource
+   * @param actual the actual resource
+   * @return true if both resources (and all their embedded resources) have the same content
+   */
+  boolean isIdentical(HalResource expected, HalResource actual) {
+    if (expected.getModel() == actual.getModel()) {
+      return true;
+    }
+    return getDigest(expected.getModel()).hash.equals(getDigest(actual.getModel()).hash);
+  }
+
+  /**
+   * @param resource a resource for which {@link #isIdentical(HalResource, HalResource)} was called
+   * @return true if the resource (or any of its embedded resources) contains links other than the self link
+   */
+  boolean containsLinks(HalResource resource) {
+    return getDigest(resource.getModel()).containsLinks;
+  }
+
+  /**
+   * @param resource a resource
+   * @return the digest of the resource's content (including all embedded resources)
+   */
+  HashCode getHash(HalResource resource) {
+    return getDigest(resource.getModel()).hash;
+  }
+
+  private Digest getDigest(ObjectNode model) {
+    Digest digest = digests.get(model);
+    if (digest == null) {
+      digest = calculateDigest(model);
+      digests.put(model, digest);
+    }
+    return digest;
+  }
+
+  private Digest calculateDigest(ObjectNode model) {
+
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    boolean containsLinks = false;
+
+    Iterator<Map.Entry<String, JsonNode>> fields = model.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      JsonHashing.putString(hasher, field.getKey());
+
+      JsonNode value = field.getValue();
+      if ("_embedded".equals(field.getKey()) && value.isObject()) {
+        containsLinks |= putEmbedded(hasher, value);
+      }
+      else {
+        if ("_links".equals(field.getKey())) {
+          containsLinks |= containsLinksOtherThanSelf(value);
+        }
+        JsonHashing.putValue(hasher, value);
+      }
+    }
+
+    return new Digest(hasher.hash(), containsLinks);
+  }
+
+  private boolean putEmbedded(Hasher hasher, JsonNode embedded) {
+    boolean containsLinks = false;
+
+    hasher.putByte((byte)'{');
+    Iterator<Map.Entry<String, JsonNode>> relations = embedded.fields();
+    while (relations.hasNext()) {
+      Map.Entry<String, JsonNode> relation = relations.next();
+      JsonHashing.putString(hasher, relation.getKey());
+
+      JsonNode resources = relation.getValue();
+      hasher.putByte(resources.isArray() ? (byte)'[' : (byte)'(');
+      for (JsonNode resource : resources.isArray() ? resources : Collections.singletonList(resources)) {
+        if (resource.isObject()) {
+          Digest digest = getDigest((ObjectNode)resource);
+          hasher.putByte((byte)'r').putBytes(digest.hash.asBytes());
+          containsLinks |= digest.containsLinks;
+        }
+        else {
+          JsonHashing.putValue(hasher, resource);
+        }
+      }
+      hasher.putByte((byte)']');
+    }
+    hasher.putByte((byte)'}');
+
+    return containsLinks;
+  }
+
+  private static boolean containsLinksOtherThanSelf(JsonNode links) {
+    Iterator<String> relations = links.fieldNames();
+    while (relations.hasNext()) {
+      if (!"self".equals(relations.next())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static final class Digest {
+
+    private final HashCode hash;
+    private final boolean containsLinks;
+
+    Digest(HashCode hash, boolean containsLinks) {
+      this.hash = hash;
+      this.containsLinks = containsLinks;
+    }
+  }
+
+}
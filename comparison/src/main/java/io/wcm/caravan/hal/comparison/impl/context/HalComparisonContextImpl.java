@@ -196,6 +196,14 @@ public class HalComparisonContextImpl implements HalComparisonContext {
     return halPath.getAllRelations();
   }
 
+  /**
+   * @param position of a relation in {@link #getAllRelations()}
+   * @return the index of the linked or embedded resource within that relation (or null if there is only one)
+   */
+  public Integer getHalPathIndex(int position) {
+    return halPath.getHalPathIndex(position);
+  }
+
   @Override
   public String getLastProperyName() {
     return halPath.getLastProperyName();
@@ -122,6 +122,10 @@ public class HalPathImpl {
     return getAllOf(jsonTokens);
   }
 
+  Integer getHalPathIndex(int position) {
+    return halTokens.get(position).index;
+  }
+
   @Override
   public String toString() {
 
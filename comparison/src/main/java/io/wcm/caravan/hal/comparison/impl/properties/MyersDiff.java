@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl.properties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the longest common subsequence of two sequences of fingerprints with Myers' O(ND) difference algorithm, where
+ * D is the number of inserted and deleted elements. Common prefixes and suffixes are matched before the algorithm is
+ * applied, so that small changes in large arrays are found in linear time.
+ * <p>
+ * To trace the path back, the relevant part of the furthest reaching paths is copied for each edit step, which takes
+ * O(D&sup2;) memory: about 4 MB for {@link #MAX_EDIT_DISTANCE} edits (but only a few KB for the typical changes of a
+ * few elements). The linear space variant of the algorithm would avoid this, but needs about twice as much time.
+ * </p>
+ */
+final class MyersDiff {
+
+  /**
+   * If more elements than this have been inserted or deleted (after common prefixes and suffixes are removed), the
+   * remaining elements are not matched at all (which limits the time and the memory used for very different sequences
+   * to O(n * 1024) and about 4 MB)
+   */
+  static final int MAX_EDIT_DISTANCE = 1024;
+
+  private MyersDiff() {
+    // static methods only
+  }
+
+  /**
+   * @param expected the fingerprints of the expected elements
+   * @param actual the fingerprints of the actual elements
+   * @return an array that contains the index of the matching actual element for each expected element (or -1 if the
+   *         element was deleted). The indices of the matched elements are strictly increasing.
+   */
+  static int[] findMatches(long[] expected, long[] actual) {
+
+    int[] matches = new int[expected.length];
+    Arrays.fill(matches, -1);
+
+    int prefix = 0;
+    while (prefix < expected.length && prefix < actual.length && expected[prefix] == actual[prefix]) {
+      matches[prefix] = prefix;
+      prefix++;
+    }
+
+    int suffix = 0;
+    while (suffix < expected.length - prefix && suffix < actual.length - prefix
+        && expected[expected.length - 1 - suffix] == actual[actual.length - 1 - suffix]) {
+      matches[expected.length - 1 - suffix] = actual.length - 1 - suffix;
+      suffix++;
+    }
+
+    matchRange(expected, prefix, expected.length - suffix, actual, prefix, actual.length - suffix, matches);
+
+    return matches;
+  }
+
+  private static void matchRange(long[] a, int aStart, int aEnd, long[] b, int bStart, int bEnd, int[] matches) {
+
+    int n = aEnd - aStart;
+    int m = bEnd - bStart;
+    if (n == 0 || m == 0) {
+      return;
+    }
+
+    int maxD = Math.min(n + m, MAX_EDIT_DISTANCE);
+    int offset = maxD + 1;
+    int[] v = new int[2 * maxD + 3];
+
+    // the relevant part of v before each step is kept, so that the path can be traced back (2d + 3 ints for step d)
+    List<int[]> trace = new ArrayList<>();
+
+    for (int d = 0; d <= maxD; d++) {
+      trace.add(Arrays.copyOfRange(v, offset - d - 1, offset + d + 2));
+
+      for (int k = -d; k <= d; k += 2) {
+        int x;
+        if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+          x = v[offset + k + 1];
+        }
+        else {
+          x = v[offset + k - 1] + 1;
+        }
+        int y = x - k;
+        while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+          x++;
+          y++;
+        }
+        v[offset + k] = x;
+
+        if (x >= n && y >= m) {
+          traceBack(trace, n, m, aStart, bStart, matches);
+          return;
+        }
+      }
+    }
+  }
+
+  private static void traceBack(List<int[]> trace, int n, int m, int aStart, int bStart, int[] matches) {
+
+    int x = n;
+    int y = m;
+
+    for (int d = trace.size() - 1; d > 0; d--) {
+      int[] v = trace.get(d);
+      int k = x - y;
+
+      int previousK;
+      if (k == -d || (k != d && v[k - 1 + d + 1] < v[k + 1 + d + 1])) {
+        previousK = k + 1;
+      }
+      else {
+        previousK = k - 1;
+      }
+      int previousX = v[previousK + d + 1];
+      int previousY = previousX - previousK;
+
+      // all elements on the diagonal after the insertion or deletion are matches
+      while (x > previousX && y > previousY) {
+        x--;
+        y--;
+        matches[aStart + x] = bStart + y;
+      }
+      x = previousX;
+      y = previousY;
+    }
+
+    while (x > 0 && y > 0) {
+      x--;
+      y--;
+      matches[aStart + x] = bStart + y;
+    }
+  }
+
+}
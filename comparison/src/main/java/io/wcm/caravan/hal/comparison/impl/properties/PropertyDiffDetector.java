@@ -19,10 +19,14 @@
  */
 package io.wcm.caravan.hal.comparison.impl.properties;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -30,14 +34,12 @@ import org.apache.commons.lang3.StringUtils;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.google.common.collect.Lists;
 
 import io.wcm.caravan.hal.comparison.HalDifference;
 import io.wcm.caravan.hal.comparison.impl.context.HalComparisonContextImpl;
 import io.wcm.caravan.hal.comparison.impl.difference.HalDifferenceListBuilder;
-import io.wcm.caravan.hal.comparison.impl.matching.MatchingResult;
-import io.wcm.caravan.hal.comparison.impl.matching.SimpleIdMatchingAlgorithm;
 import io.wcm.caravan.hal.comparison.impl.util.HalJsonConversion;
+import io.wcm.caravan.hal.comparison.impl.util.JsonHashing;
 import io.wcm.caravan.hal.resource.HalResource;
 
 /**
@@ -46,6 +48,8 @@ import io.wcm.caravan.hal.resource.HalResource;
  */
 public class PropertyDiffDetector implements PropertyProcessing {
 
+  private static final int MAX_MOVES_IN_DESCRIPTION = 10;
+
   @Override
   public List<HalDifference> process(HalComparisonContextImpl context, HalResource expected, HalResource actual) {
 
@@ -122,15 +126,7 @@ public class PropertyDiffDetector implements PropertyProcessing {
       compareObjects(context, (ObjectNode)expectedValue, (ObjectNode)actualValue, nodeCounter, diffs);
     }
     else if (expectedValue.isArray()) {
-      List<HalDifference> diffWithMatching = compareArrayValuesWithMatching(context, expectedValue, actualValue);
-      List<HalDifference> diffInplace = compareArrayValuesInplace(context, expectedValue, actualValue, nodeCounter);
-
-      if (diffWithMatching.size() < diffInplace.size()) {
-        diffs.addAll(diffWithMatching);
-      }
-      else {
-        diffs.addAll(diffInplace);
-      }
+      compareArrayValues(context, expectedValue, actualValue, nodeCounter, diffs);
     }
     else if (!expectedValue.equals(actualValue)) {
       String msg = "Expected value '" + StringUtils.abbreviate(expectedValue.asText(), 40) + "',"
@@ -139,65 +135,127 @@ public class PropertyDiffDetector implements PropertyProcessing {
     }
   }
 
-  private List<HalDifference> compareArrayValuesInplace(HalComparisonContextImpl context, JsonNode expectedValue, JsonNode actualValue,
-      AtomicInteger nodeCounter) {
+  /**
+   * Finds the longest common subsequence of array elements (by comparing fingerprints of their content), and then
+   * reports the remaining elements as moved (if an element with the same content was found elsewhere in the other
+   * array), modified (if there are both removed and added elements at the same location) or missing/additional.
+   */
+  private void compareArrayValues(HalComparisonContextImpl context, JsonNode expectedValue, JsonNode actualValue, AtomicInteger nodeCounter,
+      HalDifferenceListBuilder diffs) {
+
+    long[] expectedFingerprints = getFingerprints(expectedValue);
+    long[] actualFingerprints = getFingerprints(actualValue);
 
-    HalDifferenceListBuilder diffs = new HalDifferenceListBuilder(context);
-    int numExpected = expectedValue.size();
-    int numActual = actualValue.size();
+    int[] matches = MyersDiff.findMatches(expectedFingerprints, actualFingerprints);
 
-    for (int i = 0; i < numExpected && i < numActual; i++) {
-      HalComparisonContextImpl newContext = context.withJsonPathIndex(i);
-      HalDifferenceListBuilder newDiffs = new HalDifferenceListBuilder(newContext);
-      compareValues(newContext, expectedValue.get(i), actualValue.get(i), nodeCounter, newDiffs);
-      diffs.addAllFrom(newDiffs);
+    boolean[] actualMatched = new boolean[actualFingerprints.length];
+    for (int match : matches) {
+      if (match >= 0) {
+        actualMatched[match] = true;
+      }
     }
 
-    if (numExpected != numActual) {
-      if (numExpected > numActual) {
-        for (int i = numActual; i < numExpected; i++) {
-          reportMissingArrayElement(context, diffs, expectedValue.get(i), i);
-        }
+    // unmatched elements with the same content in both arrays have been moved
+    Map<Long, Deque<Integer>> unmatchedActualIndices = new HashMap<>();
+    for (int j = 0; j < actualFingerprints.length; j++) {
+      if (!actualMatched[j]) {
+        unmatchedActualIndices.computeIfAbsent(actualFingerprints[j], fingerprint -> new ArrayDeque<>()).add(j);
       }
-      else {
-        for (int i = numExpected; i < numActual; i++) {
-          reportAdditionalArrayElement(context, diffs, actualValue.get(i), i);
-        }
+    }
+    boolean[] expectedMoved = new boolean[expectedFingerprints.length];
+    List<String> moves = new ArrayList<>();
+    for (int i = 0; i < expectedFingerprints.length; i++) {
+      Deque<Integer> candidates = matches[i] < 0 ? unmatchedActualIndices.get(expectedFingerprints[i]) : null;
+      if (candidates != null && !candidates.isEmpty()) {
+        int j = candidates.poll();
+        actualMatched[j] = true;
+        expectedMoved[i] = true;
+        moves.add("[" + i + "] to [" + j + "]");
       }
     }
 
-    return diffs.build();
-  }
-
-  private List<HalDifference> compareArrayValuesWithMatching(HalComparisonContextImpl context, JsonNode expected, JsonNode actual) {
-
-    HalDifferenceListBuilder diffs = new HalDifferenceListBuilder(context);
-
-    SimpleIdMatchingAlgorithm<JsonNode> algorithm = new SimpleIdMatchingAlgorithm<>(json -> json.toString());
+    if (!moves.isEmpty()) {
+      diffs.reportReorderedProperty(describeMoves(moves), expectedValue, actualValue);
+    }
 
-    ArrayList<JsonNode> expectedList = Lists.newArrayList(expected);
-    ArrayList<JsonNode> actualList = Lists.newArrayList(actual);
+    // the unmatched elements between two common elements are compared with each other
+    List<Integer> removed = new ArrayList<>();
+    List<Integer> added = new ArrayList<>();
+    int nextActual = 0;
+    for (int i = 0; i <= expectedFingerprints.length; i++) {
+      if (i == expectedFingerprints.length || matches[i] >= 0) {
+        int endOfGap = i < expectedFingerprints.length ? matches[i] : actualFingerprints.length;
+        for (int j = nextActual; j < endOfGap; j++) {
+          if (!actualMatched[j]) {
+            added.add(j);
+          }
+        }
+        if (!removed.isEmpty() || !added.isEmpty()) {
+          compareGap(context, expectedValue, actualValue, removed, added, nodeCounter, diffs);
+          removed.clear();
+          added.clear();
+        }
+        if (i < expectedFingerprints.length) {
+          nextActual = endOfGap + 1;
+        }
+      }
+      else if (!expectedMoved[i]) {
+        removed.add(i);
+      }
 
-    MatchingResult<JsonNode> matchingResult = algorithm.findMatchingItems(expectedList, actualList);
+      if (i < expectedFingerprints.length && (matches[i] >= 0 || expectedMoved[i])) {
+        // the content of common and moved elements is identical, but they still count for the total number of nodes
+        nodeCounter.addAndGet(countNodes(expectedValue.get(i)));
+      }
+    }
+  }
 
-    boolean reorderingRequired = matchingResult.areMatchesReordered();
+  private void compareGap(HalComparisonContextImpl context, JsonNode expectedValue, JsonNode actualValue, List<Integer> removed, List<Integer> added,
+      AtomicInteger nodeCounter, HalDifferenceListBuilder diffs) {
 
-    if (reorderingRequired) {
-      String msg = "The array elements have a different order in the actual resource";
-      diffs.reportReorderedProperty(msg, expected, actual);
+    int numModified = Math.min(removed.size(), added.size());
+    for (int n = 0; n < numModified; n++) {
+      int i = removed.get(n);
+      HalComparisonContextImpl newContext = context.withJsonPathIndex(i);
+      HalDifferenceListBuilder newDiffs = new HalDifferenceListBuilder(newContext);
+      compareValues(newContext, expectedValue.get(i), actualValue.get(added.get(n)), nodeCounter, newDiffs);
+      diffs.addAllFrom(newDiffs);
+    }
+    for (int i : removed.subList(numModified, removed.size())) {
+      reportMissingArrayElement(context, diffs, expectedValue.get(i), i);
     }
+    for (int j : added.subList(numModified, added.size())) {
+      reportAdditionalArrayElement(context, diffs, actualValue.get(j), j);
+    }
+  }
 
-    for (JsonNode removed : matchingResult.getRemovedExpected()) {
-      int index = expectedList.indexOf(removed);
-      reportMissingArrayElement(context, diffs, removed, index);
+  private static String describeMoves(List<String> moves) {
+    // all moves are reported in a single difference for the whole array, but the description is limited in size
+    StringBuilder msg = new StringBuilder("The array elements have a different order in the actual resource (moved ");
+    int listed = Math.min(moves.size(), MAX_MOVES_IN_DESCRIPTION);
+    msg.append(String.join(", ", moves.subList(0, listed)));
+    if (moves.size() > listed) {
+      msg.append(" and ").append(moves.size() - listed).append(" more elements");
     }
+    return msg.append(")").toString();
+  }
 
-    for (JsonNode added : matchingResult.getAddedActual()) {
-      int index = actualList.indexOf(added);
-      reportAdditionalArrayElement(context, diffs, added, index);
+  private static long[] getFingerprints(JsonNode array) {
+    long[] fingerprints = new long[array.size()];
+    for (int i = 0; i < fingerprints.length; i++) {
+      fingerprints[i] = JsonHashing.fingerprint(array.get(i));
     }
+    return fingerprints;
+  }
 
-    return diffs.build();
+  private static int countNodes(JsonNode value) {
+    int count = 1;
+    if (value.isContainerNode()) {
+      for (JsonNode child : value) {
+        count += countNodes(child);
+      }
+    }
+    return count;
   }
 
   private static void reportAdditionalArrayElement(HalComparisonContextImpl context, HalDifferenceListBuilder diffs, JsonNode added, int index) {
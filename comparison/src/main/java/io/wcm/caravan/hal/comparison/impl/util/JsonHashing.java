@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl.util;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Utility methods to calculate structural hashes of JSON nodes (without serializing them first)
+ */
+public final class JsonHashing {
+
+  private JsonHashing() {
+    // static utility methods only
+  }
+
+  /**
+   * @param value a JSON node
+   * @return a 64 bit fingerprint of the node's content
+   */
+  public static long fingerprint(JsonNode value) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    putValue(hasher, value);
+    return hasher.hash().asLong();
+  }
+
+  /**
+   * Adds the content of a JSON node to the given hasher. Nodes with different content (or different number types) lead
+   * to different input for the hasher.
+   * @param hasher to update
+   * @param value a JSON node
+   */
+  public static void putValue(Hasher hasher, JsonNode value) {
+    switch (value.getNodeType()) {
+      case OBJECT:
+        hasher.putByte((byte)'{');
+        Iterator<Map.Entry<String, JsonNode>> fields = value.fields();
+        while (fields.hasNext()) {
+          Map.Entry<String, JsonNode> field = fields.next();
+          putString(hasher, field.getKey());
+          putValue(hasher, field.getValue());
+        }
+        hasher.putByte((byte)'}');
+        break;
+      case ARRAY:
+        hasher.putByte((byte)'[').putInt(value.size());
+        for (JsonNode item : value) {
+          putValue(hasher, item);
+        }
+        break;
+      case NUMBER:
+        // the number type is included, because the property comparison would detect a difference between 1 and 1.0
+        hasher.putByte((byte)'n').putInt(value.numberType().ordinal());
+        putString(hasher, value.asText());
+        break;
+      case STRING:
+        hasher.putByte((byte)'s');
+        putString(hasher, value.textValue());
+        break;
+      case BOOLEAN:
+        hasher.putByte(value.booleanValue() ? (byte)'t' : (byte)'f');
+        break;
+      case NULL:
+      case MISSING:
+        hasher.putByte((byte)'z');
+        break;
+      default:
+        hasher.putByte((byte)'o');
+        putString(hasher, value.toString());
+    }
+  }
+
+  /**
+   * @param hasher to update
+   * @param value a string (with a length prefix to avoid collisions between different sequences of strings)
+   */
+  public static void putString(Hasher hasher, String value) {
+    hasher.putInt(value.length()).putString(value, Charsets.UTF_8);
+  }
+
+}
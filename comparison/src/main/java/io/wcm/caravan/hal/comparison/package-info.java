@@ -20,5 +20,5 @@
 /**
  * Interfaces to recursively compare two asynchronously loaded trees of HAL+JSON resources
  */
-@org.osgi.annotation.versioning.Version("1.0.0")
+@org.osgi.annotation.versioning.Version("1.1.0")
 package io.wcm.caravan.hal.comparison;
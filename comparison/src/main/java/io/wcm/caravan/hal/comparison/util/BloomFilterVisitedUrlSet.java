@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * An approximate {@link VisitedUrlSet} that is backed by a Bloom filter. The memory usage is fixed and only depends on
+ * the expected number of URLs and the false positive rate (about 1.2 bytes per URL for a rate of 1%). In return, a URL
+ * that was never added is reported as contained with the configured false positive rate, so the corresponding
+ * resource would not be compared. URLs are never falsely reported as missing.
+ * <p>
+ * If more than the expected number of URLs are added, the false positive rate increases beyond the configured rate.
+ * </p>
+ */
+@ProviderType
+public final class BloomFilterVisitedUrlSet implements VisitedUrlSet {
+
+  private final long bitCount;
+  private final int hashCount;
+  private final AtomicLongArray words;
+
+  private final LongAdder setBitCount = new LongAdder();
+  private final LongAdder urlCount = new LongAdder();
+  private final LongAdder hitCount = new LongAdder();
+
+  /**
+   * @param expectedUrls the number of distinct URLs that are expected to be added
+   * @param falsePositiveRate the probability that a URL that wasn't added is reported as contained (after the expected
+   *          number of URLs have been added)
+   */
+  public BloomFilterVisitedUrlSet(long expectedUrls, double falsePositiveRate) {
+    if (expectedUrls < 1) {
+      throw new IllegalArgumentException("expectedUrls must be at least 1, but was " + expectedUrls);
+    }
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1 (exclusive), but was " + falsePositiveRate);
+    }
+
+    double ln2 = Math.log(2);
+    long optimalBits = (long)Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (ln2 * ln2));
+    long wordCount = Math.max(1, (optimalBits + Long.SIZE - 1) / Long.SIZE);
+    if (wordCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("A Bloom filter for " + expectedUrls + " URLs with a false positive rate of " + falsePositiveRate
+          + " would be too large");
+    }
+
+    this.words = new AtomicLongArray((int)wordCount);
+    this.bitCount = wordCount * Long.SIZE;
+    this.hashCount = Math.max(1, (int)Math.round((double)bitCount / expectedUrls * ln2));
+  }
+
+  @Override
+  public boolean add(String url) {
+    ByteBuffer fingerprint = UrlFingerprint.of(url);
+    long hash1 = fingerprint.getLong(0);
+    long hash2 = fingerprint.getLong(8);
+
+    boolean changed = false;
+    long combined = hash1;
+    for (int i = 0; i < hashCount; i++) {
+      changed |= setBit((combined & Long.MAX_VALUE) % bitCount);
+      combined += hash2;
+    }
+
+    if (changed) {
+      urlCount.increment();
+    }
+    else {
+      hitCount.increment();
+    }
+    return changed;
+  }
+
+  @Override
+  public boolean contains(String url) {
+    ByteBuffer fingerprint = UrlFingerprint.of(url);
+    long hash1 = fingerprint.getLong(0);
+    long hash2 = fingerprint.getLong(8);
+
+    long combined = hash1;
+    for (int i = 0; i < hashCount; i++) {
+      if (!isBitSet((combined & Long.MAX_VALUE) % bitCount)) {
+        return false;
+      }
+      combined += hash2;
+    }
+
+    hitCount.increment();
+    return true;
+  }
+
+  private boolean setBit(long index) {
+    int wordIndex = (int)(index >>> 6);
+    long mask = 1L << index;
+    long word;
+    do {
+      word = words.get(wordIndex);
+      if ((word & mask) != 0) {
+        return false;
+      }
+    }
+    while (!words.compareAndSet(wordIndex, word, word | mask));
+
+    setBitCount.increment();
+    return true;
+  }
+
+  private boolean isBitSet(long index) {
+    return (words.get((int)(index >>> 6)) & (1L << index)) != 0;
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * @return the number of calls to {@link #add(String)} that changed the filter (which can be less than the number of
+   *         distinct URLs due to false positives)
+   */
+  @Override
+  public long getUrlCount() {
+    return urlCount.sum();
+  }
+
+  @Override
+  public long getMemoryUsage() {
+    // object header and fields of this set and the atomic array, the long array and the counters
+    return 40 + 16 + 16 + 8L * words.length() + 3 * 64;
+  }
+
+  /**
+   * @return the number of bits in the filter
+   */
+  public long getBitCount() {
+    return bitCount;
+  }
+
+  /**
+   * @return the number of hash functions used for each URL
+   */
+  public int getHashCount() {
+    return hashCount;
+  }
+
+  /**
+   * @return the probability that a URL that wasn't added is reported as contained, estimated from the fraction of bits
+   *         that are currently set
+   */
+  public double getEstimatedFalsePositiveRate() {
+    return Math.pow((double)setBitCount.sum() / bitCount, hashCount);
+  }
+
+}
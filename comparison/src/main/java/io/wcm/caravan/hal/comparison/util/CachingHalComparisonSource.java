@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import io.wcm.caravan.hal.comparison.HalComparisonSource;
+import io.wcm.caravan.hal.resource.HalResource;
+import rx.Observable;
+import rx.Single;
+
+/**
+ * A {@link HalComparisonSource} decorator that keeps the most recently resolved resources in a bounded LRU cache, and
+ * coalesces concurrent requests for the same URL: while a resource is being loaded, all further requests for its URL
+ * share the same pending request to the underlying source. Failed requests are not cached.
+ * <p>
+ * The same {@link HalResource} instance is emitted for every request of a cached URL, so the resources must not be
+ * modified by the consumers of this source.
+ * </p>
+ */
+@ProviderType
+public final class CachingHalComparisonSource implements HalComparisonSource {
+
+  private final HalComparisonSource delegate;
+
+  private final Object lock = new Object();
+  private final Map<String, HalResource> cache;
+  private final Map<String, Observable<HalResource>> inFlight = new HashMap<>();
+
+  private long hitCount;
+  private long missCount;
+  private long coalescedCount;
+
+  /**
+   * @param delegate the source that actually loads the resources
+   * @param maxCachedResources the maximum number of resources to keep in the cache
+   */
+  public CachingHalComparisonSource(HalComparisonSource delegate, int maxCachedResources) {
+    if (maxCachedResources < 1) {
+      throw new IllegalArgumentException("maxCachedResources must be at least 1, but was " + maxCachedResources);
+    }
+    this.delegate = delegate;
+    this.cache = new LinkedHashMap<String, HalResource>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, HalResource> eldest) {
+        return size() > maxCachedResources;
+      }
+    };
+  }
+
+  @Override
+  public String getEntryPointUrl() {
+    return delegate.getEntryPointUrl();
+  }
+
+  @Override
+  public Single<HalResource> resolveLink(String url) {
+    return Observable.defer(() -> lookup(url)).toSingle();
+  }
+
+  private Observable<HalResource> lookup(String url) {
+    synchronized (lock) {
+      HalResource cached = cache.get(url);
+      if (cached != null) {
+        hitCount++;
+        return Observable.just(cached);
+      }
+
+      Observable<HalResource> pending = inFlight.get(url);
+      if (pending != null) {
+        coalescedCount++;
+        return pending;
+      }
+
+      missCount++;
+      pending = Observable.defer(() -> delegate.resolveLink(url).toObservable())
+          .doOnNext(resource -> loaded(url, resource))
+          .doOnError(ex -> failed(url))
+          .cache();
+      inFlight.put(url, pending);
+      return pending;
+    }
+  }
+
+  private void loaded(String url, HalResource resource) {
+    synchronized (lock) {
+      cache.put(url, resource);
+      inFlight.remove(url);
+    }
+  }
+
+  private void failed(String url) {
+    synchronized (lock) {
+      inFlight.remove(url);
+    }
+  }
+
+  /**
+   * @return the number of requests that were served from the cache
+   */
+  public long getHitCount() {
+    synchronized (lock) {
+      return hitCount;
+    }
+  }
+
+  /**
+   * @return the number of requests that were forwarded to the underlying source
+   */
+  public long getMissCount() {
+    synchronized (lock) {
+      return missCount;
+    }
+  }
+
+  /**
+   * @return the number of requests that shared the pending request of an earlier request for the same URL
+   */
+  public long getCoalescedCount() {
+    synchronized (lock) {
+      return coalescedCount;
+    }
+  }
+
+  /**
+   * @return the number of resources that are currently cached
+   */
+  public int getCachedResourceCount() {
+    synchronized (lock) {
+      return cache.size();
+    }
+  }
+
+}
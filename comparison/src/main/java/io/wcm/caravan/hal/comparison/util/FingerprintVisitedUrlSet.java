@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * An exact {@link VisitedUrlSet} that only stores a 64 or 128 bit fingerprint of each URL instead of the URL itself.
+ * The fingerprints are kept in lock-striped open addressing hash tables of primitive longs, so that each URL takes 16
+ * to 32 bytes (plus the free slots). With 64 bit fingerprints, the probability that two of a million distinct URLs
+ * collide is below 1 in 30 million. With 128 bit fingerprints, collisions can be ruled out in practice.
+ */
+@ProviderType
+public final class FingerprintVisitedUrlSet implements VisitedUrlSet {
+
+  private static final int SEGMENT_COUNT = 64;
+  private static final int SEGMENT_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(SEGMENT_COUNT);
+
+  private final int width;
+  private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+  private final LongAdder hitCount = new LongAdder();
+
+  /**
+   * Creates a set with 128 bit fingerprints
+   */
+  public FingerprintVisitedUrlSet() {
+    this(128);
+  }
+
+  /**
+   * @param fingerprintBits the size of the fingerprints (either 64 or 128)
+   */
+  public FingerprintVisitedUrlSet(int fingerprintBits) {
+    if (fingerprintBits != 64 && fingerprintBits != 128) {
+      throw new IllegalArgumentException("fingerprintBits must be either 64 or 128, but was " + fingerprintBits);
+    }
+    this.width = fingerprintBits / Long.SIZE;
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment(width);
+    }
+  }
+
+  @Override
+  public boolean add(String url) {
+    ByteBuffer fingerprint = UrlFingerprint.of(url);
+    long high = fingerprint.getLong(0);
+    long low = width == 2 ? fingerprint.getLong(8) : 0L;
+
+    boolean added = segmentFor(high).add(high, low);
+    if (!added) {
+      hitCount.increment();
+    }
+    return added;
+  }
+
+  @Override
+  public boolean contains(String url) {
+    ByteBuffer fingerprint = UrlFingerprint.of(url);
+    long high = fingerprint.getLong(0);
+    long low = width == 2 ? fingerprint.getLong(8) : 0L;
+
+    boolean contained = segmentFor(high).contains(high, low);
+    if (contained) {
+      hitCount.increment();
+    }
+    return contained;
+  }
+
+  private Segment segmentFor(long high) {
+    return segments[(int)(high >>> SEGMENT_SHIFT)];
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  @Override
+  public long getUrlCount() {
+    long count = 0;
+    for (Segment segment : segments) {
+      count += segment.getCount();
+    }
+    return count;
+  }
+
+  @Override
+  public long getMemoryUsage() {
+    // object header and fields of this set, the segment array and the segments
+    long bytes = 48 + 16 + 4L * SEGMENT_COUNT;
+    for (Segment segment : segments) {
+      bytes += 24 + segment.getTableBytes();
+    }
+    return bytes;
+  }
+
+  /**
+   * An open addressing hash table with linear probing, where each slot consists of {@link #width} longs. An empty slot
+   * is marked with zeros, so a fingerprint that consists of zeros only is stored as 1.
+   */
+  private static final class Segment {
+
+    private static final int INITIAL_SLOTS = 8;
+
+    private final int width;
+    // the table is only allocated when the first fingerprint is added, because most segments stay empty in small crawls
+    private long[] table;
+    private int count;
+
+    Segment(int width) {
+      this.width = width;
+    }
+
+    synchronized boolean add(long high, long low) {
+      long h = high;
+      if (h == 0 && low == 0) {
+        h = 1;
+      }
+      if (table == null) {
+        table = new long[INITIAL_SLOTS * width];
+      }
+      int slot = find(table, h, low);
+      if (table[slot] != 0 || (width == 2 && table[slot + 1] != 0)) {
+        return false;
+      }
+      table[slot] = h;
+      if (width == 2) {
+        table[slot + 1] = low;
+      }
+      count++;
+      // keep the load factor below 0.75
+      if (count * 4L >= table.length / width * 3L) {
+        resize();
+      }
+      return true;
+    }
+
+    synchronized boolean contains(long high, long low) {
+      long h = high;
+      if (h == 0 && low == 0) {
+        h = 1;
+      }
+      if (table == null) {
+        return false;
+      }
+      int slot = find(table, h, low);
+      return table[slot] != 0 || (width == 2 && table[slot + 1] != 0);
+    }
+
+    /**
+     * @return the index of the slot that contains the given fingerprint, or the empty slot where it should be added
+     */
+    private int find(long[] t, long high, long low) {
+      int mask = t.length / width - 1;
+      // the upper bits are used to select the segment, so use the lower bits to select the slot
+      int index = (int)(high ^ (high >>> 32)) & mask;
+      while (true) {
+        int slot = index * width;
+        boolean empty = t[slot] == 0 && (width == 1 || t[slot + 1] == 0);
+        if (empty || (t[slot] == high && (width == 1 || t[slot + 1] == low))) {
+          return slot;
+        }
+        index = (index + 1) & mask;
+      }
+    }
+
+    private void resize() {
+      long[] newTable = new long[table.length * 2];
+      for (int slot = 0; slot < table.length; slot += width) {
+        long high = table[slot];
+        long low = width == 2 ? table[slot + 1] : 0L;
+        if (high != 0 || low != 0) {
+          int newSlot = find(newTable, high, low);
+          newTable[newSlot] = high;
+          if (width == 2) {
+            newTable[newSlot + 1] = low;
+          }
+        }
+      }
+      table = newTable;
+    }
+
+    synchronized int getCount() {
+      return count;
+    }
+
+    synchronized long getTableBytes() {
+      return table == null ? 0 : 16 + 8L * table.length;
+    }
+  }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.wcm.caravan.hal.comparison.HalComparisonSource;
+import io.wcm.caravan.hal.resource.HalResource;
+import rx.Single;
+
+/**
+ * A {@link HalComparisonSource} decorator that records every resource that was successfully resolved into a snapshot
+ * archive file, which can later be replayed with {@link SnapshotHalComparisonSource}.
+ * <p>
+ * The resources are appended to the archive as soon as they are resolved, and the index is written when the source is
+ * closed, so {@link #close()} must be called once the comparison is complete. If the same URL is resolved multiple
+ * times, only the first result is recorded.
+ * </p>
+ * <p>
+ * The archive starts with a header, followed by the compact JSON of each resource, and an index that maps each URL to
+ * the position of its JSON:
+ * </p>
+ * <pre>
+ * header: magic (8 bytes)
+ * record: JSON (UTF-8) of a resource
+ * index:  entry point URL, number of entries (int), and for each entry the URL, position (long) and length (int)
+ * footer: position of the index (long), magic (8 bytes)
+ * </pre>
+ * <p>
+ * Strings in the index are stored as their length (int) followed by their UTF-8 bytes.
+ * </p>
+ */
+@ProviderType
+public final class RecordingHalComparisonSource implements HalComparisonSource, Closeable {
+
+  static final byte[] MAGIC = "HALSNAP1".getBytes(StandardCharsets.US_ASCII);
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final HalComparisonSource delegate;
+  private final FileChannel channel;
+
+  private final Map<String, long[]> index = new LinkedHashMap<>();
+  private long position;
+  private boolean closed;
+
+  /**
+   * @param delegate the source that actually loads the resources
+   * @param archive the file to write (an existing file is replaced)
+   * @throws IOException if the file can't be created
+   */
+  public RecordingHalComparisonSource(HalComparisonSource delegate, Path archive) throws IOException {
+    this.delegate = delegate;
+    this.channel = FileChannel.open(archive, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    write(ByteBuffer.wrap(MAGIC));
+  }
+
+  @Override
+  public String getEntryPointUrl() {
+    return delegate.getEntryPointUrl();
+  }
+
+  @Override
+  public Single<HalResource> resolveLink(String url) {
+    return delegate.resolveLink(url).toObservable()
+        .doOnNext(resource -> record(url, resource))
+        .toSingle();
+  }
+
+  private void record(String url, HalResource resource) {
+    try {
+      byte[] json = OBJECT_MAPPER.writeValueAsBytes(resource.getModel());
+      synchronized (this) {
+        if (closed || index.containsKey(url)) {
+          return;
+        }
+        index.put(url, new long[] {
+            position, json.length
+        });
+        write(ByteBuffer.wrap(json));
+      }
+    }
+    catch (IOException ex) {
+      throw new UncheckedIOException("Failed to record resource " + url, ex);
+    }
+  }
+
+  /**
+   * @return the number of resources that were recorded so far
+   */
+  public synchronized int getRecordedResourceCount() {
+    return index.size();
+  }
+
+  /**
+   * Writes the index and closes the archive file. Resources that are resolved afterwards are not recorded.
+   * @throws IOException if the index can't be written
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      long indexPosition = position;
+
+      ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+      buffer = putString(buffer, delegate.getEntryPointUrl());
+      buffer = ensureCapacity(buffer, 4);
+      buffer.putInt(index.size());
+      for (Map.Entry<String, long[]> entry : index.entrySet()) {
+        buffer = putString(buffer, entry.getKey());
+        buffer = ensureCapacity(buffer, 12);
+        buffer.putLong(entry.getValue()[0]);
+        buffer.putInt((int)entry.getValue()[1]);
+      }
+      buffer = ensureCapacity(buffer, 8 + MAGIC.length);
+      buffer.putLong(indexPosition);
+      buffer.put(MAGIC);
+
+      buffer.flip();
+      write(buffer);
+    }
+    finally {
+      channel.close();
+    }
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer);
+    }
+  }
+
+  private ByteBuffer putString(ByteBuffer buffer, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer result = ensureCapacity(buffer, 4 + bytes.length);
+    result.putInt(bytes.length);
+    result.put(bytes);
+    return result;
+  }
+
+  /**
+   * Flushes the buffer to the file if there isn't enough space for the given number of bytes
+   */
+  private ByteBuffer ensureCapacity(ByteBuffer buffer, int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return buffer;
+    }
+    buffer.flip();
+    write(buffer);
+    return ByteBuffer.allocate(Math.max(buffer.capacity(), bytes));
+  }
+
+}
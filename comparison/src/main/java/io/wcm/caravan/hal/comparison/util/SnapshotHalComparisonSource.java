@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import io.wcm.caravan.hal.comparison.HalComparisonSource;
+import io.wcm.caravan.hal.resource.HalResource;
+import rx.Observable;
+import rx.Single;
+
+/**
+ * A {@link HalComparisonSource} that replays the resources from a snapshot archive that was written by
+ * {@link RecordingHalComparisonSource}. Only the index is read when the archive is opened: the archive is memory-mapped,
+ * and the JSON of each resource is parsed directly from the mapped file when it is resolved.
+ * <p>
+ * Resolving a URL that was not recorded fails with an {@link IOException}. Archives larger than 2 GB are not
+ * supported.
+ * </p>
+ */
+@ProviderType
+public final class SnapshotHalComparisonSource implements HalComparisonSource {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final Path archive;
+  private final ByteBuffer buffer;
+  private final String entryPointUrl;
+  private final Map<String, long[]> index;
+
+  /**
+   * @param archive a file that was written by {@link RecordingHalComparisonSource}
+   * @throws IOException if the file can't be read or is not a valid snapshot archive
+   */
+  public SnapshotHalComparisonSource(Path archive) throws IOException {
+    this.archive = archive;
+    try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot archive " + archive + " is larger than 2 GB");
+      }
+      // the mapping stays valid after the channel is closed
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      this.buffer = mapped.asReadOnlyBuffer();
+    }
+
+    ByteBuffer indexBuffer = buffer.duplicate();
+    try {
+      int magicLength = RecordingHalComparisonSource.MAGIC.length;
+      checkMagic(indexBuffer, 0);
+      checkMagic(indexBuffer, indexBuffer.limit() - magicLength);
+
+      indexBuffer.position((int)indexBuffer.getLong(indexBuffer.limit() - magicLength - 8));
+      this.entryPointUrl = getString(indexBuffer);
+      int entryCount = indexBuffer.getInt();
+      this.index = new HashMap<>(entryCount * 2);
+      for (int i = 0; i < entryCount; i++) {
+        String url = getString(indexBuffer);
+        index.put(url, new long[] {
+            indexBuffer.getLong(), indexBuffer.getInt()
+        });
+      }
+    }
+    catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+      throw new IOException("Snapshot archive " + archive + " is corrupt", ex);
+    }
+  }
+
+  private void checkMagic(ByteBuffer data, int position) throws IOException {
+    byte[] magic = new byte[RecordingHalComparisonSource.MAGIC.length];
+    if (position < 0) {
+      throw new IOException(archive + " is not a snapshot archive");
+    }
+    ByteBuffer magicBuffer = data.duplicate();
+    magicBuffer.position(position);
+    magicBuffer.get(magic);
+    if (!Arrays.equals(magic, RecordingHalComparisonSource.MAGIC)) {
+      throw new IOException(archive + " is not a complete snapshot archive");
+    }
+  }
+
+  private static String getString(ByteBuffer data) {
+    byte[] bytes = new byte[data.getInt()];
+    data.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public String getEntryPointUrl() {
+    return entryPointUrl;
+  }
+
+  @Override
+  public Single<HalResource> resolveLink(String url) {
+    return Observable.defer(() -> {
+      long[] entry = index.get(url);
+      if (entry == null) {
+        return Observable.<HalResource>error(new IOException("No resource with URL " + url + " was recorded in " + archive));
+      }
+      ByteBuffer json = buffer.duplicate();
+      json.position((int)entry[0]);
+      json.limit((int)(entry[0] + entry[1]));
+      try {
+        JsonNode model = OBJECT_MAPPER.readTree(new ByteBufferBackedInputStream(json));
+        return Observable.just(new HalResource((ObjectNode)model));
+      }
+      catch (IOException ex) {
+        return Observable.<HalResource>error(new IOException("Failed to parse resource " + url + " from " + archive, ex));
+      }
+    }).toSingle();
+  }
+
+  /**
+   * @return the number of resources in the archive
+   */
+  public int getResourceCount() {
+    return index.size();
+  }
+
+  /**
+   * @param url the URL of a resource
+   * @return true if a resource with this URL was recorded
+   */
+  public boolean contains(String url) {
+    return index.containsKey(url);
+  }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Calculates 128 bit Murmur3 fingerprints of URLs
+ */
+final class UrlFingerprint {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private UrlFingerprint() {
+    // static methods only
+  }
+
+  /**
+   * @param url the URL to hash
+   * @return a buffer with the 128 bit fingerprint, in little-endian order
+   */
+  static ByteBuffer of(String url) {
+    return ByteBuffer.wrap(HASH_FUNCTION.hashString(url, Charsets.UTF_8).asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+}
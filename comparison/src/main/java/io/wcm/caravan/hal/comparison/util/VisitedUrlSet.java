@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+import io.wcm.caravan.hal.comparison.HalComparisonStrategy;
+
+/**
+ * Keeps track of the URLs that have already been visited (or are about to be visited) during a comparison, so that
+ * each resource is only compared once. Implementations must support concurrent access.
+ * @see HalComparisonStrategy#createVisitedUrlSet()
+ * @see FingerprintVisitedUrlSet
+ * @see BloomFilterVisitedUrlSet
+ */
+@ConsumerType
+public interface VisitedUrlSet {
+
+  /**
+   * @param url the URL to add
+   * @return true if the URL was not contained in the set before
+   */
+  boolean add(String url);
+
+  /**
+   * @param url the URL to look up
+   * @return true if the URL is contained in the set
+   */
+  boolean contains(String url);
+
+  /**
+   * @return the number of calls to {@link #add(String)} and {@link #contains(String)} for URLs that were already
+   *         contained in the set
+   */
+  long getHitCount();
+
+  /**
+   * @return the (estimated) number of distinct URLs that were added
+   */
+  long getUrlCount();
+
+  /**
+   * @return the estimated number of bytes used by the set
+   */
+  long getMemoryUsage();
+
+}
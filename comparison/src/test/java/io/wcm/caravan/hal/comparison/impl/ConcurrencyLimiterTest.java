@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public class ConcurrencyLimiterTest {
+
+  private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_should_reject_limit_below_one() {
+    new ConcurrencyLimiter(0);
+  }
+
+  @Test
+  public void limit_should_queue_subscriptions_above_limit() {
+    PublishSubject<String> first = PublishSubject.create();
+    PublishSubject<String> second = PublishSubject.create();
+    PublishSubject<String> third = PublishSubject.create();
+
+    TestSubscriber<String> thirdSubscriber = new TestSubscriber<>();
+    limiter.limit(first).subscribe(new TestSubscriber<>());
+    limiter.limit(second).subscribe(new TestSubscriber<>());
+    limiter.limit(third).subscribe(thirdSubscriber);
+
+    assertTrue(first.hasObservers());
+    assertTrue(second.hasObservers());
+    assertFalse(third.hasObservers());
+
+    first.onNext("a");
+    first.onCompleted();
+
+    assertTrue(third.hasObservers());
+    third.onNext("c");
+    third.onCompleted();
+    thirdSubscriber.assertValue("c");
+    thirdSubscriber.assertCompleted();
+  }
+
+  @Test
+  public void limit_should_release_slot_on_unsubscribe() {
+    PublishSubject<String> first = PublishSubject.create();
+    PublishSubject<String> second = PublishSubject.create();
+    PublishSubject<String> third = PublishSubject.create();
+
+    Subscription subscription = limiter.limit(first).subscribe();
+    limiter.limit(second).subscribe();
+    limiter.limit(third).subscribe();
+
+    subscription.unsubscribe();
+
+    assertFalse(first.hasObservers());
+    assertTrue(third.hasObservers());
+  }
+
+  @Test
+  public void limit_should_skip_queued_subscriptions_that_were_unsubscribed() {
+    PublishSubject<String> first = PublishSubject.create();
+    PublishSubject<String> second = PublishSubject.create();
+    PublishSubject<String> third = PublishSubject.create();
+    PublishSubject<String> fourth = PublishSubject.create();
+
+    limiter.limit(first).subscribe();
+    limiter.limit(second).subscribe();
+    limiter.limit(third).subscribe().unsubscribe();
+    limiter.limit(fourth).subscribe();
+
+    first.onCompleted();
+
+    assertFalse(third.hasObservers());
+    assertTrue(fourth.hasObservers());
+    assertEquals(false, second.hasCompleted());
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import static io.wcm.caravan.hal.comparison.testing.StandardRelations.ITEM;
+import static io.wcm.caravan.hal.comparison.testing.StandardRelations.SECTION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.wcm.caravan.hal.comparison.HalComparisonHistory;
+import io.wcm.caravan.hal.comparison.HalComparisonStrategy;
+import io.wcm.caravan.hal.comparison.HalDifference;
+import io.wcm.caravan.hal.comparison.testing.TestHalComparisonStrategy;
+import io.wcm.caravan.hal.comparison.testing.resources.TestResource;
+import io.wcm.caravan.hal.comparison.testing.resources.TestResourceTree;
+
+
+public class HalComparisonHistoryImplTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private TestResourceTree expected;
+  private TestResourceTree actual;
+
+  private TestResource actualSection;
+  private TestResource actualLinkedItem;
+
+  private HalComparisonStrategy strategy;
+  private HalComparisonImpl comparison;
+
+  private Path file;
+
+  @Before
+  public void setUp() throws Exception {
+    expected = new TestResourceTree();
+    actual = new TestResourceTree();
+
+    createTree(expected, 1);
+    createTree(actual, 2);
+
+    strategy = new HalComparisonStrategy() {
+      // only use the default implementations from the interface
+    };
+    comparison = new HalComparisonImpl();
+
+    file = tempFolder.getRoot().toPath().resolve("history.json");
+  }
+
+  private void createTree(TestResourceTree tree, int number) {
+    TestResource firstSection = tree.createLinked(SECTION).setText("first");
+    firstSection.createEmbedded(ITEM).setNumber(1);
+    firstSection.createEmbedded(ITEM).setNumber(number);
+    TestResource linkedItem = firstSection.createLinked(ITEM).setNumber(3);
+
+    TestResource secondSection = tree.createLinked(SECTION).setText("second");
+
+    if (tree == actual) {
+      actualSection = secondSection;
+      actualLinkedItem = linkedItem;
+    }
+  }
+
+  private List<String> findDifferences(HalComparisonHistory history) {
+    return comparison.compare(expected, actual, strategy, history)
+        .map(diff -> diff.getChangeType() + " " + diff.getEntityType() + " " + diff.getHalContext() + " " + diff.getHalContext().getAllRelations()
+            + " " + diff.getHalContext().getExpectedUrl() + " " + diff.getExpectedJson() + " " + diff.getActualJson())
+        .toList().toBlocking().single();
+  }
+
+  private List<String> findDifferencesWithoutHistory() {
+    return comparison.compare(expected, actual, strategy).map(HalDifference::getHalContext).map(Object::toString)
+        .toList().toBlocking().single();
+  }
+
+  @Test
+  public void first_run_should_compare_all_pairs() throws Exception {
+    HalComparisonHistory history = comparison.loadHistory(file);
+    assertEquals(0, history.getPairCount());
+
+    List<String> diffs = findDifferences(history);
+
+    assertEquals(1, diffs.size());
+    assertTrue(diffs.get(0).startsWith("MODIFIED PROPERTY /section[0]/item[1]$.number [section, item]"));
+    assertEquals(4, history.getPairCount());
+    assertEquals(0, history.getReusedPairCount());
+    assertEquals(4, history.getRecomparedPairCount());
+  }
+
+  @Test
+  public void second_run_should_reuse_unchanged_pairs() throws Exception {
+    HalComparisonHistory history = comparison.loadHistory(file);
+    List<String> firstDiffs = findDifferences(history);
+
+    List<String> secondDiffs = findDifferences(history);
+
+    assertEquals(firstDiffs, secondDiffs);
+    assertEquals(4, history.getPairCount());
+    assertEquals(4, history.getReusedPairCount());
+    assertEquals(0, history.getRecomparedPairCount());
+  }
+
+  @Test
+  public void changed_pairs_should_be_compared_again() throws Exception {
+    HalComparisonHistory history = comparison.loadHistory(file);
+    findDifferences(history);
+
+    actualSection.setText("changed");
+    // the linked item is only reached through the first section, which is unchanged
+    actualLinkedItem.setNumber(4);
+
+    List<String> diffs = findDifferences(history);
+
+    assertEquals(findDifferencesWithoutHistory(), diffs.stream().map(diff -> diff.split(" ")[2]).collect(Collectors.toList()));
+    assertEquals(3, diffs.size());
+    assertEquals(2, history.getReusedPairCount());
+    assertEquals(2, history.getRecomparedPairCount());
+  }
+
+  @Test
+  public void saved_history_should_be_loaded_again() throws Exception {
+    HalComparisonHistory history = comparison.loadHistory(file);
+    List<String> firstDiffs = findDifferences(history);
+    history.save();
+
+    HalComparisonHistory loadedHistory = comparison.loadHistory(file);
+    assertEquals(4, loadedHistory.getPairCount());
+
+    List<String> secondDiffs = findDifferences(loadedHistory);
+
+    assertEquals(firstDiffs, secondDiffs);
+    assertEquals(4, loadedHistory.getReusedPairCount());
+  }
+
+  @Test
+  public void history_should_not_be_updated_if_comparison_is_not_completed() throws Exception {
+    HalComparisonHistory history = comparison.loadHistory(file);
+
+    comparison.compare(expected, actual, strategy, history).take(1).toBlocking().single();
+
+    assertEquals(0, history.getPairCount());
+  }
+
+  @Test
+  public void history_should_not_be_reused_for_other_strategy_class() throws Exception {
+    HalComparisonHistory history = comparison.loadHistory(file);
+    findDifferences(history);
+    history.save();
+
+    strategy = new TestHalComparisonStrategy();
+    HalComparisonHistory loadedHistory = comparison.loadHistory(file);
+    findDifferences(loadedHistory);
+
+    assertEquals(0, loadedHistory.getReusedPairCount());
+    assertEquals(4, loadedHistory.getRecomparedPairCount());
+  }
+
+  @Test
+  public void history_should_not_be_reused_for_other_history_key() throws Exception {
+    strategy = new TestHalComparisonStrategy().setHistoryKey("v1");
+    HalComparisonHistory history = comparison.loadHistory(file);
+    findDifferences(history);
+    history.save();
+
+    strategy = new TestHalComparisonStrategy().setHistoryKey("v2");
+    HalComparisonHistory loadedHistory = comparison.loadHistory(file);
+    findDifferences(loadedHistory);
+
+    assertEquals(0, loadedHistory.getReusedPairCount());
+    assertEquals(4, loadedHistory.getRecomparedPairCount());
+  }
+
+  @Test
+  public void pairs_that_were_not_reached_should_be_kept_if_budget_was_used_up() throws Exception {
+    strategy = new TestHalComparisonStrategy();
+    HalComparisonHistory history = comparison.loadHistory(file);
+    findDifferences(history);
+
+    strategy = new TestHalComparisonStrategy().setMaxResourcesPerSource(2);
+    List<String> diffs = findDifferences(history);
+
+    assertTrue(diffs.get(diffs.size() - 1).startsWith("INCOMPLETE"));
+    assertEquals(2, history.getReusedPairCount());
+    assertEquals(4, history.getPairCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void compare_should_reject_other_history_implementations() throws Exception {
+    comparison.compare(expected, actual, strategy, new HalComparisonHistory() {
+
+      @Override
+      public int getPairCount() {
+        return 0;
+      }
+
+      @Override
+      public int getReusedPairCount() {
+        return 0;
+      }
+
+      @Override
+      public int getRecomparedPairCount() {
+        return 0;
+      }
+
+      @Override
+      public void save() {
+        // not used
+      }
+    });
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import static io.wcm.caravan.hal.comparison.testing.StandardRelations.ITEM;
+import static io.wcm.caravan.hal.comparison.testing.StandardRelations.SECTION;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.wcm.caravan.hal.comparison.HalComparisonStrategy;
+import io.wcm.caravan.hal.comparison.testing.resources.TestResourceTree;
+
+public class HalComparisonImplAllocationTest {
+
+  private TestResourceTree expected;
+  private TestResourceTree actual;
+
+  private HalComparisonStrategy strategy;
+  private HalComparisonImpl comparison;
+
+  @Before
+  public void setUp() {
+    expected = new TestResourceTree();
+    actual = new TestResourceTree();
+
+    expected.getEntryPoint().setText("foo");
+    expected.createEmbedded(ITEM).setNumber(123);
+    expected.createLinked(SECTION).setText("section");
+
+    actual.getEntryPoint().setText("bar");
+    actual.createEmbedded(ITEM).setNumber(456);
+    actual.createLinked(SECTION).setText("section");
+
+    strategy = new HalComparisonStrategy() {
+      // only use the default implementations from the interface
+    };
+    comparison = new HalComparisonImpl();
+  }
+
+  @Test
+  public void compareSmallResources() {
+    // an entry point with one embedded and one linked resource, and two differences
+    AllocationBudget.of("HalComparison#compare", 97000).measuredOn(17).warmupIterations(2000).iterations(100)
+        .check(() -> comparison.compare(expected, actual, strategy).toList().toBlocking().single());
+  }
+
+}
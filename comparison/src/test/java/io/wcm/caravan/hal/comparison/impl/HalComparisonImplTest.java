@@ -20,6 +20,7 @@
 package io.wcm.caravan.hal.comparison.impl;
 
 import static io.wcm.caravan.hal.comparison.HalDifference.ChangeType.ADDITIONAL;
+import static io.wcm.caravan.hal.comparison.HalDifference.ChangeType.INCOMPLETE;
 import static io.wcm.caravan.hal.comparison.HalDifference.ChangeType.MISSING;
 import static io.wcm.caravan.hal.comparison.HalDifference.ChangeType.MODIFIED;
 import static io.wcm.caravan.hal.comparison.HalDifference.ChangeType.REORDERED;
@@ -27,21 +28,33 @@ import static io.wcm.caravan.hal.comparison.HalDifference.EntityType.EMBEDDED;
 import static io.wcm.caravan.hal.comparison.HalDifference.EntityType.LINK;
 import static io.wcm.caravan.hal.comparison.HalDifference.EntityType.PROPERTY;
 import static io.wcm.caravan.hal.comparison.testing.HalDifferenceAssertions.assertOnlyOneDifference;
+import static io.wcm.caravan.hal.comparison.testing.StandardRelations.COLLECTION;
 import static io.wcm.caravan.hal.comparison.testing.StandardRelations.ITEM;
 import static io.wcm.caravan.hal.comparison.testing.StandardRelations.SECTION;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.reactivestreams.Publisher;
 
 import io.wcm.caravan.hal.comparison.HalComparisonContext;
 import io.wcm.caravan.hal.comparison.HalComparisonStrategy;
 import io.wcm.caravan.hal.comparison.HalDifference;
+import io.wcm.caravan.hal.comparison.testing.ManualRequestSubscriber;
 import io.wcm.caravan.hal.comparison.testing.TestHalComparisonStrategy;
+import io.wcm.caravan.hal.comparison.testing.resources.CountingHalComparisonSource;
+import io.wcm.caravan.hal.comparison.testing.resources.DelayingHalComparisonSource;
 import io.wcm.caravan.hal.comparison.testing.resources.TestResource;
 import io.wcm.caravan.hal.comparison.testing.resources.TestResourceTree;
+import io.wcm.caravan.hal.comparison.util.BloomFilterVisitedUrlSet;
+import io.wcm.caravan.hal.comparison.util.FingerprintVisitedUrlSet;
 import rx.Observable;
 
 
@@ -358,4 +371,325 @@ public class HalComparisonImplTest {
 
     assertOnlyOneDifference(diff, MODIFIED, PROPERTY, "/item$.array[2]");
   }
+
+  private void createLinkedTreeWithDifferences(int sections, int itemsPerSection) {
+    createLinkedTreeWithDifferences(sections, itemsPerSection, false);
+  }
+
+  private void createLinkedTreeWithDifferences(int sections, int itemsPerSection, boolean shareItems) {
+    List<TestResource> expectedSections = new ArrayList<>();
+    List<TestResource> actualSections = new ArrayList<>();
+    List<List<TestResource>> expectedItems = new ArrayList<>();
+    List<List<TestResource>> actualItems = new ArrayList<>();
+    for (int s = 0; s < sections; s++) {
+      TestResource expectedSection = expected.createLinked(SECTION).setNumber(s);
+      TestResource actualSection = actual.createLinked(SECTION).setNumber(s % 2 == 0 ? s : -s);
+      expectedSection.createEmbedded(ITEM).setText("embedded");
+      actualSection.createEmbedded(ITEM).setText("embedded " + s);
+      expectedSections.add(expectedSection);
+      actualSections.add(actualSection);
+      expectedItems.add(new ArrayList<>());
+      actualItems.add(new ArrayList<>());
+      for (int i = 0; i < itemsPerSection; i++) {
+        expectedItems.get(s).add(expectedSection.createLinked(ITEM).setText("foo"));
+        actualItems.get(s).add(actualSection.createLinked(ITEM).setText(i % 3 == 0 ? "bar" : "foo"));
+      }
+    }
+    if (shareItems) {
+      // each section also links to the items of the next section, and the entry point to the first item of the last
+      for (int s = 0; s < sections; s++) {
+        for (int i = 0; i < itemsPerSection; i++) {
+          expectedSections.get(s).addLinkTo(ITEM, expectedItems.get((s + 1) % sections).get(i));
+          actualSections.get(s).addLinkTo(ITEM, actualItems.get((s + 1) % sections).get(i));
+        }
+      }
+      expected.getEntryPoint().addLinkTo(ITEM, expectedItems.get(sections - 1).get(0));
+      actual.getEntryPoint().addLinkTo(ITEM, actualItems.get(sections - 1).get(0));
+    }
+  }
+
+  private static List<String> toStrings(List<HalDifference> diffs) {
+    return diffs.stream()
+        .map(diff -> diff.getHalContext() + " " + diff.getDescription())
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void concurrent_link_resolution_should_emit_differences_in_sequential_order() {
+
+    // some of the items are linked from several resources, but they must always be compared in the same place
+    createLinkedTreeWithDifferences(4, 5, true);
+
+    List<String> sequentialDiffs = toStrings(findDifferences());
+
+    DelayingHalComparisonSource delayedExpected = new DelayingHalComparisonSource(expected);
+    DelayingHalComparisonSource delayedActual = new DelayingHalComparisonSource(actual);
+    strategy = new TestHalComparisonStrategy().setMaxConcurrentLinkResolutions(3);
+
+    List<String> concurrentDiffs = toStrings(comparison.compare(delayedExpected, delayedActual, strategy).toList().toBlocking().single());
+
+    assertEquals(sequentialDiffs, concurrentDiffs);
+    // two of the sections, all embedded items and two linked items per section are different
+    assertEquals(2 + 4 + 4 * 2, concurrentDiffs.size());
+  }
+
+  @Test
+  public void concurrent_link_resolution_should_respect_limit() {
+
+    createLinkedTreeWithDifferences(5, 5);
+
+    DelayingHalComparisonSource delayedExpected = new DelayingHalComparisonSource(expected);
+    DelayingHalComparisonSource delayedActual = new DelayingHalComparisonSource(actual);
+    strategy = new TestHalComparisonStrategy().setMaxConcurrentLinkResolutions(3);
+
+    comparison.compare(delayedExpected, delayedActual, strategy).toList().toBlocking().single();
+
+    assertTrue("max concurrency was " + delayedExpected.getMaxActiveCount(), delayedExpected.getMaxActiveCount() <= 3);
+    assertTrue("max concurrency was " + delayedExpected.getMaxActiveCount(), delayedExpected.getMaxActiveCount() > 1);
+  }
+
+  @Test
+  public void sequential_link_resolution_should_resolve_one_pair_at_a_time() {
+
+    createLinkedTreeWithDifferences(3, 3);
+
+    DelayingHalComparisonSource delayedExpected = new DelayingHalComparisonSource(expected);
+    DelayingHalComparisonSource delayedActual = new DelayingHalComparisonSource(actual);
+    strategy = new TestHalComparisonStrategy();
+
+    comparison.compare(delayedExpected, delayedActual, strategy).toList().toBlocking().single();
+
+    assertEquals(1, delayedExpected.getMaxActiveCount());
+  }
+
+  @Test
+  public void visited_url_set_should_contain_each_compared_resource() {
+
+    createLinkedTreeWithDifferences(3, 3);
+
+    FingerprintVisitedUrlSet visitedUrls = new FingerprintVisitedUrlSet(64);
+    strategy = new TestHalComparisonStrategy().setVisitedUrlSet(visitedUrls);
+
+    List<HalDifference> diffs = findDifferences();
+
+    // one of the sections, all embedded items and one linked item per section are different
+    assertEquals(1 + 3 + 3, diffs.size());
+    // the entry point, three sections and nine items
+    assertEquals(13, visitedUrls.getUrlCount());
+    assertTrue(visitedUrls.getHitCount() >= 13);
+  }
+
+  @Test
+  public void bloom_filter_visited_url_set_should_find_same_differences() {
+
+    createLinkedTreeWithDifferences(3, 3);
+
+    List<String> exactDiffs = toStrings(findDifferences());
+
+    strategy = new TestHalComparisonStrategy().setVisitedUrlSet(new BloomFilterVisitedUrlSet(1000, 0.001));
+    List<String> approximateDiffs = toStrings(findDifferences());
+
+    assertEquals(exactDiffs, approximateDiffs);
+  }
+
+  private static void assertIncompleteAtEnd(List<HalDifference> diffs, String expectedHalPath, String expectedDescription) {
+    HalDifference last = diffs.get(diffs.size() - 1);
+    assertEquals(INCOMPLETE, last.getChangeType());
+    assertEquals(LINK, last.getEntityType());
+    assertEquals(expectedHalPath, last.getHalContext().toString());
+    assertTrue(last.getDescription(), last.getDescription().contains(expectedDescription));
+    assertEquals(1, diffs.stream().filter(diff -> diff.getChangeType() == INCOMPLETE).count());
+  }
+
+  @Test
+  public void max_hal_path_depth_should_be_respected() {
+
+    createLinkedTreeWithDifferences(3, 3);
+    strategy = new TestHalComparisonStrategy().setMaxHalPathDepth(1);
+
+    List<HalDifference> diffs = findDifferences();
+
+    // one of the sections and all embedded items are different, but the linked items are not compared
+    assertEquals(1 + 3 + 1, diffs.size());
+    assertIncompleteAtEnd(diffs, "/section[0]/item[0]", "9 links were not followed");
+  }
+
+  @Test
+  public void max_resources_per_source_should_be_respected() {
+
+    createLinkedTreeWithDifferences(3, 3);
+    strategy = new TestHalComparisonStrategy().setMaxResourcesPerSource(5);
+
+    List<HalDifference> diffs = findDifferences();
+
+    // the entry point, the first section and its three linked items are compared
+    assertEquals(1 + 1 + 1, diffs.size());
+    assertIncompleteAtEnd(diffs, "/section[1]", "2 links were not followed");
+  }
+
+  @Test
+  public void max_resources_per_source_should_not_request_skipped_resources() {
+
+    createLinkedTreeWithDifferences(3, 3);
+    CountingHalComparisonSource countingExpected = new CountingHalComparisonSource(expected);
+    CountingHalComparisonSource countingActual = new CountingHalComparisonSource(actual);
+    TestHalComparisonStrategy testStrategy = new TestHalComparisonStrategy();
+    testStrategy.setMaxResourcesPerSource(5);
+    strategy = testStrategy.setMaxConcurrentLinkResolutions(3);
+
+    comparison.compare(countingExpected, countingActual, strategy).toList().toBlocking().single();
+
+    // the links that were skipped because of the budget must not even be passed to the sources
+    assertEquals(5, countingExpected.getRequestCount());
+    assertEquals(5, countingActual.getRequestCount());
+  }
+
+  @Test
+  public void max_duration_should_be_respected() {
+
+    createLinkedTreeWithDifferences(3, 3);
+    strategy = new TestHalComparisonStrategy().setMaxDuration(Duration.ZERO);
+
+    List<HalDifference> diffs = findDifferences();
+
+    // only the entry point is compared
+    assertEquals(1, diffs.size());
+    assertIncompleteAtEnd(diffs, "/section[0]", "3 links were not followed");
+  }
+
+  @Test
+  public void unlimited_budgets_should_not_add_differences() {
+
+    createLinkedTreeWithDifferences(3, 3);
+
+    List<HalDifference> diffs = findDifferences();
+
+    assertEquals(0, diffs.stream().filter(diff -> diff.getChangeType() == INCOMPLETE).count());
+  }
+
+  @Test
+  public void max_requests_per_second_should_be_respected() {
+
+    createLinkedTreeWithDifferences(3, 0);
+    strategy = new TestHalComparisonStrategy().setMaxRequestsPerSecond(20);
+
+    long start = System.nanoTime();
+    List<HalDifference> diffs = findDifferences();
+    long millis = (System.nanoTime() - start) / 1000000;
+
+    // the entry point and three sections are loaded from each source, with at least 50ms in between
+    assertEquals(1 + 3, diffs.size());
+    assertTrue("comparison took only " + millis + "ms", millis >= 150);
+  }
+
+  @Test
+  public void publisher_should_only_resolve_resources_on_demand() {
+
+    createLinkedTreeWithDifferences(20, 5);
+    CountingHalComparisonSource countingExpected = new CountingHalComparisonSource(expected);
+    CountingHalComparisonSource countingActual = new CountingHalComparisonSource(actual);
+
+    ManualRequestSubscriber<HalDifference> subscriber = new ManualRequestSubscriber<>();
+    comparison.publishDifferences(countingExpected, countingActual, new TestHalComparisonStrategy()).subscribe(subscriber);
+
+    assertEquals(0, countingExpected.getResolveCount());
+
+    // the first difference is in the first section's embedded item
+    subscriber.request(1);
+    assertEquals(1, subscriber.getItems().size());
+    assertEquals(2, countingExpected.getResolveCount());
+    assertEquals(2, countingActual.getResolveCount());
+
+    subscriber.request(Long.MAX_VALUE);
+    assertTrue(subscriber.isCompleted());
+    assertEquals(1 + 20 + 20 * 5, countingExpected.getResolveCount());
+    assertEquals(toStrings(findDifferences()), toStrings(subscriber.getItems()));
+  }
+
+  @Test
+  public void publisher_should_stop_resolving_resources_when_cancelled() {
+
+    createLinkedTreeWithDifferences(20, 5);
+    CountingHalComparisonSource countingExpected = new CountingHalComparisonSource(expected);
+
+    ManualRequestSubscriber<HalDifference> subscriber = new ManualRequestSubscriber<>();
+    comparison.publishDifferences(countingExpected, actual, new TestHalComparisonStrategy()).subscribe(subscriber);
+
+    subscriber.request(5);
+    int resolveCount = countingExpected.getResolveCount();
+    subscriber.cancel();
+    subscriber.request(10);
+
+    assertEquals(5, subscriber.getItems().size());
+    assertEquals(resolveCount, countingExpected.getResolveCount());
+    assertFalse(subscriber.isCompleted());
+  }
+
+  @Test
+  public void publisher_should_start_new_comparison_for_each_subscription() {
+
+    createLinkedTreeWithDifferences(3, 3);
+    Publisher<HalDifference> publisher = comparison.publishDifferences(expected, actual, new TestHalComparisonStrategy());
+
+    ManualRequestSubscriber<HalDifference> first = new ManualRequestSubscriber<>();
+    publisher.subscribe(first);
+    first.request(Long.MAX_VALUE);
+
+    ManualRequestSubscriber<HalDifference> second = new ManualRequestSubscriber<>();
+    publisher.subscribe(second);
+    second.request(Long.MAX_VALUE);
+
+    assertEquals(1 + 3 + 3, first.getItems().size());
+    assertEquals(toStrings(first.getItems()), toStrings(second.getItems()));
+  }
+
+  @Test
+  public void links_in_identical_embedded_resources_should_be_followed() {
+
+    expected.createEmbedded(ITEM).setNumber(1).createLinked(SECTION).setText("foo");
+
+    actual.createEmbedded(ITEM).setNumber(1).createLinked(SECTION).setText("bar");
+
+    List<HalDifference> diff = findDifferences();
+
+    assertOnlyOneDifference(diff, MODIFIED, PROPERTY, "/item/section$.text");
+  }
+
+  @Test
+  public void links_in_identical_embedded_resources_should_not_be_followed_if_disabled() {
+
+    expected.createEmbedded(ITEM).setNumber(1).createLinked(SECTION).setText("foo");
+    expected.createEmbedded(ITEM).setNumber(2).createLinked(SECTION).setText("foo");
+
+    actual.createEmbedded(ITEM).setNumber(1).createLinked(SECTION).setText("bar");
+    actual.createEmbedded(ITEM).setNumber(3).createLinked(SECTION).setText("bar");
+
+    strategy = new TestHalComparisonStrategy().setFollowLinksInIdenticalEmbeddedResources(false);
+
+    List<String> diffs = toStrings(findDifferences());
+
+    // only the second item is different, so the link in the first item is not followed
+    assertEquals(2, diffs.size());
+    assertTrue(diffs.get(0).contains("/item[1]$.number"));
+    assertTrue(diffs.get(1).contains("/item[1]/section$.text"));
+  }
+
+  @Test
+  public void links_in_embedded_resources_of_identical_linked_resources_should_not_be_followed_if_disabled() {
+
+    TestResource expectedItem = expected.createLinked(ITEM).setNumber(1);
+    expectedItem.createLinked(SECTION).setText("foo");
+    expectedItem.createEmbedded(ITEM).setNumber(2).createLinked(COLLECTION).setText("foo");
+
+    TestResource actualItem = actual.createLinked(ITEM).setNumber(1);
+    actualItem.createLinked(SECTION).setText("bar");
+    actualItem.createEmbedded(ITEM).setNumber(2).createLinked(COLLECTION).setText("bar");
+
+    strategy = new TestHalComparisonStrategy().setFollowLinksInIdenticalEmbeddedResources(false);
+
+    List<HalDifference> diff = findDifferences();
+
+    // the linked item is identical, but only its own links are followed
+    assertOnlyOneDifference(diff, MODIFIED, PROPERTY, "/item/section$.text");
+  }
 }
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.wcm.caravan.hal.comparison.testing.ManualRequestSubscriber;
+import rx.Observable;
+
+public class ObservablePublisherTest {
+
+  private final AtomicInteger emitted = new AtomicInteger();
+
+  private ObservablePublisher<Integer> createPublisher(int count) {
+    return new ObservablePublisher<>(Observable.range(1, count).doOnNext(i -> emitted.incrementAndGet()));
+  }
+
+  @Test
+  public void subscribe_should_not_emit_without_demand() {
+    ManualRequestSubscriber<Integer> subscriber = new ManualRequestSubscriber<>();
+    createPublisher(10).subscribe(subscriber);
+
+    assertEquals(0, emitted.get());
+    assertTrue(subscriber.getItems().isEmpty());
+  }
+
+  @Test
+  public void request_should_emit_requested_items_only() {
+    ManualRequestSubscriber<Integer> subscriber = new ManualRequestSubscriber<>();
+    createPublisher(10).subscribe(subscriber);
+
+    subscriber.request(2);
+    assertEquals(Arrays.asList(1, 2), subscriber.getItems());
+    assertEquals(2, emitted.get());
+
+    subscriber.request(3);
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), subscriber.getItems());
+    assertFalse(subscriber.isCompleted());
+
+    subscriber.request(Long.MAX_VALUE);
+    assertEquals(10, subscriber.getItems().size());
+    assertTrue(subscriber.isCompleted());
+    assertNull(subscriber.getError());
+  }
+
+  @Test
+  public void request_should_signal_error_for_non_positive_demand() {
+    ManualRequestSubscriber<Integer> subscriber = new ManualRequestSubscriber<>();
+    createPublisher(10).subscribe(subscriber);
+
+    subscriber.request(0);
+    subscriber.request(5);
+
+    assertTrue(subscriber.getError() instanceof IllegalArgumentException);
+    assertTrue(subscriber.getItems().isEmpty());
+  }
+
+  @Test
+  public void cancel_should_stop_emissions() {
+    ManualRequestSubscriber<Integer> subscriber = new ManualRequestSubscriber<>();
+    createPublisher(10).subscribe(subscriber);
+
+    subscriber.request(1);
+    subscriber.cancel();
+    subscriber.request(5);
+
+    assertEquals(Arrays.asList(1), subscriber.getItems());
+    assertFalse(subscriber.isCompleted());
+  }
+
+  @Test
+  public void errors_should_be_forwarded() {
+    ManualRequestSubscriber<Integer> subscriber = new ManualRequestSubscriber<>();
+    new ObservablePublisher<Integer>(Observable.error(new IllegalStateException())).subscribe(subscriber);
+
+    assertTrue(subscriber.getError() instanceof IllegalStateException);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void subscribe_should_reject_null() {
+    createPublisher(1).subscribe(null);
+  }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.wcm.caravan.hal.comparison.testing.resources.TestResourceTree;
+
+public class RateLimitedHalComparisonSourceTest {
+
+  private final TestResourceTree tree = new TestResourceTree();
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_should_reject_zero_rate() {
+    new RateLimitedHalComparisonSource(tree, 0);
+  }
+
+  @Test
+  public void reserveSlot_should_space_requests_by_interval() {
+    RateLimitedHalComparisonSource source = new RateLimitedHalComparisonSource(tree, 10);
+
+    long first = source.reserveSlot();
+    long second = source.reserveSlot();
+    long third = source.reserveSlot();
+
+    assertTrue(first <= 0);
+    assertEquals(100, TimeUnit.NANOSECONDS.toMillis(second), 10);
+    assertEquals(200, TimeUnit.NANOSECONDS.toMillis(third), 10);
+  }
+
+  @Test
+  public void resolveLink_should_delegate() {
+    RateLimitedHalComparisonSource source = new RateLimitedHalComparisonSource(tree, 1000);
+
+    assertEquals(tree.getEntryPointUrl(), source.getEntryPointUrl());
+    assertEquals(tree.getEntryPoint().asHalResource(), source.resolveLink("/").toObservable().toBlocking().single());
+  }
+
+}
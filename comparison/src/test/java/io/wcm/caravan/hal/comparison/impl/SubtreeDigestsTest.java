@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+
+public class SubtreeDigestsTest {
+
+  private SubtreeDigests digests;
+
+  @Before
+  public void setUp() {
+    digests = new SubtreeDigests();
+  }
+
+  private static HalResource createResource(int number) {
+    HalResource item = new HalResource("/item");
+    item.getModel().put("number", number);
+    HalResource section = new HalResource("/section").addEmbedded("item", item);
+    return new HalResource("/").addEmbedded("section", section);
+  }
+
+  @Test
+  public void resources_with_same_content_should_be_identical() {
+    assertTrue(digests.isIdentical(createResource(1), createResource(1)));
+  }
+
+  @Test
+  public void difference_in_deeply_embedded_resource_should_be_detected() {
+    HalResource expected = createResource(1);
+    HalResource actual = createResource(2);
+
+    assertFalse(digests.isIdentical(expected, actual));
+    // the embedded resources are only different in the embedded item
+    assertFalse(digests.isIdentical(expected.getEmbedded("section").get(0), actual.getEmbedded("section").get(0)));
+  }
+
+  @Test
+  public void different_number_types_should_not_be_identical() {
+    HalResource expected = new HalResource();
+    expected.getModel().put("number", 1);
+    HalResource actual = new HalResource();
+    actual.getModel().put("number", 1.0);
+
+    assertFalse(digests.isIdentical(expected, actual));
+  }
+
+  @Test
+  public void embedded_array_should_not_be_identical_to_single_resource() {
+    HalResource expected = new HalResource().addEmbedded("item", new HalResource("/item"));
+    HalResource actual = new HalResource().setEmbedded("item", new HalResource("/item"));
+
+    assertFalse(digests.isIdentical(expected, actual));
+  }
+
+  @Test
+  public void containsLinks_should_ignore_self_links() {
+    HalResource withSelfLink = createResource(1);
+    HalResource withEmbeddedLink = createResource(1);
+    withEmbeddedLink.getEmbedded("section").get(0).setLink("related", new Link("/related"));
+
+    assertFalse(digests.isIdentical(withSelfLink, withEmbeddedLink));
+    assertFalse(digests.containsLinks(withSelfLink));
+    assertTrue(digests.containsLinks(withEmbeddedLink));
+  }
+
+}
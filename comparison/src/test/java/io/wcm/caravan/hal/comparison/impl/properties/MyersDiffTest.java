@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.impl.properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+
+public class MyersDiffTest {
+
+  private static int[] findMatches(String expected, String actual) {
+    return MyersDiff.findMatches(toFingerprints(expected), toFingerprints(actual));
+  }
+
+  private static long[] toFingerprints(String chars) {
+    return chars.chars().asLongStream().toArray();
+  }
+
+  private static int countMatches(int[] matches) {
+    return (int)Arrays.stream(matches).filter(match -> match >= 0).count();
+  }
+
+  @Test
+  public void equal_sequences_should_be_matched_completely() {
+    assertArrayEquals(new int[] {
+        0, 1, 2
+    }, findMatches("abc", "abc"));
+  }
+
+  @Test
+  public void deleted_and_inserted_elements_should_not_be_matched() {
+    assertArrayEquals(new int[] {
+        -1, 0, 2, -1
+    }, findMatches("abcd", "bxc"));
+  }
+
+  @Test
+  public void longest_common_subsequence_should_be_found() {
+    // the classic example from Myers' paper has an edit distance of 5
+    int[] matches = findMatches("abcabba", "cbabac");
+
+    assertEquals(4, countMatches(matches));
+    int previous = -1;
+    for (int i = 0; i < matches.length; i++) {
+      if (matches[i] >= 0) {
+        assertEquals("abcabba".charAt(i), "cbabac".charAt(matches[i]));
+        assertEquals(true, matches[i] > previous);
+        previous = matches[i];
+      }
+    }
+  }
+
+  @Test
+  public void empty_sequences_should_be_supported() {
+    assertArrayEquals(new int[0], findMatches("", "abc"));
+    assertArrayEquals(new int[] {
+        -1, -1
+    }, findMatches("ab", ""));
+  }
+
+  @Test
+  public void elements_should_not_be_matched_beyond_max_edit_distance() {
+    long[] expected = new long[MyersDiff.MAX_EDIT_DISTANCE + 1];
+    long[] actual = new long[MyersDiff.MAX_EDIT_DISTANCE + 1];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = i;
+      actual[i] = -i - 1;
+    }
+    // the common element in the middle is only found if all other elements are inserted or deleted
+    expected[expected.length / 2] = 1000000;
+    actual[actual.length / 2] = 1000000;
+
+    assertEquals(0, countMatches(MyersDiff.findMatches(expected, actual)));
+  }
+
+}
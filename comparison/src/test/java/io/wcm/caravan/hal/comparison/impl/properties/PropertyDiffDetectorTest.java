@@ -27,7 +27,9 @@ import static io.wcm.caravan.hal.comparison.HalDifference.EntityType.PROPERTY;
 import static io.wcm.caravan.hal.comparison.testing.HalDifferenceAssertions.assertDifference;
 import static io.wcm.caravan.hal.comparison.testing.HalDifferenceAssertions.assertOnlyOneDifference;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertEquals;
@@ -227,6 +229,81 @@ public class PropertyDiffDetectorTest {
     assertOnlyOneDifference(diffs, REORDERED, PROPERTY, "/$.array");
   }
 
+  @Test
+  public void reordered_items_should_be_described_with_source_and_target_index() throws Exception {
+
+    HalResource expected = new HalResource(new TestPojo().withArray("a", "b", "c", "d"));
+    HalResource actual = new HalResource(new TestPojo().withArray("b", "c", "d", "a"));
+
+    List<HalDifference> diffs = findDifferences(expected, actual);
+
+    assertOnlyOneDifference(diffs, REORDERED, PROPERTY, "/$.array");
+    assertThat(diffs.get(0).getDescription(), endsWith("(moved [0] to [3])"));
+  }
+
+  @Test
+  public void description_of_reordered_items_should_be_limited() throws Exception {
+
+    String[] expectedItems = new String[30];
+    String[] actualItems = new String[30];
+    for (int i = 0; i < 30; i++) {
+      expectedItems[i] = "item" + i;
+      actualItems[i] = "item" + (29 - i);
+    }
+
+    List<HalDifference> diffs = findDifferences(new HalResource(new TestPojo().withArray(expectedItems)),
+        new HalResource(new TestPojo().withArray(actualItems)));
+
+    assertOnlyOneDifference(diffs, REORDERED, PROPERTY, "/$.array");
+    assertThat(diffs.get(0).getDescription(), containsString("(moved [0] to [29], [1] to [28], "));
+    assertThat(diffs.get(0).getDescription(), endsWith(" and 19 more elements)"));
+  }
+
+  @Test
+  public void reordered_and_additional_items_should_be_detected() throws Exception {
+
+    HalResource expected = new HalResource(new TestPojo().withArray("a", "b", "c", "d"));
+    HalResource actual = new HalResource(new TestPojo().withArray("b", "c", "a", "d", "e"));
+
+    List<HalDifference> diffs = findDifferences(expected, actual);
+
+    assertThat(diffs, hasSize(2));
+    assertDifference(diffs.get(0), REORDERED, PROPERTY, "/$.array");
+    assertDifference(diffs.get(1), ADDITIONAL, PROPERTY, "/$.array[4]");
+  }
+
+  @Test
+  public void modified_item_should_be_detected_after_additional_item() throws Exception {
+
+    HalResource expected = new HalResource(new TestPojo().withArray("a", "b", "c"));
+    HalResource actual = new HalResource(new TestPojo().withArray("x", "a", "1", "c"));
+
+    List<HalDifference> diffs = findDifferences(expected, actual);
+
+    assertThat(diffs, hasSize(2));
+    assertDifference(diffs.get(0), ADDITIONAL, PROPERTY, "/$.array[0]");
+    assertDifference(diffs.get(1), MODIFIED, PROPERTY, "/$.array[1]");
+  }
+
+  @Test
+  public void single_result_for_large_arrays_with_one_additional_item_in_the_middle() throws Exception {
+
+    String[] expectedItems = new String[10000];
+    String[] actualItems = new String[10001];
+    for (int i = 0; i < expectedItems.length; i++) {
+      expectedItems[i] = "item" + i;
+      actualItems[i < 5000 ? i : i + 1] = "item" + i;
+    }
+    actualItems[5000] = "added";
+
+    HalResource expected = new HalResource(new TestPojo().withArray(expectedItems));
+    HalResource actual = new HalResource(new TestPojo().withArray(actualItems));
+
+    List<HalDifference> diffs = findDifferences(expected, actual);
+
+    assertOnlyOneDifference(diffs, ADDITIONAL, PROPERTY, "/$.array[5000]");
+  }
+
   @Test
   public void single_result_for_property_of_different_type() throws Exception {
 
@@ -0,0 +1,82 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.testing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * A Reactive Streams {@link Subscriber} that only requests items when {@link #request(long)} is called by the test,
+ * and collects all items and signals.
+ * @param <T> item type
+ */
+public class ManualRequestSubscriber<T> implements Subscriber<T> {
+
+  private final List<T> items = Collections.synchronizedList(new ArrayList<>());
+
+  private volatile Subscription subscription;
+  private volatile Throwable error;
+  private volatile boolean completed;
+
+  @Override
+  public void onSubscribe(Subscription value) {
+    this.subscription = value;
+  }
+
+  @Override
+  public void onNext(T item) {
+    items.add(item);
+  }
+
+  @Override
+  public void onError(Throwable ex) {
+    this.error = ex;
+  }
+
+  @Override
+  public void onComplete() {
+    this.completed = true;
+  }
+
+  public void request(long n) {
+    subscription.request(n);
+  }
+
+  public void cancel() {
+    subscription.cancel();
+  }
+
+  public List<T> getItems() {
+    return items;
+  }
+
+  public Throwable getError() {
+    return error;
+  }
+
+  public boolean isCompleted() {
+    return completed;
+  }
+
+}
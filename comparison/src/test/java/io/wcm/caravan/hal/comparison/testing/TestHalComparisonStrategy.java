@@ -19,11 +19,14 @@
  */
 package io.wcm.caravan.hal.comparison.testing;
 
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.Set;
 
 import io.wcm.caravan.hal.comparison.HalComparisonStrategy;
 import io.wcm.caravan.hal.comparison.HalComparisonContext;
+import io.wcm.caravan.hal.comparison.util.FingerprintVisitedUrlSet;
+import io.wcm.caravan.hal.comparison.util.VisitedUrlSet;
 
 public class TestHalComparisonStrategy implements HalComparisonStrategy {
 
@@ -31,6 +34,22 @@ public class TestHalComparisonStrategy implements HalComparisonStrategy {
 
   private final Set<String> linkRelationsToIgnore = new HashSet<>();
 
+  private int maxConcurrentLinkResolutions = 1;
+
+  private VisitedUrlSet visitedUrlSet;
+
+  private int maxHalPathDepth = Integer.MAX_VALUE;
+
+  private int maxResourcesPerSource = Integer.MAX_VALUE;
+
+  private Duration maxDuration;
+
+  private double maxRequestsPerSecond = Double.POSITIVE_INFINITY;
+
+  private boolean followLinksInIdenticalEmbeddedResources = true;
+
+  private String historyKey = TestHalComparisonStrategy.class.getName();
+
   public HalComparisonStrategy addEmbeddedRelationToIgnore(String relation) {
     embeddedRelationsToIgnore.add(relation);
     return this;
@@ -41,6 +60,46 @@ public class TestHalComparisonStrategy implements HalComparisonStrategy {
     return this;
   }
 
+  public HalComparisonStrategy setMaxConcurrentLinkResolutions(int value) {
+    maxConcurrentLinkResolutions = value;
+    return this;
+  }
+
+  public HalComparisonStrategy setVisitedUrlSet(VisitedUrlSet value) {
+    visitedUrlSet = value;
+    return this;
+  }
+
+  public HalComparisonStrategy setMaxHalPathDepth(int value) {
+    maxHalPathDepth = value;
+    return this;
+  }
+
+  public HalComparisonStrategy setMaxResourcesPerSource(int value) {
+    maxResourcesPerSource = value;
+    return this;
+  }
+
+  public HalComparisonStrategy setMaxDuration(Duration value) {
+    maxDuration = value;
+    return this;
+  }
+
+  public HalComparisonStrategy setMaxRequestsPerSecond(double value) {
+    maxRequestsPerSecond = value;
+    return this;
+  }
+
+  public HalComparisonStrategy setFollowLinksInIdenticalEmbeddedResources(boolean value) {
+    followLinksInIdenticalEmbeddedResources = value;
+    return this;
+  }
+
+  public HalComparisonStrategy setHistoryKey(String value) {
+    historyKey = value;
+    return this;
+  }
+
   @Override
   public boolean ignoreEmbeddedAt(HalComparisonContext halContext) {
     return embeddedRelationsToIgnore.contains(halContext.getLastRelation());
@@ -51,4 +110,44 @@ public class TestHalComparisonStrategy implements HalComparisonStrategy {
     return linkRelationsToIgnore.contains(halContext.getLastRelation());
   }
 
+  @Override
+  public int getMaxConcurrentLinkResolutions() {
+    return maxConcurrentLinkResolutions;
+  }
+
+  @Override
+  public VisitedUrlSet createVisitedUrlSet() {
+    return visitedUrlSet != null ? visitedUrlSet : new FingerprintVisitedUrlSet();
+  }
+
+  @Override
+  public int getMaxHalPathDepth() {
+    return maxHalPathDepth;
+  }
+
+  @Override
+  public int getMaxResourcesPerSource() {
+    return maxResourcesPerSource;
+  }
+
+  @Override
+  public Duration getMaxDuration() {
+    return maxDuration;
+  }
+
+  @Override
+  public double getMaxRequestsPerSecond() {
+    return maxRequestsPerSecond;
+  }
+
+  @Override
+  public boolean followLinksInIdenticalEmbeddedResources() {
+    return followLinksInIdenticalEmbeddedResources;
+  }
+
+  @Override
+  public String getHistoryKey() {
+    return historyKey;
+  }
+
 }
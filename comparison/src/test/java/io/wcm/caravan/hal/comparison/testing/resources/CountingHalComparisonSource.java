@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.testing.resources;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.wcm.caravan.hal.comparison.HalComparisonSource;
+import io.wcm.caravan.hal.resource.HalResource;
+import rx.Observable;
+import rx.Single;
+
+/**
+ * Counts how many resources were requested from the source, and how many were actually resolved (i.e. how many of the
+ * returned {@link Single}s were subscribed).
+ */
+public class CountingHalComparisonSource implements HalComparisonSource {
+
+  private final HalComparisonSource delegate;
+
+  private final AtomicInteger requestCount = new AtomicInteger();
+  private final AtomicInteger resolveCount = new AtomicInteger();
+
+  public CountingHalComparisonSource(HalComparisonSource delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getEntryPointUrl() {
+    return delegate.getEntryPointUrl();
+  }
+
+  @Override
+  public Single<HalResource> resolveLink(String url) {
+    requestCount.incrementAndGet();
+    return Observable.defer(() -> {
+      resolveCount.incrementAndGet();
+      return delegate.resolveLink(url).toObservable();
+    }).toSingle();
+  }
+
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  public int getResolveCount() {
+    return resolveCount.get();
+  }
+
+}
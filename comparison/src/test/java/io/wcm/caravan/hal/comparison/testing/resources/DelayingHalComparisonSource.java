@@ -0,0 +1,68 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.testing.resources;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.wcm.caravan.hal.comparison.HalComparisonSource;
+import io.wcm.caravan.hal.resource.HalResource;
+import rx.Observable;
+import rx.Single;
+import rx.schedulers.Schedulers;
+
+/**
+ * Delays the resolution of each resource by a different amount of time (that depends on the URL), and keeps track of
+ * the number of resources that are resolved concurrently.
+ */
+public class DelayingHalComparisonSource implements HalComparisonSource {
+
+  private final HalComparisonSource delegate;
+
+  private final AtomicInteger activeCount = new AtomicInteger();
+  private final AtomicInteger maxActiveCount = new AtomicInteger();
+
+  public DelayingHalComparisonSource(HalComparisonSource delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getEntryPointUrl() {
+    return delegate.getEntryPointUrl();
+  }
+
+  @Override
+  public Single<HalResource> resolveLink(String url) {
+    long delayMillis = 1 + Math.floorMod(url.hashCode() * 31, 10);
+
+    return Observable.defer(() -> {
+      int active = activeCount.incrementAndGet();
+      maxActiveCount.accumulateAndGet(active, Math::max);
+      return delegate.resolveLink(url).toObservable()
+          .delay(delayMillis, TimeUnit.MILLISECONDS, Schedulers.io())
+          .doOnTerminate(() -> activeCount.decrementAndGet());
+    }).toSingle();
+  }
+
+  public int getMaxActiveCount() {
+    return maxActiveCount.get();
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BloomFilterVisitedUrlSetTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_should_reject_invalid_rate() {
+    new BloomFilterVisitedUrlSet(1000, 1.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_should_reject_invalid_url_count() {
+    new BloomFilterVisitedUrlSet(0, 0.01);
+  }
+
+  @Test
+  public void constructor_should_calculate_optimal_size() {
+    BloomFilterVisitedUrlSet set = new BloomFilterVisitedUrlSet(1000, 0.01);
+
+    // about 9.6 bits and 7 hash functions per URL
+    assertTrue(set.getBitCount() >= 9586 && set.getBitCount() < 9586 + 64);
+    assertEquals(7, set.getHashCount());
+    assertTrue(set.getMemoryUsage() < 1500);
+  }
+
+  @Test
+  public void add_should_return_false_for_known_urls() {
+    BloomFilterVisitedUrlSet set = new BloomFilterVisitedUrlSet(1000, 0.01);
+
+    assertTrue(set.add("/a"));
+    assertFalse(set.add("/a"));
+    assertTrue(set.contains("/a"));
+
+    assertEquals(1, set.getUrlCount());
+    assertEquals(2, set.getHitCount());
+  }
+
+  @Test
+  public void contains_should_never_miss_added_urls() {
+    BloomFilterVisitedUrlSet set = new BloomFilterVisitedUrlSet(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      set.add("/item/" + i);
+    }
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(set.contains("/item/" + i));
+    }
+  }
+
+  @Test
+  public void false_positive_rate_should_be_close_to_configured_rate() {
+    BloomFilterVisitedUrlSet set = new BloomFilterVisitedUrlSet(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      set.add("/item/" + i);
+    }
+
+    int falsePositives = 0;
+    for (int i = 0; i < 10000; i++) {
+      if (set.contains("/other/" + i)) {
+        falsePositives++;
+      }
+    }
+
+    assertTrue("false positives: " + falsePositives, falsePositives < 200);
+    assertEquals(0.01, set.getEstimatedFalsePositiveRate(), 0.005);
+  }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.wcm.caravan.hal.comparison.HalComparisonSource;
+import io.wcm.caravan.hal.resource.HalResource;
+import rx.Single;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public class CachingHalComparisonSourceTest {
+
+  private PendingSource delegate;
+  private CachingHalComparisonSource source;
+
+  @Before
+  public void setUp() {
+    delegate = new PendingSource();
+    source = new CachingHalComparisonSource(delegate, 2);
+  }
+
+  private TestSubscriber<HalResource> resolve(String url) {
+    TestSubscriber<HalResource> subscriber = new TestSubscriber<>();
+    source.resolveLink(url).subscribe(subscriber);
+    return subscriber;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_should_reject_empty_cache() {
+    new CachingHalComparisonSource(delegate, 0);
+  }
+
+  @Test
+  public void getEntryPointUrl_should_delegate() {
+    assertEquals("/", source.getEntryPointUrl());
+  }
+
+  @Test
+  public void resolveLink_should_only_load_on_subscription() {
+    source.resolveLink("/a");
+    assertEquals(0, delegate.requestCount);
+    assertEquals(0, source.getMissCount());
+  }
+
+  @Test
+  public void resolveLink_should_serve_cached_resources() {
+    TestSubscriber<HalResource> first = resolve("/a");
+    HalResource resource = delegate.complete("/a");
+    TestSubscriber<HalResource> second = resolve("/a");
+
+    first.assertValue(resource);
+    second.assertValue(resource);
+    second.assertCompleted();
+    assertEquals(1, delegate.requestCount);
+    assertEquals(1, source.getMissCount());
+    assertEquals(1, source.getHitCount());
+    assertEquals(0, source.getCoalescedCount());
+  }
+
+  @Test
+  public void resolveLink_should_coalesce_concurrent_requests() {
+    TestSubscriber<HalResource> first = resolve("/a");
+    TestSubscriber<HalResource> second = resolve("/a");
+    first.assertNoValues();
+    second.assertNoValues();
+
+    HalResource resource = delegate.complete("/a");
+
+    assertSame(resource, first.getOnNextEvents().get(0));
+    assertSame(resource, second.getOnNextEvents().get(0));
+    assertEquals(1, delegate.requestCount);
+    assertEquals(1, source.getMissCount());
+    assertEquals(1, source.getCoalescedCount());
+  }
+
+  @Test
+  public void resolveLink_should_share_but_not_cache_failures() {
+    TestSubscriber<HalResource> first = resolve("/a");
+    TestSubscriber<HalResource> second = resolve("/a");
+    delegate.fail("/a");
+
+    first.assertError(RuntimeException.class);
+    second.assertError(RuntimeException.class);
+
+    TestSubscriber<HalResource> retry = resolve("/a");
+    HalResource resource = delegate.complete("/a");
+
+    retry.assertValue(resource);
+    assertEquals(2, delegate.requestCount);
+    assertEquals(2, source.getMissCount());
+    assertEquals(1, source.getCoalescedCount());
+  }
+
+  @Test
+  public void resolveLink_should_evict_least_recently_used_resources() {
+    resolve("/a");
+    delegate.complete("/a");
+    resolve("/b");
+    delegate.complete("/b");
+    resolve("/a");
+    resolve("/c");
+    delegate.complete("/c");
+
+    assertEquals(2, source.getCachedResourceCount());
+
+    resolve("/a");
+    assertEquals(1, delegate.requestCount("/a"));
+    resolve("/b");
+    assertEquals(2, delegate.requestCount("/b"));
+  }
+
+  private static class PendingSource implements HalComparisonSource {
+
+    private final Map<String, PublishSubject<HalResource>> pending = new HashMap<>();
+    private final Map<String, Integer> requestCounts = new HashMap<>();
+    private int requestCount;
+
+    @Override
+    public String getEntryPointUrl() {
+      return "/";
+    }
+
+    @Override
+    public Single<HalResource> resolveLink(String url) {
+      requestCount++;
+      requestCounts.merge(url, 1, Integer::sum);
+      PublishSubject<HalResource> subject = PublishSubject.create();
+      pending.put(url, subject);
+      return subject.toSingle();
+    }
+
+    int requestCount(String url) {
+      return requestCounts.getOrDefault(url, 0);
+    }
+
+    HalResource complete(String url) {
+      HalResource resource = new HalResource(url);
+      PublishSubject<HalResource> subject = pending.remove(url);
+      subject.onNext(resource);
+      subject.onCompleted();
+      return resource;
+    }
+
+    void fail(String url) {
+      pending.remove(url).onError(new RuntimeException("Failed to load " + url));
+    }
+  }
+
+}
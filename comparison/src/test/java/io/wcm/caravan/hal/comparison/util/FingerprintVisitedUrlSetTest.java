@@ -0,0 +1,122 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class FingerprintVisitedUrlSetTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_should_reject_unsupported_fingerprint_size() {
+    new FingerprintVisitedUrlSet(32);
+  }
+
+  @Test
+  public void add_should_return_false_for_known_urls() {
+    FingerprintVisitedUrlSet set = new FingerprintVisitedUrlSet();
+
+    assertTrue(set.add("/a"));
+    assertTrue(set.add("/b"));
+    assertFalse(set.add("/a"));
+
+    assertEquals(2, set.getUrlCount());
+    assertEquals(1, set.getHitCount());
+  }
+
+  @Test
+  public void contains_should_count_hits() {
+    FingerprintVisitedUrlSet set = new FingerprintVisitedUrlSet(64);
+    set.add("/a");
+
+    assertTrue(set.contains("/a"));
+    assertFalse(set.contains("/b"));
+
+    assertEquals(1, set.getHitCount());
+  }
+
+  @Test
+  public void set_should_grow_without_losing_urls() {
+    for (int bits : new int[] { 64, 128 }) {
+      FingerprintVisitedUrlSet set = new FingerprintVisitedUrlSet(bits);
+      for (int i = 0; i < 20000; i++) {
+        assertTrue(set.add("/item/" + i));
+      }
+      for (int i = 0; i < 20000; i++) {
+        assertTrue(set.contains("/item/" + i));
+        assertFalse(set.contains("/other/" + i));
+      }
+      assertEquals(20000, set.getUrlCount());
+    }
+  }
+
+  @Test
+  public void memory_usage_should_be_much_smaller_than_urls() {
+    FingerprintVisitedUrlSet set = new FingerprintVisitedUrlSet(64);
+    long empty = set.getMemoryUsage();
+    for (int i = 0; i < 100000; i++) {
+      set.add("https://example.org/api/items/" + i);
+    }
+
+    long bytesPerUrl = (set.getMemoryUsage() - empty) / 100000;
+    assertTrue("bytes per url: " + bytesPerUrl, bytesPerUrl >= 8 && bytesPerUrl <= 32);
+  }
+
+  @Test
+  public void add_should_support_concurrent_access() throws Exception {
+    FingerprintVisitedUrlSet set = new FingerprintVisitedUrlSet();
+    AtomicInteger added = new AtomicInteger();
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 5000; i++) {
+            if (set.add("/item/" + i)) {
+              added.incrementAndGet();
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    assertEquals(5000, added.get());
+    assertEquals(5000, set.getUrlCount());
+    assertEquals(7 * 5000, set.getHitCount());
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2018 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.comparison.util;
+
+import static io.wcm.caravan.hal.comparison.testing.StandardRelations.ITEM;
+import static io.wcm.caravan.hal.comparison.testing.StandardRelations.SECTION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.wcm.caravan.hal.comparison.HalComparisonSource;
+import io.wcm.caravan.hal.comparison.HalDifference;
+import io.wcm.caravan.hal.comparison.impl.HalComparisonImpl;
+import io.wcm.caravan.hal.comparison.testing.TestHalComparisonStrategy;
+import io.wcm.caravan.hal.comparison.testing.resources.TestResource;
+import io.wcm.caravan.hal.comparison.testing.resources.TestResourceTree;
+import rx.observers.TestSubscriber;
+
+public class SnapshotHalComparisonSourceTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private TestResourceTree expected;
+  private TestResourceTree actual;
+  private Path archive;
+
+  @Before
+  public void setUp() throws IOException {
+    expected = new TestResourceTree();
+    actual = new TestResourceTree();
+    archive = tempFolder.getRoot().toPath().resolve("expected.snapshot");
+
+    for (int s = 0; s < 3; s++) {
+      TestResource expectedSection = expected.createLinked(SECTION).setNumber(s);
+      TestResource actualSection = actual.createLinked(SECTION).setNumber(s == 1 ? -1 : s);
+      for (int i = 0; i < 3; i++) {
+        expectedSection.createLinked(ITEM).setText("foo ä");
+        actualSection.createLinked(ITEM).setText(i == 0 ? "bar" : "foo ä");
+      }
+    }
+  }
+
+  private List<String> compare(HalComparisonSource expectedSource) {
+    return new HalComparisonImpl().compare(expectedSource, actual, new TestHalComparisonStrategy())
+        .map(diff -> diff.getHalContext() + " " + diff.getDescription())
+        .toList().toBlocking().single();
+  }
+
+  private List<String> record() throws IOException {
+    try (RecordingHalComparisonSource recording = new RecordingHalComparisonSource(expected, archive)) {
+      List<String> diffs = compare(recording);
+      assertEquals(1 + 3 + 3 * 3, recording.getRecordedResourceCount());
+      return diffs;
+    }
+  }
+
+  @Test
+  public void replay_should_find_same_differences_without_original_source() throws IOException {
+    List<String> recordedDiffs = record();
+
+    // the original source must not be used anymore
+    expected.throwExceptionWhenResolving(expected.getEntryPoint());
+    SnapshotHalComparisonSource snapshot = new SnapshotHalComparisonSource(archive);
+
+    assertEquals(recordedDiffs, compare(snapshot));
+    // one section and the first item in each section are different
+    assertEquals(1 + 3, recordedDiffs.size());
+    assertEquals(13, snapshot.getResourceCount());
+    assertEquals("/", snapshot.getEntryPointUrl());
+  }
+
+  @Test
+  public void replay_should_return_recorded_resources() throws IOException {
+    record();
+
+    SnapshotHalComparisonSource snapshot = new SnapshotHalComparisonSource(archive);
+    String url = expected.getEntryPoint().asHalResource().getLink().getHref();
+
+    assertTrue(snapshot.contains(url));
+    assertEquals(expected.getEntryPoint().asHalResource().getModel(),
+        snapshot.resolveLink(url).toObservable().toBlocking().single().getModel());
+  }
+
+  @Test
+  public void replay_should_fail_for_unknown_url() throws IOException {
+    record();
+
+    SnapshotHalComparisonSource snapshot = new SnapshotHalComparisonSource(archive);
+    TestSubscriber<Object> subscriber = new TestSubscriber<>();
+    snapshot.resolveLink("/unknown").subscribe(subscriber);
+
+    assertFalse(snapshot.contains("/unknown"));
+    subscriber.assertError(IOException.class);
+  }
+
+  @Test(expected = IOException.class)
+  public void constructor_should_reject_incomplete_archive() throws IOException {
+    RecordingHalComparisonSource recording = new RecordingHalComparisonSource(expected, archive);
+    compare(recording);
+    // the index is missing, because the recording source was not closed
+    new SnapshotHalComparisonSource(archive);
+  }
+
+  @Test(expected = IOException.class)
+  public void constructor_should_reject_other_files() throws IOException {
+    Files.write(archive, "{}".getBytes());
+    new SnapshotHalComparisonSource(archive);
+  }
+
+  @Test
+  public void recording_should_only_record_successfully_resolved_resources() throws IOException {
+    TestResource failing = expected.createLinked(ITEM);
+    actual.createLinked(ITEM);
+    expected.throwExceptionWhenResolving(failing);
+
+    try (RecordingHalComparisonSource recording = new RecordingHalComparisonSource(expected, archive)) {
+      TestSubscriber<HalDifference> subscriber = new TestSubscriber<>();
+      new HalComparisonImpl().compare(recording, actual, new TestHalComparisonStrategy()).subscribe(subscriber);
+      subscriber.assertError(RuntimeException.class);
+    }
+
+    SnapshotHalComparisonSource snapshot = new SnapshotHalComparisonSource(archive);
+    assertTrue(snapshot.contains("/"));
+    assertFalse(snapshot.contains(failing.getUrl()));
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2015 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.docs.impl.augmenter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.wcm.caravan.hal.docs.HalDocsAugmenter;
+import io.wcm.caravan.hal.docs.impl.model.LinkRelation;
+import io.wcm.caravan.hal.docs.impl.model.Service;
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+public class HalDocsAugmenterImplAllocationTest {
+
+  private HalDocsAugmenter underTest;
+  private ObjectNode model;
+
+  @Before
+  public void setUp() {
+    Service service = new Service();
+    for (String rel : new String[] { "ex:external-link", "in:children", "cust:rel3" }) {
+      LinkRelation linkRelation = new LinkRelation();
+      linkRelation.setRel(rel);
+      service.addLinkRelation(linkRelation);
+    }
+    underTest = new HalDocsAugmenterImpl(service, "/docs");
+
+    model = new HalResource("/resource")
+        .setLink("ex:external-link", new Link("/external-link"))
+        .addLinks("in:children", new Link("/child-1"), new Link("/child-2"))
+        .addLinks("no-curie", new Link("/no-curi-1"))
+        .setEmbedded("item", new HalResource("/item").setLink("cust:rel3", new Link("/rel3")))
+        .getModel();
+  }
+
+  @Test
+  public void augment() {
+    // the resource is modified by the augmenter, so each call needs a new copy
+    AllocationBudget.of("HalDocsAugmenter#augment", 31000).measuredOn(17).check(() -> new HalResource(model.deepCopy()), hal -> {
+      underTest.augment(hal);
+      return hal;
+    });
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import io.wcm.caravan.hal.resource.HalResource;
+
+/**
+ * Conversion between resources and POJOs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdaptToBenchmark {
+
+  private HalResource item;
+  private Item pojo;
+
+  @Setup
+  public void setUp() {
+    item = SyntheticResources.createItems(1).get(0);
+    pojo = item.adaptTo(Item.class);
+  }
+
+  @Benchmark
+  public Item adaptTo() {
+    return item.adaptTo(Item.class);
+  }
+
+  @Benchmark
+  public HalResource fromPojo() {
+    return new HalResource(pojo, "/catalog/item/0");
+  }
+
+  /**
+   * The state of a synthetic item
+   */
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class Item {
+
+    public String sku;
+    public String title;
+    public double price;
+    public boolean available;
+    public List<String> tags;
+
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.wcm.caravan.hal.resource.Link;
+
+/**
+ * Equality and hash codes of links, which are used when links are collected in sets or compared.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkBenchmark {
+
+  private Link link;
+  private Link equalLink;
+  private Link differentLink;
+
+  @Setup
+  public void setUp() {
+    link = createLink("/catalog/item/42");
+    equalLink = createLink("/catalog/item/42");
+    differentLink = createLink("/catalog/item/43");
+  }
+
+  private static Link createLink(String href) {
+    return new Link(href).setTitle("Item 42").setName("item-42").setType("application/hal+json");
+  }
+
+  @Benchmark
+  public boolean equalsEqual() {
+    return link.equals(equalLink);
+  }
+
+  @Benchmark
+  public boolean equalsDifferent() {
+    return link.equals(differentLink);
+  }
+
+  @Benchmark
+  public int hashCodeOfLink() {
+    return link.hashCode();
+  }
+
+}
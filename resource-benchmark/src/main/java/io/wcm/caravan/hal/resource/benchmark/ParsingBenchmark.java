@@ -0,0 +1,79 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.util.HalResourceParser;
+
+/**
+ * Parsing and serialization of complete HAL documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  int items;
+
+  private byte[] json;
+  private HalResource hal;
+  private final HalResourceParser parser = new HalResourceParser();
+
+  @Setup
+  public void setUp() {
+    hal = SyntheticResources.createCatalog(items);
+    json = SyntheticResources.toBytes(hal);
+  }
+
+  @Benchmark
+  public HalResource parseWithObjectMapper() throws IOException {
+    return new HalResource(SyntheticResources.OBJECT_MAPPER.readTree(json));
+  }
+
+  @Benchmark
+  public HalResource parseWithHalResourceParser() throws IOException {
+    return parser.parse(json);
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return SyntheticResources.toBytes(hal);
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ListMultimap;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+import io.wcm.caravan.hal.resource.util.HalPathQuery;
+import io.wcm.caravan.hal.resource.util.HalUtil;
+
+/**
+ * Read access to links, embedded resources and state of an existing resource tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  int items;
+
+  private HalResource hal;
+  private final HalPathQuery variantSkuQuery = HalPathQuery.compile("item[*]/variant[*].sku");
+
+  @Setup
+  public void setUp() {
+    hal = SyntheticResources.createCatalog(items);
+  }
+
+  @Benchmark
+  public ListMultimap<String, Link> getLinks() {
+    return hal.getLinks();
+  }
+
+  @Benchmark
+  public List<Link> getLinksForRelation() {
+    return hal.getLinks("item");
+  }
+
+  @Benchmark
+  public Link getLink() {
+    return hal.getLink();
+  }
+
+  @Benchmark
+  public ListMultimap<String, HalResource> getEmbedded() {
+    return hal.getEmbedded();
+  }
+
+  @Benchmark
+  public List<HalResource> getEmbeddedForRelation() {
+    return hal.getEmbedded("item");
+  }
+
+  @Benchmark
+  public List<Link> collectLinks() {
+    return hal.collectLinks("ex:detail");
+  }
+
+  @Benchmark
+  public ListMultimap<String, Link> halUtilGetAllLinks() {
+    return HalUtil.getAllLinks(hal);
+  }
+
+  @Benchmark
+  public List<JsonNode> pathQuery() {
+    return variantSkuQuery.select(hal);
+  }
+
+  @Benchmark
+  public List<JsonNode> pathQueryManual() {
+    List<JsonNode> skus = new ArrayList<>();
+    for (HalResource item : hal.getEmbedded("item")) {
+      for (HalResource variant : item.getEmbedded("variant")) {
+        skus.add(variant.getModel().path("sku"));
+      }
+    }
+    return skus;
+  }
+
+}
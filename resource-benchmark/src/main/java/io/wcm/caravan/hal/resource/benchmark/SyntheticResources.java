@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+/**
+ * Creates deterministic HAL resources for the benchmarks: the same size always results in the same resource.
+ */
+final class SyntheticResources {
+
+  static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  static final int VARIANTS_PER_ITEM = 3;
+
+  private SyntheticResources() {
+    // static methods only
+  }
+
+  /**
+   * @param items number of embedded items (each with {@link #VARIANTS_PER_ITEM} embedded variants)
+   * @return a catalog resource with the given number of linked and embedded items
+   */
+  static HalResource createCatalog(int items) {
+    Random random = new Random(items);
+    HalResource catalog = new HalResource(createState(random, "Catalog"), "/catalog")
+        .addLinks("curies", new Link("https://example.com/doc/{rel}").setName("ex").setTemplated(true))
+        .setLink("ex:search", new Link("/catalog/search{?q,page}").setTemplated(true));
+
+    for (int i = 0; i < items; i++) {
+      catalog.addLinks("item", new Link("/catalog/item/" + i).setTitle("Item " + i));
+      catalog.addEmbedded("item", createItem(random, i));
+    }
+    return catalog;
+  }
+
+  /**
+   * @param random to generate the state
+   * @param index of the item
+   * @return an item resource with embedded variants
+   */
+  static HalResource createItem(Random random, int index) {
+    String href = "/catalog/item/" + index;
+    HalResource item = new HalResource(createState(random, "Item " + index), href)
+        .setLink("ex:detail", new Link(href + "/detail"))
+        .setLink("collection", new Link("/catalog"));
+    for (int v = 0; v < VARIANTS_PER_ITEM; v++) {
+      item.addEmbedded("variant", new HalResource(createState(random, "Variant " + v), href + "/variant/" + v)
+          .setLink("ex:detail", new Link(href + "/variant/" + v + "/detail")));
+    }
+    return item;
+  }
+
+  /**
+   * @param count number of items
+   * @return a list of items
+   */
+  static List<HalResource> createItems(int count) {
+    Random random = new Random(count);
+    List<HalResource> items = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      items.add(createItem(random, i));
+    }
+    return items;
+  }
+
+  /**
+   * @param hal a resource
+   * @return the serialized JSON model
+   */
+  static byte[] toBytes(HalResource hal) {
+    try {
+      return OBJECT_MAPPER.writeValueAsBytes(hal.getModel());
+    }
+    catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private static ObjectNode createState(Random random, String title) {
+    ObjectNode state = OBJECT_MAPPER.createObjectNode()
+        .put("sku", Long.toHexString(random.nextLong()))
+        .put("title", title)
+        .put("price", random.nextInt(100000) / 100.0)
+        .put("available", random.nextBoolean());
+    state.putArray("tags").add("tag" + random.nextInt(10)).add("tag" + random.nextInt(10));
+    return state;
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.util.HalCuriAugmenter;
+
+/**
+ * Building and modifying resources.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("deprecation")
+public class WriteBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  int items;
+
+  private List<HalResource> embedded;
+  private HalResource catalog;
+  private final HalCuriAugmenter augmenter = new HalCuriAugmenter()
+      .register("ex", "https://example.com/doc/{rel}")
+      .register("other", "https://example.com/other/{rel}");
+
+  @Setup
+  public void setUp() {
+    embedded = SyntheticResources.createItems(items);
+    catalog = SyntheticResources.createCatalog(items);
+    catalog.removeLinks("curies");
+  }
+
+  @Benchmark
+  public HalResource addEmbeddedArray() {
+    return new HalResource("/catalog").addEmbedded("item", embedded);
+  }
+
+  @Benchmark
+  public HalResource addEmbeddedOneByOne() {
+    HalResource hal = new HalResource("/catalog");
+    for (HalResource item : embedded) {
+      hal.addEmbedded("item", item);
+    }
+    return hal;
+  }
+
+  /**
+   * Baseline for {@link #copyAndAugmentCuries()}
+   */
+  @Benchmark
+  public HalResource copy() {
+    return new HalResource(catalog.getModel().deepCopy());
+  }
+
+  @Benchmark
+  public HalResource copyAndAugmentCuries() {
+    HalResource hal = new HalResource(catalog.getModel().deepCopy());
+    augmenter.augment(hal);
+    return hal;
+  }
+
+}
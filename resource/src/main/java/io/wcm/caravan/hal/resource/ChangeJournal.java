@@ -0,0 +1,73 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.wcm.caravan.hal.resource.HalChange.Operation;
+
+/**
+ * Collects the changes of a HAL resource tree while change tracking is enabled. The same journal is shared by the
+ * resource on which tracking was started and all embedded resources and links that were retrieved from or added to it
+ * afterwards.
+ */
+final class ChangeJournal {
+
+  private boolean enabled = true;
+  private List<HalChange> changes = new ArrayList<>();
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  void disable() {
+    enabled = false;
+    changes = new ArrayList<>();
+  }
+
+  void record(String path, Operation operation, JsonNode oldValue, JsonNode newValue) {
+    changes.add(new HalChange(path, operation, oldValue, newValue));
+  }
+
+  List<HalChange> drain() {
+    List<HalChange> drained = changes;
+    changes = new ArrayList<>();
+    return drained;
+  }
+
+  void reset() {
+    changes = new ArrayList<>();
+  }
+
+  /**
+   * @param token a property name or relation
+   * @return the token escaped as a JSON pointer reference token (RFC 6901)
+   */
+  static String escape(String token) {
+    if (token.indexOf('~') < 0 && token.indexOf('/') < 0) {
+      return token;
+    }
+    return token.replace("~", "~0").replace("/", "~1");
+  }
+
+}
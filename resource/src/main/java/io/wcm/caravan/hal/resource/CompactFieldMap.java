@@ -0,0 +1,220 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * An insertion-ordered map for the fields of an object node that keeps up to {@link #MAX_COMPACT_SIZE} entries in two
+ * parallel arrays (which are searched linearly), and only switches to a {@link LinkedHashMap} if more fields are added.
+ */
+final class CompactFieldMap extends AbstractMap<String, JsonNode> {
+
+  static final int MAX_COMPACT_SIZE = 8;
+
+  private static final int INITIAL_CAPACITY = 4;
+
+  private String[] keys;
+  private JsonNode[] values;
+  private int size;
+
+  private Map<String, JsonNode> map;
+
+  @Override
+  public int size() {
+    return map != null ? map.size() : size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return map != null ? map.containsKey(key) : indexOf(key) >= 0;
+  }
+
+  @Override
+  public JsonNode get(Object key) {
+    if (map != null) {
+      return map.get(key);
+    }
+    int index = indexOf(key);
+    return index < 0 ? null : values[index];
+  }
+
+  @Override
+  public JsonNode put(String key, JsonNode value) {
+    if (map != null) {
+      return map.put(key, value);
+    }
+
+    int index = indexOf(key);
+    if (index >= 0) {
+      JsonNode previous = values[index];
+      values[index] = value;
+      return previous;
+    }
+
+    if (size == MAX_COMPACT_SIZE) {
+      map = new LinkedHashMap<>();
+      for (int i = 0; i < size; i++) {
+        map.put(keys[i], values[i]);
+      }
+      keys = null;
+      values = null;
+      size = 0;
+      return map.put(key, value);
+    }
+
+    if (keys == null) {
+      keys = new String[INITIAL_CAPACITY];
+      values = new JsonNode[INITIAL_CAPACITY];
+    }
+    else if (size == keys.length) {
+      keys = Arrays.copyOf(keys, MAX_COMPACT_SIZE);
+      values = Arrays.copyOf(values, MAX_COMPACT_SIZE);
+    }
+    keys[size] = key;
+    values[size] = value;
+    size++;
+    return null;
+  }
+
+  @Override
+  public JsonNode remove(Object key) {
+    if (map != null) {
+      return map.remove(key);
+    }
+    int index = indexOf(key);
+    if (index < 0) {
+      return null;
+    }
+    JsonNode previous = values[index];
+    removeAt(index);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    map = null;
+    keys = null;
+    values = null;
+    size = 0;
+  }
+
+  @Override
+  public Set<Map.Entry<String, JsonNode>> entrySet() {
+    return new AbstractSet<Map.Entry<String, JsonNode>>() {
+
+      @Override
+      public Iterator<Map.Entry<String, JsonNode>> iterator() {
+        return map != null ? map.entrySet().iterator() : new CompactIterator();
+      }
+
+      @Override
+      public int size() {
+        return CompactFieldMap.this.size();
+      }
+    };
+  }
+
+  private int indexOf(Object key) {
+    // field names are usually interned by the parser, so checking identity first is worth it
+    for (int i = 0; i < size; i++) {
+      if (keys[i] == key) {
+        return i;
+      }
+    }
+    if (key != null) {
+      for (int i = 0; i < size; i++) {
+        if (key.equals(keys[i])) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private void removeAt(int index) {
+    int moved = size - index - 1;
+    if (moved > 0) {
+      System.arraycopy(keys, index + 1, keys, index, moved);
+      System.arraycopy(values, index + 1, values, index, moved);
+    }
+    size--;
+    keys[size] = null;
+    values[size] = null;
+  }
+
+  private final class CompactIterator implements Iterator<Map.Entry<String, JsonNode>> {
+
+    private int next;
+    private int last = -1;
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public Map.Entry<String, JsonNode> next() {
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return new CompactEntry(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      removeAt(last);
+      next = last;
+      last = -1;
+    }
+  }
+
+  private final class CompactEntry extends SimpleEntry<String, JsonNode> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int index;
+
+    CompactEntry(int index) {
+      super(keys[index], values[index]);
+      this.index = index;
+    }
+
+    @Override
+    public JsonNode setValue(JsonNode value) {
+      values[index] = value;
+      return super.setValue(value);
+    }
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A {@link JsonNodeFactory} that creates object nodes with a compact field storage for small objects such as links:
+ * Up to eight fields are kept in parallel arrays, and only larger objects use a {@link java.util.LinkedHashMap}. The
+ * field order and all other behaviour of the nodes are the same as for the default factory.
+ * <p>
+ * New {@link HalResource} and {@link Link} instances use this factory by default. To also use compact nodes when
+ * parsing, configure your {@link ObjectMapper} with {@link ObjectMapper#setNodeFactory(JsonNodeFactory)}. Note that
+ * nodes created with {@link ObjectNode#deepCopy()} will always use the default storage.
+ * </p>
+ */
+@ProviderType
+public final class CompactJsonNodeFactory extends JsonNodeFactory {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The shared instance of this factory (which uses doubles for decimal numbers, like {@link JsonNodeFactory#instance})
+   */
+  public static final CompactJsonNodeFactory INSTANCE = new CompactJsonNodeFactory();
+
+  private CompactJsonNodeFactory() {
+    super(false);
+  }
+
+  @Override
+  public ObjectNode objectNode() {
+    return new CompactObjectNode(this);
+  }
+
+  /**
+   * @param node a JSON node
+   * @return true if the node is an object node that was created by this factory (and therefore keeps up to eight
+   *         fields in parallel arrays)
+   */
+  public static boolean isCompactObject(JsonNode node) {
+    return node instanceof CompactObjectNode;
+  }
+
+  private Object readResolve() {
+    return INSTANCE;
+  }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * An object node that stores its fields in a {@link CompactFieldMap}. It only exists so that the storage can be
+ * recognized with {@link CompactJsonNodeFactory#isCompactObject(com.fasterxml.jackson.databind.JsonNode)}, and behaves
+ * exactly like any other object node.
+ */
+// ObjectNode#deepCopy narrows the generic return type of JsonNode#deepCopy, which javac reports as an unchecked
+// override for every subclass (even though this class doesn't declare or override any methods itself)
+@SuppressWarnings("unchecked")
+final class CompactObjectNode extends ObjectNode {
+
+  CompactObjectNode(JsonNodeFactory factory) {
+    super(factory, new CompactFieldMap());
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.google.common.collect.Iterators;
+
+/**
+ * Placeholder for links or embedded resources of a single relation that are only pulled from their suppliers when the
+ * containing JSON model is serialized. Instances are stored in a {@link POJONode} within the "_links" or "_embedded"
+ * object of a resource model, and are replaced with a regular {@link ArrayNode} by {@link HalResource} as soon as the
+ * relation is accessed in any other way.
+ */
+final class DeferredContent implements JsonSerializable {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final List<Supplier<Iterator<JsonNode>>> sources = new ArrayList<>();
+
+  /**
+   * @param node a JSON node from a resource model
+   * @return the deferred content held by the given node, or null if the node is a regular JSON node
+   */
+  static DeferredContent from(JsonNode node) {
+    if (node instanceof POJONode && ((POJONode)node).getPojo() instanceof DeferredContent) {
+      return (DeferredContent)((POJONode)node).getPojo();
+    }
+    return null;
+  }
+
+  /**
+   * @param existing the links or resources that were already present for the relation (or null)
+   * @return this instance
+   */
+  DeferredContent addExisting(JsonNode existing) {
+    if (existing == null) {
+      return this;
+    }
+    if (existing.isArray()) {
+      sources.add(() -> existing.elements());
+    }
+    else {
+      sources.add(() -> Collections.singleton(existing).iterator());
+    }
+    return this;
+  }
+
+  /**
+   * @param supplier provides the links or resources to be appended to the relation
+   * @return this instance
+   */
+  <X extends HalObject> DeferredContent addSupplier(Supplier<Iterator<X>> supplier) {
+    sources.add(() -> Iterators.transform(supplier.get(), halObject -> halObject.getModel()));
+    return this;
+  }
+
+  /**
+   * Pulls all content from the suppliers into the given array node.
+   * @param array an empty array node
+   * @return the given {@link ArrayNode}, now filled with the JSON models of all links or resources
+   */
+  ArrayNode materialize(ArrayNode array) {
+    for (Supplier<Iterator<JsonNode>> source : sources) {
+      source.get().forEachRemaining(array::add);
+    }
+    return array;
+  }
+
+  @Override
+  public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException, JsonProcessingException {
+    gen.writeStartArray();
+    for (Supplier<Iterator<JsonNode>> source : sources) {
+      Iterator<JsonNode> it = source.get();
+      while (it.hasNext()) {
+        ((JsonSerializable)it.next()).serialize(gen, serializers);
+      }
+    }
+    gen.writeEndArray();
+  }
+
+  @Override
+  public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException, JsonProcessingException {
+    serialize(gen, serializers);
+  }
+
+  /**
+   * Generates the JSON representation (which will pull all content from the suppliers).
+   */
+  @Override
+  public String toString() {
+    try {
+      return OBJECT_MAPPER.writeValueAsString(this);
+    }
+    catch (JsonProcessingException ex) {
+      throw new RuntimeException("Failed to serialize deferred content", ex);
+    }
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableListMultimap;
+
+/**
+ * An immutable hash index over the resources embedded with a specific relation, as returned by
+ * {@link HalResource#indexEmbedded(String, Function)}. Each resource can be indexed under multiple keys, and multiple
+ * resources can share the same key.
+ * @param <K> key type
+ */
+@ProviderType
+public final class EmbeddedIndex<K> {
+
+  private final ImmutableListMultimap<K, HalResource> resourcesByKey;
+
+  private final JsonNode container;
+  private final int containerSize;
+
+  private EmbeddedIndex(ImmutableListMultimap<K, HalResource> resourcesByKey, JsonNode container) {
+    this.resourcesByKey = resourcesByKey;
+    this.container = container;
+    this.containerSize = container.size();
+  }
+
+  static <K> EmbeddedIndex<K> build(JsonNode container, List<HalResource> resources,
+      Function<HalResource, ? extends Iterable<K>> keysFunction) {
+    ImmutableListMultimap.Builder<K, HalResource> builder = ImmutableListMultimap.builder();
+
+    for (HalResource resource : resources) {
+      Iterable<K> keys = keysFunction.apply(resource);
+      if (keys == null) {
+        continue;
+      }
+      for (K key : keys) {
+        if (key != null) {
+          builder.put(key, resource);
+        }
+      }
+    }
+
+    return new EmbeddedIndex<>(builder.build(), container);
+  }
+
+  /**
+   * @param currentContainer the JSON node that currently contains the embedded resources
+   * @return false if the JSON node was replaced or resized since this index was built
+   */
+  boolean isValidFor(JsonNode currentContainer) {
+    return currentContainer == container && currentContainer.size() == containerSize;
+  }
+
+  /**
+   * @param key the key to look up
+   * @return all embedded resources indexed with the given key (in the order in which they are embedded)
+   */
+  public List<HalResource> get(K key) {
+    return resourcesByKey.get(key);
+  }
+
+  /**
+   * @param key the key to look up
+   * @return the first embedded resource indexed with the given key, or null if there is none
+   */
+  public HalResource getFirst(K key) {
+    List<HalResource> resources = resourcesByKey.get(key);
+    return resources.isEmpty() ? null : resources.get(0);
+  }
+
+  /**
+   * @param key the key to look up
+   * @return true if at least one embedded resource is indexed with the given key
+   */
+  public boolean containsKey(K key) {
+    return resourcesByKey.containsKey(key);
+  }
+
+  /**
+   * @return all distinct keys in the index
+   */
+  public Set<K> keySet() {
+    return resourcesByKey.keySet();
+  }
+
+  /**
+   * @return the number of key-resource entries in the index
+   */
+  public int size() {
+    return resourcesByKey.size();
+  }
+
+}
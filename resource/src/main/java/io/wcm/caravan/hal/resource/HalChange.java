@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A single modification of a HAL resource that was recorded while change tracking was enabled (see
+ * {@link HalResource#startChangeTracking()}). The old and new values are the actual JSON nodes (not copies), so they
+ * reflect any later modifications of those nodes.
+ */
+@ProviderType
+public final class HalChange {
+
+  /**
+   * The type of modification
+   */
+  public enum Operation {
+
+    /**
+     * A property, link or embedded resource was added
+     */
+    ADD,
+
+    /**
+     * An existing property, link or embedded resource was replaced
+     */
+    REPLACE,
+
+    /**
+     * A property, link or embedded resource was removed
+     */
+    REMOVE,
+
+    /**
+     * A JSON patch or merge patch (which is available as new value) was applied to the resource
+     */
+    PATCH
+  }
+
+  private final String path;
+  private final Operation operation;
+  private final JsonNode oldValue;
+  private final JsonNode newValue;
+
+  HalChange(String path, Operation operation, JsonNode oldValue, JsonNode newValue) {
+    this.path = path;
+    this.operation = operation;
+    this.oldValue = oldValue;
+    this.newValue = newValue;
+  }
+
+  /**
+   * @return a JSON pointer to the modified node, relative to the resource on which change tracking was started
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @return the type of modification
+   */
+  public Operation getOperation() {
+    return operation;
+  }
+
+  /**
+   * @return the value before the modification (or null if the value was added)
+   */
+  public JsonNode getOldValue() {
+    return oldValue;
+  }
+
+  /**
+   * @return the value after the modification (or null if the value was removed, or if links or resources were added
+   *         lazily)
+   */
+  public JsonNode getNewValue() {
+    return newValue;
+  }
+
+  @Override
+  public String toString() {
+    return operation + " " + path + ": " + oldValue + " -> " + newValue;
+  }
+
+}
@@ -22,17 +22,23 @@ package io.wcm.caravan.hal.resource;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.osgi.annotation.versioning.ProviderType;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -41,6 +47,8 @@ import com.google.common.collect.ImmutableListMultimap.Builder;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 
+import io.wcm.caravan.hal.resource.HalChange.Operation;
+
 /**
  * Bean representation of a HAL resource.
  */
@@ -55,15 +63,23 @@ public final class HalResource implements HalObject {
    * JSON object mapper
    */
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
-      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+      .setNodeFactory(CompactJsonNodeFactory.INSTANCE);
 
   private final ObjectNode model;
 
+  // only the last index is kept for each relation, so that indexes for new key function instances don't accumulate
+  private Map<String, Pair<Function<HalResource, ?>, EmbeddedIndex<?>>> embeddedIndexes;
+
+  private ChangeJournal journal;
+
+  private HalResource context;
+
   /**
    * Create an empty HAL resource, with no object state or links
    */
   public HalResource() {
-    this(JsonNodeFactory.instance.objectNode());
+    this(CompactJsonNodeFactory.INSTANCE.objectNode());
   }
 
   /**
@@ -243,6 +259,67 @@ public final class HalResource implements HalObject {
     return getResources(HalResource.class, HalResourceType.EMBEDDED, relation);
   }
 
+  /**
+   * Creates (or returns a previously created) hash index over the resources embedded with the given relation. Only the
+   * last index for each relation is kept, and it is only reused if this method is called with the same key function
+   * instance (so keep a reference to the function instead of passing a new lambda for every call). The index is
+   * re-created when the embedded resources for this relation are changed, but not if the key of an embedded resource is
+   * changed.
+   * @param <K> key type
+   * @param relation Embedded resource relation
+   * @param keyFunction extracts the key from an embedded resource (resources with a null key are not indexed)
+   * @return an index to look up embedded resources by key
+   */
+  public <K> EmbeddedIndex<K> indexEmbedded(String relation, Function<HalResource, K> keyFunction) {
+    return indexEmbeddedMultiValued(relation, keyFunction, resource -> Collections.singletonList(keyFunction.apply(resource)));
+  }
+
+  /**
+   * Creates (or returns a previously created) hash index over the resources embedded with the given relation, where each
+   * resource can be indexed under multiple keys. Only the last index for each relation is kept, and it is only reused if
+   * this method is called with the same function instance. The index is re-created when the embedded resources for this
+   * relation are changed, but not if the keys of an embedded resource are changed.
+   * @param <K> key type
+   * @param relation Embedded resource relation
+   * @param keysFunction extracts all keys from an embedded resource
+   * @return an index to look up embedded resources by key
+   */
+  public <K> EmbeddedIndex<K> indexEmbeddedMultiValued(String relation, Function<HalResource, ? extends Iterable<K>> keysFunction) {
+    return indexEmbeddedMultiValued(relation, keysFunction, keysFunction);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <K> EmbeddedIndex<K> indexEmbeddedMultiValued(String relation, Function<HalResource, ?> cacheKey,
+      Function<HalResource, ? extends Iterable<K>> keysFunction) {
+
+    JsonNode container = materializeDeferred(HalResourceType.EMBEDDED, relation);
+
+    if (embeddedIndexes == null) {
+      embeddedIndexes = new HashMap<>();
+    }
+    Pair<Function<HalResource, ?>, EmbeddedIndex<?>> cached = embeddedIndexes.get(relation);
+    if (cached != null && cached.getLeft() == cacheKey && cached.getRight().isValidFor(container)) {
+      return (EmbeddedIndex<K>)cached.getRight();
+    }
+
+    // the embedded resources are created with getEmbedded, so that they share this resource's context and journal
+    EmbeddedIndex<K> index = EmbeddedIndex.build(container, getEmbedded(relation), keysFunction);
+    embeddedIndexes.put(relation, Pair.of(cacheKey, index));
+    return index;
+  }
+
+  private void invalidateEmbeddedIndexes(HalResourceType type, String relation) {
+    if (type != HalResourceType.EMBEDDED || embeddedIndexes == null) {
+      return;
+    }
+    if (relation == null) {
+      embeddedIndexes.clear();
+    }
+    else {
+      embeddedIndexes.remove(relation);
+    }
+  }
+
   /**
    * recursively collects embedded resources of a specific rel
    * @param rel the relation your interested in
@@ -256,7 +333,7 @@ public final class HalResource implements HalObject {
     if (!hasResource(type, relation)) {
       return ImmutableList.of();
     }
-    JsonNode resources = model.at("/" + type + "/" + relation);
+    JsonNode resources = materializeDeferred(type, relation);
 
     List<X> halObjects;
     try {
@@ -367,14 +444,23 @@ public final class HalResource implements HalObject {
     if (newResources.length == 0) {
       return this;
     }
+    invalidateEmbeddedIndexes(type, relation);
     ObjectNode resources = model.has(type.toString()) ? (ObjectNode)model.get(type.toString()) : model.putObject(type.toString());
 
     if (asArray) {
       ArrayNode container = getArrayNodeContainer(type, relation, resources);
       Arrays.stream(newResources).forEach(link -> container.add(link.getModel()));
+      if (isTracking()) {
+        for (int i = container.size() - newResources.length; i < container.size(); i++) {
+          recordChange(relationPath(type, relation) + "/" + i, Operation.ADD, null, container.get(i));
+        }
+      }
     }
     else {
-      resources.set(relation, newResources[0].getModel());
+      JsonNode previous = resources.replace(relation, newResources[0].getModel());
+      if (isTracking()) {
+        recordChange(relationPath(type, relation), previous == null ? Operation.ADD : Operation.REPLACE, previous, newResources[0].getModel());
+      }
     }
 
     updateContextResource(Arrays.asList(newResources));
@@ -382,23 +468,90 @@ public final class HalResource implements HalObject {
     return this;
   }
 
+  /**
+   * Adds links for the given relation that are only pulled from the given supplier while this resource's model is being
+   * serialized. If any of the relation's links are accessed through this resource before, they will be materialized
+   * into the JSON model instead.
+   * @param relation Link relation
+   * @param links a supplier that creates a new iterator over the links to add whenever it is called
+   * @return HAL resource
+   */
+  public HalResource addLinksLazily(String relation, Supplier<Iterator<Link>> links) {
+    return addResourcesLazily(HalResourceType.LINKS, relation, links);
+  }
+
+  /**
+   * Embed resources for the given relation that are only pulled from the given supplier while this resource's model is
+   * being serialized. If any of the relation's embedded resources are accessed through this resource before, they will
+   * be materialized into the JSON model instead.
+   * @param relation Embedded resource relation
+   * @param resources a supplier that creates a new iterator over the resources to embed whenever it is called
+   * @return HAL resource
+   */
+  public HalResource addEmbeddedLazily(String relation, Supplier<Iterator<HalResource>> resources) {
+    return addResourcesLazily(HalResourceType.EMBEDDED, relation, resources);
+  }
+
+  private <X extends HalObject> HalResource addResourcesLazily(HalResourceType type, String relation, Supplier<Iterator<X>> supplier) {
+    invalidateEmbeddedIndexes(type, relation);
+    if (isTracking()) {
+      recordChange(relationPath(type, relation) + "/-", Operation.ADD, null, null);
+    }
+    ObjectNode resources = model.has(type.toString()) ? (ObjectNode)model.get(type.toString()) : model.putObject(type.toString());
+
+    JsonNode existing = resources.get(relation);
+    DeferredContent deferred = DeferredContent.from(existing);
+    if (deferred == null) {
+      deferred = new DeferredContent().addExisting(existing);
+      resources.putPOJO(relation, deferred);
+    }
+    deferred.addSupplier(supplier);
+
+    return this;
+  }
+
+  private JsonNode materializeDeferred(HalResourceType type, String relation) {
+    // replace content that was added lazily with the actual JSON models, so it can be accessed and modified
+    JsonNode resources = model.at("/" + type + "/" + relation);
+    DeferredContent deferred = DeferredContent.from(resources);
+    if (deferred == null) {
+      return resources;
+    }
+    ArrayNode materialized = deferred.materialize(model.arrayNode());
+    ((ObjectNode)model.get(type.toString())).set(relation, materialized);
+    return materialized;
+  }
+
   private <X extends HalObject> void updateContextResource(Iterable<X> halObjects) {
 
     for (X halObject : halObjects) {
       if (halObject instanceof Link) {
         ((Link)halObject).setContext(this);
       }
+      else if (halObject instanceof HalResource) {
+        HalResource embedded = (HalResource)halObject;
+        embedded.context = this;
+        if (journal != null) {
+          embedded.journal = journal;
+        }
+      }
     }
   }
 
   private ArrayNode getArrayNodeContainer(HalResourceType type, String relation, ObjectNode resources) {
     if (hasResource(type, relation)) {
+      materializeDeferred(type, relation);
       if (resources.get(relation).isArray()) {
         return (ArrayNode)resources.get(relation);
       }
       else {
         JsonNode temp = resources.get(relation);
-        return resources.putArray(relation).add(temp);
+        ArrayNode array = resources.putArray(relation).add(temp);
+        if (isTracking()) {
+          // the array is recorded before any items are added to it (which are recorded separately)
+          recordChange(relationPath(type, relation), Operation.REPLACE, temp, resources.arrayNode().add(temp));
+        }
+        return array;
       }
     }
     else {
@@ -425,8 +578,12 @@ public final class HalResource implements HalObject {
   }
 
   private HalResource removeResource(HalResourceType type, String relation) {
+    invalidateEmbeddedIndexes(type, relation);
     if (hasResource(type, relation)) {
-      ((ObjectNode)model.get(type.toString())).remove(relation);
+      JsonNode removed = ((ObjectNode)model.get(type.toString())).remove(relation);
+      if (isTracking()) {
+        recordChange(relationPath(type, relation), Operation.REMOVE, removed, null);
+      }
     }
     return this;
   }
@@ -471,13 +628,20 @@ public final class HalResource implements HalObject {
   }
 
   private HalResource removeResource(HalResourceType type, String relation, int index) {
+    invalidateEmbeddedIndexes(type, relation);
     if (hasResource(type, relation)) {
-      JsonNode resources = model.at("/" + type + "/" + relation);
+      JsonNode resources = materializeDeferred(type, relation);
       if (resources instanceof ObjectNode || resources.size() <= 1) {
-        ((ObjectNode)model.get(type.toString())).remove(relation);
+        JsonNode removed = ((ObjectNode)model.get(type.toString())).remove(relation);
+        if (isTracking()) {
+          recordChange(relationPath(type, relation), Operation.REMOVE, removed, null);
+        }
       }
       else {
-        ((ArrayNode)resources).remove(index);
+        JsonNode removed = ((ArrayNode)resources).remove(index);
+        if (isTracking() && removed != null) {
+          recordChange(relationPath(type, relation) + "/" + index, Operation.REMOVE, removed, null);
+        }
       }
     }
     return this;
@@ -511,7 +675,11 @@ public final class HalResource implements HalObject {
   }
 
   private HalResource removeResources(HalResourceType type) {
-    model.remove(type.toString());
+    invalidateEmbeddedIndexes(type, null);
+    JsonNode removed = model.remove(type.toString());
+    if (isTracking() && removed != null) {
+      recordChange("/" + type, Operation.REMOVE, removed, null);
+    }
     return this;
   }
 
@@ -521,7 +689,12 @@ public final class HalResource implements HalObject {
    * @return HAL resource
    */
   public HalResource addState(ObjectNode state) {
-    state.fields().forEachRemaining(entry -> model.set(entry.getKey(), entry.getValue()));
+    state.fields().forEachRemaining(entry -> {
+      JsonNode previous = model.replace(entry.getKey(), entry.getValue());
+      if (isTracking()) {
+        recordChange("/" + ChangeJournal.escape(entry.getKey()), previous == null ? Operation.ADD : Operation.REPLACE, previous, entry.getValue());
+      }
+    });
     return this;
   }
 
@@ -540,8 +713,173 @@ public final class HalResource implements HalObject {
    * @return HAL resource
    */
   public HalResource removeState() {
-    getStateFieldNames().forEach(field -> model.remove(field));
+    getStateFieldNames().forEach(field -> {
+      JsonNode removed = model.remove(field);
+      if (isTracking()) {
+        recordChange("/" + ChangeJournal.escape(field), Operation.REMOVE, removed, null);
+      }
+    });
     return this;
   }
 
+  /**
+   * Applies a JSON patch (RFC 6902) to this resource. Paths into "_links" and "_embedded" can address a relation with a
+   * single link or embedded resource like an array with one item (e.g. <code>/_links/item/0/href</code>), and adding
+   * to such a relation will convert it into an array. The patch is applied atomically: If any operation fails, the
+   * resource is left unchanged.
+   * @param patch JSON array of patch operations
+   * @return HAL resource
+   * @throws IllegalArgumentException if the patch is not valid or any of its operations failed
+   */
+  public HalResource applyPatch(JsonNode patch) {
+    JsonPatches.applyJsonPatch(model, patch);
+    embeddedIndexes = null;
+    if (isTracking()) {
+      recordChange("", Operation.PATCH, null, patch);
+    }
+    return this;
+  }
+
+  /**
+   * Applies a JSON merge patch (RFC 7396) to this resource. An object in the patch is merged into a relation with a
+   * single link or embedded resource, even if that relation is stored as an array with one item. The patch is applied
+   * atomically: If it fails, the resource is left unchanged.
+   * @param patch JSON object with the properties to merge
+   * @return HAL resource
+   * @throws IllegalArgumentException if the patch is not a JSON object
+   */
+  public HalResource applyMergePatch(JsonNode patch) {
+    JsonPatches.applyMergePatch(model, patch);
+    embeddedIndexes = null;
+    if (isTracking()) {
+      recordChange("", Operation.PATCH, null, patch);
+    }
+    return this;
+  }
+
+  /**
+   * Starts to record all modifications of this resource, its links and embedded resources (as far as they are modified
+   * through {@link Link} and {@link HalResource} instances that are retrieved from or added to this resource after
+   * tracking was started). If tracking is not enabled, there is no overhead apart from a null check.
+   * @return HAL resource
+   */
+  public HalResource startChangeTracking() {
+    if (!isTracking()) {
+      journal = new ChangeJournal();
+    }
+    return this;
+  }
+
+  /**
+   * Stops recording modifications of this resource and discards all changes that have not been drained yet.
+   * @return HAL resource
+   */
+  public HalResource stopChangeTracking() {
+    if (journal != null) {
+      journal.disable();
+      journal = null;
+    }
+    return this;
+  }
+
+  /**
+   * @return true if modifications of this resource are currently recorded
+   */
+  public boolean isChangeTrackingEnabled() {
+    return isTracking();
+  }
+
+  /**
+   * Returns all changes recorded since change tracking was started (or since the changes were last drained or reset),
+   * and removes them from the journal.
+   * @return the recorded changes in the order in which they were made (empty if change tracking is not enabled)
+   */
+  public List<HalChange> drainChanges() {
+    return isTracking() ? journal.drain() : ImmutableList.of();
+  }
+
+  /**
+   * Discards all recorded changes, but keeps recording new changes.
+   * @return HAL resource
+   */
+  public HalResource resetChanges() {
+    if (isTracking()) {
+      journal.reset();
+    }
+    return this;
+  }
+
+  private boolean isTracking() {
+    return journal != null && journal.isEnabled();
+  }
+
+  private void recordChange(String relativePath, Operation operation, JsonNode oldValue, JsonNode newValue) {
+    String path = getPath();
+    if (path != null) {
+      journal.record(path + relativePath, operation, oldValue, newValue);
+    }
+  }
+
+  /**
+   * Records the change of a link's property if change tracking is enabled for the link's context resource
+   * @param link the modified link
+   * @param field the name of the modified property
+   * @param previous the previous value of the property (or null)
+   */
+  void recordLinkChange(Link link, String field, JsonNode previous) {
+    if (!isTracking()) {
+      return;
+    }
+    String linkPath = findRelativePath(HalResourceType.LINKS, link.getModel());
+    if (linkPath != null) {
+      recordChange(linkPath + "/" + ChangeJournal.escape(field), previous == null ? Operation.ADD : Operation.REPLACE, previous,
+          link.getModel().get(field));
+    }
+  }
+
+  /**
+   * @return a JSON pointer to this resource's model, relative to the outermost known context resource, or null if this
+   *         resource is no longer embedded in its context resource
+   */
+  private String getPath() {
+    if (context == null) {
+      return "";
+    }
+    String contextPath = context.getPath();
+    String relativePath = context.findRelativePath(HalResourceType.EMBEDDED, model);
+    return contextPath == null || relativePath == null ? null : contextPath + relativePath;
+  }
+
+  private static String relationPath(HalResourceType type, String relation) {
+    return "/" + type + "/" + ChangeJournal.escape(relation);
+  }
+
+  /**
+   * @param type links or embedded resources
+   * @param child the model of a link or embedded resource
+   * @return the JSON pointer to the given link or resource, relative to this resource, or null if it can't be found
+   */
+  private String findRelativePath(HalResourceType type, ObjectNode child) {
+    JsonNode resources = model.get(type.toString());
+    if (resources == null) {
+      return null;
+    }
+    Iterator<Map.Entry<String, JsonNode>> relations = resources.fields();
+    while (relations.hasNext()) {
+      Map.Entry<String, JsonNode> relation = relations.next();
+      JsonNode value = relation.getValue();
+      if (value == child) {
+        return relationPath(type, relation.getKey());
+      }
+      if (value.isArray()) {
+        for (int i = 0; i < value.size(); i++) {
+          if (value.get(i) == child) {
+            return relationPath(type, relation.getKey()) + "/" + i;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
 }
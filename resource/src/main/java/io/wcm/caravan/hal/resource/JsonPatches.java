@@ -0,0 +1,475 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Applies JSON patches (RFC 6902) and JSON merge patches (RFC 7396) to the model of a HAL resource. All modifications
+ * are recorded in an undo log, so that the model can be restored if any operation fails. Paths into "_links" and
+ * "_embedded" are HAL-aware: A relation with a single link or resource can be addressed with index 0 (just like a
+ * relation with an array), and adding to a relation converts a single object into an array first.
+ */
+final class JsonPatches {
+
+  private static final String LINKS = HalResourceType.LINKS.toString();
+  private static final String EMBEDDED = HalResourceType.EMBEDDED.toString();
+
+  private final ObjectNode model;
+  private final Deque<Runnable> undoLog = new ArrayDeque<>();
+
+  private JsonPatches(ObjectNode model) {
+    this.model = model;
+  }
+
+  static void applyJsonPatch(ObjectNode model, JsonNode patch) {
+    if (patch == null || !patch.isArray()) {
+      throw new IllegalArgumentException("A JSON patch must be an array of operations, but was " + patch);
+    }
+    JsonPatches patches = new JsonPatches(model);
+    patches.atomically(() -> {
+      int index = 0;
+      for (JsonNode operation : patch) {
+        patches.applyOperation(operation, index++);
+      }
+    });
+  }
+
+  static void applyMergePatch(ObjectNode model, JsonNode patch) {
+    if (patch == null || !patch.isObject()) {
+      throw new IllegalArgumentException("A JSON merge patch for a HAL resource must be an object, but was " + patch);
+    }
+    JsonPatches patches = new JsonPatches(model);
+    patches.atomically(() -> patches.merge(model, (ObjectNode)patch, false));
+  }
+
+  private void atomically(Runnable modifications) {
+    try {
+      modifications.run();
+    }
+    catch (RuntimeException ex) {
+      while (!undoLog.isEmpty()) {
+        undoLog.pop().run();
+      }
+      throw ex;
+    }
+  }
+
+  private void applyOperation(JsonNode operation, int index) {
+    String op = operation.path("op").asText(null);
+    try {
+      if (op == null) {
+        throw new IllegalArgumentException("'op' is missing");
+      }
+      switch (op) {
+        case "add":
+          add(pointer(operation, "path"), value(operation));
+          break;
+        case "remove":
+          remove(pointer(operation, "path"));
+          break;
+        case "replace":
+          replace(pointer(operation, "path"), value(operation));
+          break;
+        case "move":
+          List<String> from = pointer(operation, "from");
+          List<String> path = pointer(operation, "path");
+          if (path.size() > from.size() && path.subList(0, from.size()).equals(from)) {
+            throw new IllegalArgumentException("a value can't be moved into one of its children");
+          }
+          add(path, remove(from));
+          break;
+        case "copy":
+          add(pointer(operation, "path"), get(pointer(operation, "from")).deepCopy());
+          break;
+        case "test":
+          if (!isEqual(get(pointer(operation, "path")), value(operation))) {
+            throw new IllegalArgumentException("the value is different");
+          }
+          break;
+        default:
+          throw new IllegalArgumentException("unknown operation '" + op + "'");
+      }
+    }
+    catch (IllegalArgumentException ex) {
+      throw new IllegalArgumentException("JSON patch operation #" + index + " " + operation + " failed: " + ex.getMessage(), ex);
+    }
+  }
+
+  private static JsonNode value(JsonNode operation) {
+    JsonNode value = operation.get("value");
+    if (value == null) {
+      throw new IllegalArgumentException("'value' is missing");
+    }
+    return value.deepCopy();
+  }
+
+  /**
+   * Compares two values as described in RFC 6902, section 4.6: numbers are equal if their values are numerically
+   * equal (e.g. 10, 10.0 and 1e1), which {@link JsonNode#equals(Object)} doesn't consider for different number types
+   * @param actual the value in the resource
+   * @param expected the value of the operation
+   * @return true if the values are equal
+   */
+  private static boolean isEqual(JsonNode actual, JsonNode expected) {
+    if (actual.isNumber() && expected.isNumber()) {
+      return actual.decimalValue().compareTo(expected.decimalValue()) == 0;
+    }
+    if (actual.isArray() && expected.isArray() || actual.isObject() && expected.isObject()) {
+      if (actual.size() != expected.size()) {
+        return false;
+      }
+      if (actual.isArray()) {
+        for (int i = 0; i < actual.size(); i++) {
+          if (!isEqual(actual.get(i), expected.get(i))) {
+            return false;
+          }
+        }
+        return true;
+      }
+      Iterator<Map.Entry<String, JsonNode>> fields = expected.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        JsonNode value = actual.get(field.getKey());
+        if (value == null || !isEqual(value, field.getValue())) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return actual.equals(expected);
+  }
+
+  /**
+   * @param operation patch operation
+   * @param name name of the property that contains the JSON pointer
+   * @return the unescaped reference tokens of the JSON pointer (RFC 6901)
+   */
+  private static List<String> pointer(JsonNode operation, String name) {
+    String pointer = operation.path(name).asText(null);
+    if (pointer == null) {
+      throw new IllegalArgumentException("'" + name + "' is missing");
+    }
+    List<String> tokens = new ArrayList<>();
+    if (pointer.isEmpty()) {
+      return tokens;
+    }
+    if (!pointer.startsWith("/")) {
+      throw new IllegalArgumentException("invalid JSON pointer '" + pointer + "'");
+    }
+    for (String token : StringUtils.splitPreserveAllTokens(pointer.substring(1), '/')) {
+      tokens.add(token.replace("~1", "/").replace("~0", "~"));
+    }
+    return tokens;
+  }
+
+  private JsonNode get(List<String> path) {
+    JsonNode node = find(path, path.size());
+    if (node == null) {
+      throw new IllegalArgumentException("path doesn't exist");
+    }
+    return node;
+  }
+
+  private void add(List<String> path, JsonNode value) {
+    if (path.isEmpty()) {
+      replaceRoot(value);
+      return;
+    }
+    String token = path.get(path.size() - 1);
+    JsonNode parent = findParent(path, true);
+    if (parent instanceof ObjectNode) {
+      put((ObjectNode)parent, token, value);
+    }
+    else {
+      ArrayNode array = (ArrayNode)parent;
+      insert(array, "-".equals(token) ? array.size() : index(token, array.size()), value);
+    }
+  }
+
+  private JsonNode remove(List<String> path) {
+    if (path.isEmpty()) {
+      throw new IllegalArgumentException("the resource itself can't be removed");
+    }
+    String token = path.get(path.size() - 1);
+    ObjectNode relations = findRelationsOfSingleItem(path);
+    if (relations != null) {
+      // just like the last link of an array, a single link is removed together with its relation
+      index(token, 0);
+      return remove(relations, path.get(path.size() - 2));
+    }
+    JsonNode parent = findParent(path, false);
+    if (parent instanceof ObjectNode) {
+      if (!parent.has(token)) {
+        throw new IllegalArgumentException("path doesn't exist");
+      }
+      return remove((ObjectNode)parent, token);
+    }
+
+    ArrayNode array = (ArrayNode)parent;
+    int index = index(token, array.size() - 1);
+    JsonNode removed = remove(array, index);
+    if (array.size() == 0 && isRelationIndex(path, path.size() - 1)) {
+      // just like HalResource#removeLink, the relation is removed completely when the last link is removed
+      remove((ObjectNode)find(path, path.size() - 2), path.get(path.size() - 2));
+    }
+    return removed;
+  }
+
+  private void replace(List<String> path, JsonNode value) {
+    if (path.isEmpty()) {
+      replaceRoot(value);
+      return;
+    }
+    String token = path.get(path.size() - 1);
+    ObjectNode relations = findRelationsOfSingleItem(path);
+    if (relations != null) {
+      // a single link or embedded resource is replaced without converting its relation into an array
+      index(token, 0);
+      put(relations, path.get(path.size() - 2), value);
+      return;
+    }
+    JsonNode parent = findParent(path, false);
+    if (parent instanceof ObjectNode) {
+      if (!parent.has(token)) {
+        throw new IllegalArgumentException("path doesn't exist");
+      }
+      put((ObjectNode)parent, token, value);
+    }
+    else {
+      ArrayNode array = (ArrayNode)parent;
+      set(array, index(token, array.size() - 1), value);
+    }
+  }
+
+  /**
+   * @param path the path of a value to replace or remove
+   * @return the "_links" or "_embedded" object if the path points to the single (non-array) item of a relation, or null
+   *         otherwise
+   */
+  private ObjectNode findRelationsOfSingleItem(List<String> path) {
+    int last = path.size() - 1;
+    if (!isRelationIndex(path, last) || !(find(path, last) instanceof ObjectNode)) {
+      return null;
+    }
+    return (ObjectNode)find(path, last - 1);
+  }
+
+  /**
+   * @param path the path of a value to add, replace or remove
+   * @param create true if a value is added, and a single item or a missing relation should be converted into an array
+   * @return the object or array that contains (or will contain) the value
+   */
+  private JsonNode findParent(List<String> path, boolean create) {
+    int last = path.size() - 1;
+    JsonNode parent = find(path, last);
+
+    if (create && isRelationIndex(path, last) && !(parent instanceof ArrayNode)) {
+      JsonNode relations = find(path, last - 1);
+      if (relations instanceof ObjectNode) {
+        // use the same normalization as HalResource#addLinks: a relation with multiple items is always an array
+        ArrayNode array = ((ObjectNode)relations).arrayNode();
+        if (parent != null) {
+          array.add(parent);
+        }
+        put((ObjectNode)relations, path.get(last - 1), array);
+        return array;
+      }
+    }
+
+    if (parent == null) {
+      throw new IllegalArgumentException("parent path doesn't exist");
+    }
+    if (!parent.isContainerNode()) {
+      throw new IllegalArgumentException("parent path is not an object or array");
+    }
+    return parent;
+  }
+
+  /**
+   * @param path the reference tokens of a JSON pointer
+   * @param length the number of tokens to follow
+   * @return the node at the given path, or null if it doesn't exist
+   */
+  private JsonNode find(List<String> path, int length) {
+    JsonNode node = model;
+    for (int i = 0; i < length && node != null; i++) {
+      String token = path.get(i);
+      if (node instanceof ObjectNode) {
+        if (isRelationIndex(path, i)) {
+          // a single link or embedded resource can be addressed like the first item of an array
+          node = "0".equals(token) ? node : null;
+        }
+        else {
+          node = materialize((ObjectNode)node, token);
+        }
+      }
+      else if (node instanceof ArrayNode) {
+        node = isIndex(token) && Integer.parseInt(token) < node.size() ? node.get(Integer.parseInt(token)) : null;
+      }
+      else {
+        node = null;
+      }
+    }
+    return node;
+  }
+
+  /**
+   * @param path the reference tokens of a JSON pointer
+   * @param i index of the token to check
+   * @return true if the token is the index of a link or embedded resource within a relation
+   */
+  private static boolean isRelationIndex(List<String> path, int i) {
+    if (i < 2) {
+      return false;
+    }
+    String container = path.get(i - 2);
+    String token = path.get(i);
+    return (LINKS.equals(container) || EMBEDDED.equals(container)) && ("-".equals(token) || isIndex(token));
+  }
+
+  private static boolean isIndex(String token) {
+    return StringUtils.isNumeric(token) && (token.length() == 1 || token.charAt(0) != '0') && token.length() < 10;
+  }
+
+  private static int index(String token, int max) {
+    if (!isIndex(token) || Integer.parseInt(token) > max) {
+      throw new IllegalArgumentException("invalid array index '" + token + "'");
+    }
+    return Integer.parseInt(token);
+  }
+
+  /**
+   * Gets the value of an object's property, and replaces links or embedded resources that were added lazily with the
+   * actual JSON models before.
+   * @param object JSON object
+   * @param key property name
+   * @return the property value
+   */
+  private static JsonNode materialize(ObjectNode object, String key) {
+    JsonNode value = object.get(key);
+    DeferredContent deferred = DeferredContent.from(value);
+    if (deferred == null) {
+      return value;
+    }
+    // this is not recorded in the undo log, because the materialized content is equivalent
+    ArrayNode materialized = deferred.materialize(object.arrayNode());
+    object.set(key, materialized);
+    return materialized;
+  }
+
+  private void merge(ObjectNode target, ObjectNode patch, boolean relations) {
+    Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      String key = field.getKey();
+      JsonNode value = field.getValue();
+
+      if (value.isNull()) {
+        if (target.has(key)) {
+          remove(target, key);
+        }
+      }
+      else if (value.isObject()) {
+        JsonNode existing = materialize(target, key);
+        if (relations && existing instanceof ArrayNode && existing.size() == 1 && existing.get(0) instanceof ObjectNode) {
+          // a relation with a single link or resource can be stored as an array as well
+          existing = existing.get(0);
+        }
+        boolean childRelations = LINKS.equals(key) || EMBEDDED.equals(key);
+        if (existing instanceof ObjectNode) {
+          merge((ObjectNode)existing, (ObjectNode)value, childRelations);
+        }
+        else {
+          ObjectNode created = target.objectNode();
+          merge(created, (ObjectNode)value, childRelations);
+          put(target, key, created);
+        }
+      }
+      else {
+        put(target, key, value.deepCopy());
+      }
+    }
+  }
+
+  private void replaceRoot(JsonNode value) {
+    if (!(value instanceof ObjectNode)) {
+      throw new IllegalArgumentException("the resource can only be replaced with an object");
+    }
+    List<Map.Entry<String, JsonNode>> previous = snapshot(model);
+    model.removeAll();
+    model.setAll((ObjectNode)value);
+    undoLog.push(() -> restore(model, previous));
+  }
+
+  private void put(ObjectNode object, String key, JsonNode value) {
+    JsonNode previous = object.get(key);
+    object.set(key, value);
+    undoLog.push(previous == null ? () -> object.remove(key) : () -> object.set(key, previous));
+  }
+
+  private JsonNode remove(ObjectNode object, String key) {
+    // the whole object has to be restored to keep the order of its properties
+    List<Map.Entry<String, JsonNode>> previous = snapshot(object);
+    JsonNode removed = object.remove(key);
+    undoLog.push(() -> restore(object, previous));
+    return removed;
+  }
+
+  private void insert(ArrayNode array, int index, JsonNode value) {
+    array.insert(index, value);
+    undoLog.push(() -> array.remove(index));
+  }
+
+  private JsonNode remove(ArrayNode array, int index) {
+    JsonNode removed = array.remove(index);
+    undoLog.push(() -> array.insert(index, removed));
+    return removed;
+  }
+
+  private void set(ArrayNode array, int index, JsonNode value) {
+    JsonNode previous = array.set(index, value);
+    undoLog.push(() -> array.set(index, previous));
+  }
+
+  private static List<Map.Entry<String, JsonNode>> snapshot(ObjectNode object) {
+    List<Map.Entry<String, JsonNode>> fields = new ArrayList<>(object.size());
+    object.fields().forEachRemaining(field -> fields.add(new SimpleEntry<>(field.getKey(), field.getValue())));
+    return fields;
+  }
+
+  private static void restore(ObjectNode object, List<Map.Entry<String, JsonNode>> fields) {
+    object.removeAll();
+    fields.forEach(field -> object.set(field.getKey(), field.getValue()));
+  }
+
+}
@@ -25,7 +25,6 @@ import java.util.regex.Pattern;
 import org.osgi.annotation.versioning.ProviderType;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ListMultimap;
 
@@ -66,7 +65,7 @@ public final class Link implements HalObject {
    * @param href the URI to put in the "href" property
    */
   public Link(String href) {
-    this.model = JsonNodeFactory.instance.objectNode();
+    this.model = CompactJsonNodeFactory.INSTANCE.objectNode();
 
     this.setHref(href);
   }
@@ -88,7 +87,7 @@ public final class Link implements HalObject {
    * @return Link
    */
   public Link setType(String type) {
-    model.put("type", type);
+    put("type", type);
     return this;
   }
 
@@ -104,7 +103,7 @@ public final class Link implements HalObject {
    * @return Link
    */
   public Link setDeprecation(String deprecation) {
-    model.put("deprecation", deprecation);
+    put("deprecation", deprecation);
     return this;
   }
 
@@ -120,7 +119,7 @@ public final class Link implements HalObject {
    * @return Link
    */
   public Link setName(String name) {
-    model.put("name", name);
+    put("name", name);
     return this;
   }
 
@@ -136,7 +135,7 @@ public final class Link implements HalObject {
    * @return Link
    */
   public Link setProfile(String profile) {
-    model.put("profile", profile);
+    put("profile", profile);
     return this;
   }
 
@@ -152,7 +151,7 @@ public final class Link implements HalObject {
    * @return Link
    */
   public Link setTitle(String title) {
-    model.put("title", title);
+    put("title", title);
     return this;
   }
 
@@ -168,7 +167,7 @@ public final class Link implements HalObject {
    * @return Link
    */
   public Link setHreflang(String hreflang) {
-    model.put("hreflang", hreflang);
+    put("hreflang", hreflang);
     return this;
   }
 
@@ -185,7 +184,7 @@ public final class Link implements HalObject {
    */
   public Link setHref(String href) {
 
-    model.put("href", href);
+    put("href", href);
 
     if (href != null && URI_TEMPLATE_PATTERN.matcher(href).find()) {
       setTemplated(true);
@@ -206,7 +205,7 @@ public final class Link implements HalObject {
    * @return Link
    */
   public Link setTemplated(boolean templated) {
-    model.put("templated", templated);
+    put("templated", templated);
     return this;
   }
 
@@ -238,6 +237,26 @@ public final class Link implements HalObject {
     throw new IllegalStateException("the last known context resource of link with href=" + getHref() + " no longer contains this link");
   }
 
+  private void put(String field, String value) {
+    if (context == null || !context.isChangeTrackingEnabled()) {
+      model.put(field, value);
+      return;
+    }
+    JsonNode previous = model.get(field);
+    model.put(field, value);
+    context.recordLinkChange(this, field, previous);
+  }
+
+  private void put(String field, boolean value) {
+    if (context == null || !context.isChangeTrackingEnabled()) {
+      model.put(field, value);
+      return;
+    }
+    JsonNode previous = model.get(field);
+    model.put(field, value);
+    context.recordLinkChange(this, field, previous);
+  }
+
   /**
    * @param contextResource the HAL resource that contains this link
    */
@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.wcm.caravan.hal.resource.CompactJsonNodeFactory;
+
+/**
+ * Estimates the shallow size of JSON nodes for a 64-bit JVM with compressed object pointers.
+ */
+final class DefaultNodeSizeModel implements NodeSizeModel {
+
+  private static final int OBJECT_HEADER = 12;
+  private static final int ARRAY_HEADER = 16;
+  private static final int REFERENCE = 4;
+
+  // a LinkedHashMap, and one LinkedHashMap.Entry per field
+  private static final int MAP = 56;
+  private static final int MAP_ENTRY = 40;
+
+  // the compact field map of CompactJsonNodeFactory, with two parallel arrays that have a capacity of 4 or 8, and a
+  // LinkedHashMap for more than 8 fields
+  private static final int COMPACT_MAP = 40;
+  private static final int COMPACT_INITIAL_CAPACITY = 4;
+  private static final int COMPACT_MAX_SIZE = 8;
+
+  // an ArrayList with its default capacity of 10
+  private static final int LIST = 24;
+  private static final int LIST_CAPACITY = 10;
+
+  @Override
+  public long getShallowSize(JsonNode node) {
+    switch (node.getNodeType()) {
+      case OBJECT:
+        return align(OBJECT_HEADER + 2 * REFERENCE) + fieldMapSize(node);
+      case ARRAY:
+        return align(OBJECT_HEADER + 2 * REFERENCE) + LIST + align(ARRAY_HEADER + REFERENCE * Math.max(LIST_CAPACITY, node.size()));
+      case STRING:
+        return align(OBJECT_HEADER + REFERENCE) + stringSize(node.textValue());
+      case NUMBER:
+        if (node.isInt() || node.isShort() || node.isFloat()) {
+          return align(OBJECT_HEADER + 4);
+        }
+        if (node.isLong() || node.isDouble()) {
+          return align(OBJECT_HEADER + 8);
+        }
+        // BigInteger or BigDecimal (including the magnitude array)
+        return align(OBJECT_HEADER + REFERENCE) + 40 + align(ARRAY_HEADER + node.bigIntegerValue().bitLength() / 8 + 1);
+      case BINARY:
+        return align(OBJECT_HEADER + REFERENCE) + align(ARRAY_HEADER + node.asText().length() * 3 / 4);
+      case POJO:
+        // the referenced object is not known
+        return align(OBJECT_HEADER + REFERENCE);
+      default:
+        // booleans, nulls and missing nodes are singletons
+        return 0;
+    }
+  }
+
+  @Override
+  public long getFieldNameSize(String name) {
+    return stringSize(name);
+  }
+
+  private static long fieldMapSize(JsonNode node) {
+    int fields = node.size();
+    if (!CompactJsonNodeFactory.isCompactObject(node)) {
+      return linkedHashMapSize(fields);
+    }
+    if (fields > COMPACT_MAX_SIZE) {
+      return COMPACT_MAP + linkedHashMapSize(fields);
+    }
+    if (fields == 0) {
+      return COMPACT_MAP;
+    }
+    int capacity = fields <= COMPACT_INITIAL_CAPACITY ? COMPACT_INITIAL_CAPACITY : COMPACT_MAX_SIZE;
+    return COMPACT_MAP + 2 * align(ARRAY_HEADER + REFERENCE * capacity);
+  }
+
+  private static long linkedHashMapSize(int fields) {
+    return MAP + align(ARRAY_HEADER + REFERENCE * tableSize(fields)) + (long)MAP_ENTRY * fields;
+  }
+
+  private static int tableSize(int fields) {
+    // the hash table has a power of two capacity and a load factor of 0.75
+    int capacity = 16;
+    while (capacity * 3 / 4 < fields) {
+      capacity *= 2;
+    }
+    return capacity;
+  }
+
+  private static long stringSize(String value) {
+    // a String instance with a byte array (assuming that most field names and values are Latin-1)
+    return align(OBJECT_HEADER + 3 * 4) + align(ARRAY_HEADER + value.length());
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+}
@@ -0,0 +1,327 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+/**
+ * Assembles a HAL resource from embedded resources and links that are loaded asynchronously (e.g. from multiple
+ * upstream services). Each contribution is added to the resource as soon as it and all contributions declared before
+ * it for the same relation (and type) have completed, so the order of links and embedded resources is always the declaration
+ * order, no matter in which order the upstream calls finish. The relations themselves are created in the order in which
+ * they were first declared when {@link #assemble()} is called (and removed again if all of their contributions are
+ * omitted), so the JSON output is the same in every run. All modifications of the resource are serialized, so the
+ * resource must not be accessed by anyone else until the stage returned by {@link #assemble()} has completed.
+ */
+@ProviderType
+public final class HalAssembler {
+
+  /**
+   * Defines what happens if a contribution fails or doesn't complete in time.
+   */
+  public enum PartialResultPolicy {
+
+    /**
+     * The assembled resource fails with the first failure (or a {@link TimeoutException})
+     */
+    FAIL,
+
+    /**
+     * Failed and timed out contributions are omitted from the assembled resource
+     */
+    OMIT
+  }
+
+  private final HalResource hal;
+  // links and embedded resources with the same relation are independent of each other, so the key includes the type
+  private final Map<String, RelationContributions> contributionsByRelation = new LinkedHashMap<>();
+
+  private PartialResultPolicy policy = PartialResultPolicy.FAIL;
+  private long timeout;
+  private TimeUnit timeoutUnit;
+  private ScheduledExecutorService scheduler;
+
+  private final Map<String, ObjectNode> createdContainers = new LinkedHashMap<>();
+
+  private CompletableFuture<HalResource> result;
+  private int pendingCount;
+  private boolean finished;
+
+  /**
+   * @param hal the resource to which all contributions will be added
+   */
+  public HalAssembler(HalResource hal) {
+    this.hal = hal;
+  }
+
+  /**
+   * @param relation relation of the embedded resource
+   * @param resource an embedded resource that will be available later
+   * @return this assembler
+   */
+  public HalAssembler addEmbedded(String relation, CompletionStage<HalResource> resource) {
+    return add(relation, resource, false);
+  }
+
+  /**
+   * @param relation relation of the link
+   * @param link a link that will be available later
+   * @return this assembler
+   */
+  public HalAssembler addLink(String relation, CompletionStage<Link> link) {
+    return add(relation, link, true);
+  }
+
+  /**
+   * @param value the policy to use if a contribution fails or times out (default is {@link PartialResultPolicy#FAIL})
+   * @return this assembler
+   */
+  public HalAssembler setPartialResultPolicy(PartialResultPolicy value) {
+    this.policy = value;
+    return this;
+  }
+
+  /**
+   * @param value the maximum time to wait for all contributions, measured from the call to {@link #assemble()}
+   * @param unit time unit of the value
+   * @param executor the executor used to schedule the timeout
+   * @return this assembler
+   */
+  public HalAssembler setTimeout(long value, TimeUnit unit, ScheduledExecutorService executor) {
+    this.timeout = value;
+    this.timeoutUnit = unit;
+    this.scheduler = executor;
+    return this;
+  }
+
+  private synchronized HalAssembler add(String relation, CompletionStage<?> stage, boolean link) {
+    if (result != null) {
+      throw new IllegalStateException("Contributions can't be added after assemble() was called");
+    }
+    String key = (link ? "_links/" : "_embedded/") + relation;
+    contributionsByRelation.computeIfAbsent(key, k -> new RelationContributions(link, relation)).add(new Contribution(stage));
+    pendingCount++;
+    return this;
+  }
+
+  /**
+   * Starts to add the contributions to the resource as they complete. This method must only be called once.
+   * @return a stage that completes with the resource when all contributions have been added (or omitted), or that fails
+   *         according to the {@link PartialResultPolicy}
+   */
+  public CompletionStage<HalResource> assemble() {
+    List<Runnable> subscriptions = new ArrayList<>();
+    synchronized (this) {
+      if (result != null) {
+        throw new IllegalStateException("assemble() was already called");
+      }
+      result = new CompletableFuture<>();
+      if (pendingCount == 0) {
+        result.complete(hal);
+        return result;
+      }
+      createRelations();
+      for (RelationContributions contributions : contributionsByRelation.values()) {
+        for (Contribution contribution : contributions.items) {
+          subscriptions.add(() -> contribution.stage.whenComplete((value, ex) -> onComplete(contributions, contribution, value, ex)));
+        }
+      }
+    }
+
+    if (scheduler != null) {
+      ScheduledFuture<?> scheduled = scheduler.schedule(this::onTimeout, timeout, timeoutUnit);
+      // this also cancels the timeout if the result was completed before it was scheduled
+      result.whenComplete((value, ex) -> scheduled.cancel(false));
+    }
+    // stages that are already completed will call onComplete immediately, so this must not be done while holding the lock
+    subscriptions.forEach(Runnable::run);
+    return result;
+  }
+
+  private void onComplete(RelationContributions contributions, Contribution contribution, Object value, Throwable ex) {
+    Throwable failure = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    if (failure == null && value == null) {
+      failure = new IllegalStateException("Contribution for relation " + contributions.relation + " completed with null");
+    }
+
+    boolean done;
+    synchronized (this) {
+      if (finished || contribution.state != State.PENDING) {
+        return;
+      }
+      if (failure != null && policy == PartialResultPolicy.FAIL) {
+        done = false;
+      }
+      else {
+        contribution.state = failure != null ? State.OMITTED : State.COMPLETED;
+        contribution.value = value;
+        contributions.flush();
+        pendingCount--;
+        done = pendingCount == 0;
+      }
+      finished = done || failure != null && policy == PartialResultPolicy.FAIL;
+      if (finished) {
+        removeEmptyRelations();
+      }
+    }
+
+    if (failure != null && policy == PartialResultPolicy.FAIL) {
+      result.completeExceptionally(failure);
+    }
+    else if (done) {
+      result.complete(hal);
+    }
+  }
+
+  private void onTimeout() {
+    synchronized (this) {
+      if (finished) {
+        return;
+      }
+      if (policy == PartialResultPolicy.OMIT) {
+        for (RelationContributions contributions : contributionsByRelation.values()) {
+          for (Contribution contribution : contributions.items) {
+            if (contribution.state == State.PENDING) {
+              contribution.state = State.OMITTED;
+            }
+          }
+          contributions.flush();
+        }
+      }
+      removeEmptyRelations();
+      finished = true;
+    }
+
+    if (policy == PartialResultPolicy.OMIT) {
+      result.complete(hal);
+    }
+    else {
+      result.completeExceptionally(new TimeoutException("Not all contributions completed within " + timeout + " " + timeoutUnit));
+    }
+  }
+
+  /**
+   * Creates an empty array for each relation that doesn't exist yet, in the order in which they were declared
+   */
+  private void createRelations() {
+    for (RelationContributions contributions : contributionsByRelation.values()) {
+      ObjectNode container = (ObjectNode)hal.getModel().get(contributions.type);
+      if (container == null) {
+        container = hal.getModel().putObject(contributions.type);
+        createdContainers.put(contributions.type, container);
+      }
+      if (!container.has(contributions.relation)) {
+        container.putArray(contributions.relation);
+        contributions.createdIn = container;
+      }
+    }
+  }
+
+  /**
+   * Removes the relations (and containers) created by {@link #createRelations()} to which nothing was added
+   */
+  private void removeEmptyRelations() {
+    for (RelationContributions contributions : contributionsByRelation.values()) {
+      if (contributions.createdIn != null) {
+        JsonNode added = contributions.createdIn.get(contributions.relation);
+        if (added != null && added.isArray() && added.size() == 0) {
+          contributions.createdIn.remove(contributions.relation);
+        }
+      }
+    }
+    for (Map.Entry<String, ObjectNode> entry : createdContainers.entrySet()) {
+      if (entry.getValue().size() == 0) {
+        hal.getModel().remove(entry.getKey());
+      }
+    }
+  }
+
+  private enum State {
+    PENDING, COMPLETED, OMITTED
+  }
+
+  private static final class Contribution {
+
+    private final CompletionStage<?> stage;
+    private State state = State.PENDING;
+    private Object value;
+
+    Contribution(CompletionStage<?> stage) {
+      this.stage = stage;
+    }
+  }
+
+  private final class RelationContributions {
+
+    private final boolean link;
+    private final String type;
+    private final String relation;
+    private final List<Contribution> items = new ArrayList<>();
+    private ObjectNode createdIn;
+    private int flushed;
+
+    RelationContributions(boolean link, String relation) {
+      this.link = link;
+      this.type = link ? "_links" : "_embedded";
+      this.relation = relation;
+    }
+
+    void add(Contribution contribution) {
+      items.add(contribution);
+    }
+
+    /**
+     * Adds all completed contributions to the resource that are not preceded by a pending contribution
+     */
+    void flush() {
+      while (flushed < items.size() && items.get(flushed).state != State.PENDING) {
+        Contribution contribution = items.get(flushed++);
+        if (contribution.state == State.COMPLETED) {
+          if (link) {
+            hal.addLinks(relation, (Link)contribution.value);
+          }
+          else {
+            hal.addEmbedded(relation, (HalResource)contribution.value);
+          }
+        }
+        contribution.value = null;
+      }
+    }
+  }
+
+}
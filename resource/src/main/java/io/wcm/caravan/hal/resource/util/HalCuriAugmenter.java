@@ -20,17 +20,14 @@
 package io.wcm.caravan.hal.resource.util;
 
 import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.osgi.annotation.versioning.ProviderType;
 
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import io.wcm.caravan.hal.resource.HalResource;
 import io.wcm.caravan.hal.resource.Link;
@@ -38,6 +35,12 @@ import io.wcm.caravan.hal.resource.Link;
 /**
  * Augments a HAL resource by CURI documentation links for links in the main and embedded resources. Pre-defined CURIES
  * in the HAL resource will remain and not overwritten.
+ * <p>
+ * The registry is copy-on-write, so an augmenter can be shared by multiple threads that call {@link #augment(HalResource)}
+ * concurrently while CURIES are (rarely) registered or unregistered. Each augmentation scans the JSON model of the
+ * resource tree once and adds copies of the registered links. Relations of embedded resources that were added lazily
+ * are not considered.
+ * </p>
  * @deprecated This is replaced by HalDocsAugmenter from the io.wcm.caravan.hal.docs bundle.
  */
 @Deprecated
@@ -52,9 +55,9 @@ public final class HalCuriAugmenter {
   /**
    * HAL specific separator for CURI names and relation.
    */
-  private static final String LINK_RELATION_SEPARATOR = ":";
+  private static final char LINK_RELATION_SEPARATOR = ':';
 
-  private Map<String, Link> registry = Maps.newHashMap();
+  private volatile Map<String, Link> registry = Collections.emptyMap();
 
   /**
    * Registers a CURI link by the given name and HREF.
@@ -72,8 +75,10 @@ public final class HalCuriAugmenter {
    * @param link CURI link
    * @return This augmenter
    */
-  public HalCuriAugmenter register(Link link) {
-    registry.put(link.getName(), link);
+  public synchronized HalCuriAugmenter register(Link link) {
+    Map<String, Link> updated = new HashMap<>(registry);
+    updated.put(link.getName(), link);
+    registry = updated;
     return this;
   }
 
@@ -82,8 +87,12 @@ public final class HalCuriAugmenter {
    * @param name CURI name
    * @return This augmenter
    */
-  public HalCuriAugmenter unregister(String name) {
-    registry.remove(name);
+  public synchronized HalCuriAugmenter unregister(String name) {
+    if (registry.containsKey(name)) {
+      Map<String, Link> updated = new HashMap<>(registry);
+      updated.remove(name);
+      registry = updated;
+    }
     return this;
   }
 
@@ -111,58 +120,78 @@ public final class HalCuriAugmenter {
    */
   public HalCuriAugmenter augment(HalResource hal) {
 
-    Set<String> existingCurieNames = getExistingCurieNames(hal);
-    Set<Link> curieLinks = getCuriLinks(hal, existingCurieNames);
-    hal.addLinks(LINK_RELATION_CURIES, curieLinks);
-    return this;
-
-  }
-
-  private Set<String> getExistingCurieNames(HalResource hal) {
-
-    if (!hal.hasLink(LINK_RELATION_CURIES)) {
-      return Collections.emptySet();
+    Map<String, Link> snapshot = registry;
+    if (snapshot.isEmpty()) {
+      return this;
     }
-    Link link = hal.getLink(LINK_RELATION_CURIES);
-    return Collections.singleton(link.getName());
 
-  }
+    // the CURI links to add by name, in the order in which they are first referenced
+    Map<String, Link> curieLinks = new LinkedHashMap<>();
+    JsonNode existingCuries = hal.getModel().path("_links").path(LINK_RELATION_CURIES);
+    if (existingCuries.isArray()) {
+      existingCuries.forEach(existing -> addExistingCurieName(existing, curieLinks));
+    }
+    else {
+      addExistingCurieName(existingCuries, curieLinks);
+    }
 
-  private Set<Link> getCuriLinks(HalResource hal, Set<String> existingCurieNames) {
+    collectCuriLinks(hal.getModel(), snapshot, curieLinks);
 
-    Set<Link> curiLinks = Sets.newLinkedHashSet();
-    curiLinks.addAll(getCuriLinksForCurrentHalResource(hal, existingCurieNames));
-    curiLinks.addAll(getCuriLinksForEmbeddedResources(hal, existingCurieNames));
-    return curiLinks;
+    Link[] added = curieLinks.values().stream()
+        .filter(link -> link != null)
+        // the registered links are shared, so each resource gets its own copy
+        .map(link -> new Link(link.getModel().deepCopy()))
+        .toArray(Link[]::new);
+    hal.addLinks(LINK_RELATION_CURIES, added);
+    return this;
 
   }
 
-  private List<Link> getCuriLinksForCurrentHalResource(HalResource hal, Set<String> existingCurieNames) {
-
-    return hal.getLinks().keySet().stream()
-        // get CURI name for relation
-        .map(relation -> getCurieName(relation))
-        // filter CURIE being empty or exist in HAL resource
-        .filter(curieName -> StringUtils.isNotEmpty(curieName) && !existingCurieNames.contains(curieName))
-        // get link for CURI name
-        .map(curieName -> registry.get(curieName))
-        // filter non existing links
-        .filter(link -> link != null)
-        .collect(Collectors.toList());
-
+  private static void addExistingCurieName(JsonNode existing, Map<String, Link> curieLinks) {
+    JsonNode name = existing.path("name");
+    if (name.isTextual()) {
+      // a null value marks CURI names that must not be added again
+      curieLinks.put(name.textValue(), null);
+    }
   }
 
-  private List<Link> getCuriLinksForEmbeddedResources(HalResource hal, Set<String> existingCurieNames) {
+  private static void collectCuriLinks(JsonNode model, Map<String, Link> snapshot, Map<String, Link> curieLinks) {
+
+    Iterator<String> relations = model.path("_links").fieldNames();
+    while (relations.hasNext()) {
+      String curieName = getCurieName(relations.next());
+      if (curieName != null && !curieLinks.containsKey(curieName)) {
+        Link link = snapshot.get(curieName);
+        if (link != null) {
+          curieLinks.put(curieName, link);
+        }
+      }
+    }
 
-    return hal.getEmbedded().values().stream()
-        .flatMap(embeddedResource -> getCuriLinks(embeddedResource, existingCurieNames).stream())
-        .collect(Collectors.toList());
+    for (JsonNode embedded : model.path("_embedded")) {
+      if (embedded.isArray()) {
+        for (JsonNode item : embedded) {
+          collectCuriLinks(item, snapshot, curieLinks);
+        }
+      }
+      else {
+        collectCuriLinks(embedded, snapshot, curieLinks);
+      }
+    }
 
   }
 
-  private String getCurieName(String relation) {
-    String[] tokens = StringUtils.split(relation, LINK_RELATION_SEPARATOR, 2);
-    return ArrayUtils.isEmpty(tokens) ? null : tokens[0];
+  private static String getCurieName(String relation) {
+    // same as splitting by the separator: leading separators are ignored, and a relation without separator is a name
+    int start = 0;
+    while (start < relation.length() && relation.charAt(start) == LINK_RELATION_SEPARATOR) {
+      start++;
+    }
+    if (start == relation.length()) {
+      return null;
+    }
+    int end = relation.indexOf(LINK_RELATION_SEPARATOR, start);
+    return relation.substring(start, end < 0 ? relation.length() : end);
   }
 
 }
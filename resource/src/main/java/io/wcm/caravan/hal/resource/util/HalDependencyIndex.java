@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.wcm.caravan.hal.resource.HalResource;
+
+/**
+ * A reverse index that keeps track of the resources that are embedded in cached HAL resources, so that all cached
+ * resources that embed a specific resource can be found (and invalidated) when that resource changes.
+ * <p>
+ * For each cached root resource (identified by a cache key), the index records its own self href and the self hrefs of
+ * all (nested) embedded resources, and optionally the hrefs of all non-templated links. Looking up the roots for an
+ * href is a single hash lookup. Most hrefs are only contained in a single root, so the index stores that root's key
+ * directly (or a small copy-on-write array of keys), and only switches to a concurrent set of cache keys for hrefs
+ * with many roots (so adding or removing a root doesn't depend on the number of other roots with the same href). It
+ * stores one array of hrefs per root (which share the string instances with the resource models), and can be updated
+ * and queried concurrently.
+ * Embedded resources and links that were added lazily are not indexed.
+ * </p>
+ */
+@ProviderType
+public final class HalDependencyIndex {
+
+  private static final int MAX_ROOTS_IN_ARRAY = 8;
+
+  private final boolean includeLinks;
+
+  private final ConcurrentHashMap<String, String[]> hrefsByRoot = new ConcurrentHashMap<>();
+  // the roots of an href are either a single key (String), an array of keys that is never modified after it was stored
+  // (String[]), or a concurrent Set of keys
+  private final ConcurrentHashMap<String, Object> rootsByHref = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an index that only records the self hrefs of embedded resources
+   */
+  public HalDependencyIndex() {
+    this(false);
+  }
+
+  /**
+   * @param includeLinks true if the hrefs of all links should be recorded as well
+   */
+  public HalDependencyIndex(boolean includeLinks) {
+    this.includeLinks = includeLinks;
+  }
+
+  /**
+   * Records the dependencies of a cached resource, replacing any dependencies previously recorded for the same key
+   * @param rootKey cache key of the resource
+   * @param hal the cached resource
+   */
+  public void put(String rootKey, HalResource hal) {
+    Set<String> hrefs = collectHrefs(hal.getModel());
+    hrefsByRoot.compute(rootKey, (key, previousHrefs) -> {
+      // all updates of the reverse index for the same root are done while holding the lock for that root
+      Set<String> previous = previousHrefs != null ? new HashSet<>(Arrays.asList(previousHrefs)) : Collections.emptySet();
+      for (String href : previous) {
+        if (!hrefs.contains(href)) {
+          removeRoot(href, key);
+        }
+      }
+      for (String href : hrefs) {
+        if (!previous.contains(href)) {
+          addRoot(href, key);
+        }
+      }
+      return hrefs.toArray(new String[hrefs.size()]);
+    });
+  }
+
+  /**
+   * Removes all dependencies of a resource that was removed from the cache
+   * @param rootKey cache key of the resource
+   */
+  public void remove(String rootKey) {
+    hrefsByRoot.computeIfPresent(rootKey, (key, previousHrefs) -> {
+      for (String href : previousHrefs) {
+        removeRoot(href, key);
+      }
+      return null;
+    });
+  }
+
+  /**
+   * @param href the href of a resource
+   * @return the cache keys of all roots that contain (or are) the resource with the given href
+   */
+  public List<String> getRootsContaining(String href) {
+    Object roots = rootsByHref.get(href);
+    if (roots == null) {
+      return Collections.emptyList();
+    }
+    if (roots instanceof String) {
+      return Collections.singletonList((String)roots);
+    }
+    if (roots instanceof String[]) {
+      return Collections.unmodifiableList(Arrays.asList((String[])roots));
+    }
+    return Collections.unmodifiableList(new ArrayList<>(asSet(roots)));
+  }
+
+  /**
+   * @param rootKey cache key of a resource
+   * @return true if dependencies are recorded for the given key
+   */
+  public boolean contains(String rootKey) {
+    return hrefsByRoot.containsKey(rootKey);
+  }
+
+  /**
+   * @return the number of root resources in the index
+   */
+  public int getRootCount() {
+    return hrefsByRoot.size();
+  }
+
+  /**
+   * @return the number of distinct hrefs in the index
+   */
+  public int getHrefCount() {
+    return rootsByHref.size();
+  }
+
+  private Set<String> collectHrefs(JsonNode model) {
+    Set<String> hrefs = new LinkedHashSet<>();
+    addHref(hrefs, model.path("_links").path("self"));
+    if (includeLinks) {
+      LinkModels.forEach(model, link -> {
+        if (!link.path("templated").asBoolean()) {
+          addHref(hrefs, link);
+        }
+      });
+    }
+    else {
+      LinkModels.forEachEmbedded(model, embedded -> addHref(hrefs, embedded.path("_links").path("self")));
+    }
+    return hrefs;
+  }
+
+  private static void addHref(Set<String> hrefs, JsonNode link) {
+    // a self link can also be an array (with a single link)
+    JsonNode href = link.isArray() ? link.path(0).path("href") : link.path("href");
+    if (href.isTextual()) {
+      hrefs.add(href.textValue());
+    }
+  }
+
+  private void addRoot(String href, String rootKey) {
+    // the roots are only replaced or modified while holding the lock for the href, so no root can get lost
+    rootsByHref.compute(href, (key, roots) -> {
+      if (roots == null) {
+        return rootKey;
+      }
+      if (roots instanceof String) {
+        return roots.equals(rootKey) ? roots : new String[] { (String)roots, rootKey };
+      }
+      if (roots instanceof String[]) {
+        String[] array = (String[])roots;
+        if (Arrays.asList(array).contains(rootKey)) {
+          return array;
+        }
+        if (array.length < MAX_ROOTS_IN_ARRAY) {
+          String[] updated = Arrays.copyOf(array, array.length + 1);
+          updated[array.length] = rootKey;
+          return updated;
+        }
+        Set<String> updated = ConcurrentHashMap.newKeySet();
+        updated.addAll(Arrays.asList(array));
+        updated.add(rootKey);
+        return updated;
+      }
+      asSet(roots).add(rootKey);
+      return roots;
+    });
+  }
+
+  private void removeRoot(String href, String rootKey) {
+    rootsByHref.computeIfPresent(href, (key, roots) -> {
+      if (roots instanceof String) {
+        return roots.equals(rootKey) ? null : roots;
+      }
+      if (roots instanceof String[]) {
+        String[] array = (String[])roots;
+        int index = Arrays.asList(array).indexOf(rootKey);
+        if (index < 0) {
+          return array;
+        }
+        if (array.length == 2) {
+          return array[1 - index];
+        }
+        String[] updated = new String[array.length - 1];
+        System.arraycopy(array, 0, updated, 0, index);
+        System.arraycopy(array, index + 1, updated, index, updated.length - index);
+        return updated;
+      }
+      Set<String> set = asSet(roots);
+      set.remove(rootKey);
+      // a set that has become small again is kept (rather than converted back to an array) unless it's empty
+      return set.isEmpty() ? null : set;
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Set<String> asSet(Object roots) {
+    // only sets of root keys are stored in the reverse index
+    return (Set<String>)roots;
+  }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+/**
+ * Reduces the size of serialized HAL resources by writing all absolute hrefs that share a common base URI relative to
+ * that base (which is added as a link with relation {@value #LINK_RELATION_BASE} to the root resource). Resources
+ * serialized this way can be turned back into resources with absolute hrefs using {@link #resolve(HalResource)}.
+ */
+@ProviderType
+public final class HalHrefCompaction {
+
+  /**
+   * Relation of the link that contains the base URI against which the relative hrefs need to be resolved.
+   */
+  public static final String LINK_RELATION_BASE = "base";
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  /**
+   * Matches the scheme and authority of an absolute URI (or URI template)
+   */
+  private static final Pattern ORIGIN_PATTERN = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*://[^/?#{]+/");
+
+  /**
+   * Matches the scheme of an absolute URI
+   */
+  private static final Pattern SCHEME_PATTERN = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*:");
+
+  private HalHrefCompaction() {
+    // static methods only
+  }
+
+  /**
+   * Finds the longest path prefix that is shared by the absolute hrefs with the most common scheme and authority in the
+   * given resource (and its embedded resources). Template expressions are never included in the base.
+   * @param hal HAL resource
+   * @return the base URI (always ending with a slash), or null if there are less than two absolute hrefs with the same
+   *         scheme and authority
+   */
+  public static String findCommonBase(HalResource hal) {
+
+    Map<String, String> prefixByOrigin = new HashMap<>();
+    Map<String, Integer> countByOrigin = new HashMap<>();
+
+    LinkModels.forEach(hal.getModel(), link -> {
+      String href = link.path("href").asText(null);
+      if (href == null) {
+        return;
+      }
+      Matcher matcher = ORIGIN_PATTERN.matcher(href);
+      if (!matcher.find()) {
+        return;
+      }
+      String origin = matcher.group();
+      String literal = StringUtils.substringBefore(StringUtils.substringBefore(StringUtils.substringBefore(href, "{"), "?"), "#");
+      literal = literal.substring(0, literal.lastIndexOf('/') + 1);
+
+      prefixByOrigin.merge(origin, literal, StringUtils::getCommonPrefix);
+      countByOrigin.merge(origin, 1, Integer::sum);
+    });
+
+    return countByOrigin.entrySet().stream()
+        .filter(entry -> entry.getValue() > 1)
+        .max(Map.Entry.comparingByValue())
+        .map(entry -> prefixByOrigin.get(entry.getKey()))
+        .map(prefix -> prefix.substring(0, prefix.lastIndexOf('/') + 1))
+        .orElse(null);
+  }
+
+  /**
+   * Writes the JSON representation of the given resource where all hrefs starting with the common base URI (as
+   * determined by {@link #findCommonBase(HalResource)}) are written relative to that base. The resource itself is not
+   * modified. If no common base was found (or the resource already has a {@value #LINK_RELATION_BASE} link), the
+   * resource is written unchanged.
+   * @param hal HAL resource
+   * @param generator to write the compacted JSON to
+   * @throws IOException if writing to the generator fails
+   */
+  public static void writeCompacted(HalResource hal, JsonGenerator generator) throws IOException {
+
+    String base = findCommonBase(hal);
+    if (base == null || hal.hasLink(LINK_RELATION_BASE)) {
+      OBJECT_MAPPER.writeTree(generator, hal.getModel());
+      return;
+    }
+
+    // create a shallow copy of the root model (and its links) that contains the additional base link
+    ObjectNode links = hal.getModel().objectNode();
+    links.set(LINK_RELATION_BASE, new Link(base).getModel());
+    JsonNode originalLinks = hal.getModel().path("_links");
+    if (originalLinks.isObject()) {
+      links.setAll((ObjectNode)originalLinks);
+    }
+    ObjectNode root = hal.getModel().objectNode();
+    root.setAll(hal.getModel());
+    root.set("_links", links);
+
+    OBJECT_MAPPER.writeTree(new HrefRewritingJsonGenerator(generator,
+        (relation, href) -> LINK_RELATION_BASE.equals(relation) && base.equals(href) ? href : relativize(base, href)), root);
+  }
+
+  /**
+   * @param hal HAL resource
+   * @return the compacted JSON representation as written by {@link #writeCompacted(HalResource, JsonGenerator)}
+   */
+  public static String toCompactedJson(HalResource hal) {
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(writer)) {
+      writeCompacted(hal, generator);
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Failed to write compacted JSON", ex);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * @param base the base URI (ending with a slash)
+   * @param href an absolute href or URI template
+   * @return an href relative to the given base, or the original href if it doesn't start with the base
+   */
+  public static String relativize(String base, String href) {
+    if (href == null || !href.startsWith(base)) {
+      return href;
+    }
+    String relative = href.substring(base.length());
+
+    // make sure that the first path segment of the relative href isn't mistaken for a scheme
+    String firstSegment = StringUtils.substringBefore(relative, "/");
+    if (relative.isEmpty() || relative.startsWith("/") || StringUtils.contains(StringUtils.substringBefore(firstSegment, "{"), ':')) {
+      return "./" + relative;
+    }
+    return relative;
+  }
+
+  /**
+   * Resolves all relative hrefs in a resource that was compacted with {@link #writeCompacted(HalResource, JsonGenerator)}
+   * against the base URI, and removes the base link. Resources without a {@value #LINK_RELATION_BASE} link are not
+   * modified.
+   * @param hal a HAL resource parsed from compacted JSON
+   * @return the same resource, now containing only absolute hrefs
+   */
+  public static HalResource resolve(HalResource hal) {
+    Link baseLink = hal.getLink(LINK_RELATION_BASE);
+    if (baseLink == null || baseLink.getHref() == null) {
+      return hal;
+    }
+    String base = baseLink.getHref();
+    hal.removeLinks(LINK_RELATION_BASE);
+
+    LinkModels.forEach(hal.getModel(), link -> {
+      JsonNode href = link.get("href");
+      if (href != null && href.isTextual()) {
+        link.put("href", resolveHref(base, href.asText()));
+      }
+    });
+    return hal;
+  }
+
+  /**
+   * Resolves a (possibly templated) relative href against a base URI, according to RFC 3986. Template expressions in
+   * the href are kept as they are.
+   * @param base an absolute base URI
+   * @param href a relative or absolute href or URI template
+   * @return the absolute href or URI template
+   */
+  public static String resolveHref(String base, String href) {
+    if (href == null || base == null || SCHEME_PATTERN.matcher(href).find()) {
+      return href;
+    }
+
+    // only the literal part before the first template expression can be resolved with java.net.URI
+    int expressionIndex = href.indexOf('{');
+    String literal = expressionIndex < 0 ? href : href.substring(0, expressionIndex);
+    String expressions = expressionIndex < 0 ? "" : href.substring(expressionIndex);
+
+    if (literal.isEmpty()) {
+      return base + expressions;
+    }
+    try {
+      return new URI(base).resolve(new URI(literal)).toString() + expressions;
+    }
+    catch (URISyntaxException ex) {
+      return base + StringUtils.removeStart(literal, "./") + expressions;
+    }
+  }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+/**
+ * Rewrites the hrefs of all links in a HAL resource and its embedded resources according to a list of prefix and
+ * regular expression rules (e.g. to replace backend host names with public URLs in a proxy). For each href, only the
+ * first matching rule (in the order in which they were added) is applied. Rules are only applied to the literal part of
+ * a URI template before its first expression, so the template expressions are always kept intact.
+ * Rules should be added before the instance is shared, but rewriting is thread-safe.
+ */
+@ProviderType
+public final class HalHrefRewriter {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private volatile Rule[] rules = new Rule[0];
+
+  /**
+   * Adds a rule that replaces the given prefix of an href.
+   * @param prefix the prefix to replace
+   * @param replacement the new prefix
+   * @return This rewriter
+   */
+  public HalHrefRewriter addPrefixRule(String prefix, String replacement) {
+    return addRule(new PrefixRule(prefix, replacement));
+  }
+
+  /**
+   * Adds a rule that replaces all matches of a regular expression in an href.
+   * @param regex the regular expression to find
+   * @param replacement the replacement (which can refer to groups with $1 etc, see
+   *          {@link Matcher#replaceAll(String)})
+   * @return This rewriter
+   */
+  public HalHrefRewriter addPatternRule(String regex, String replacement) {
+    return addRule(new PatternRule(Pattern.compile(regex), replacement));
+  }
+
+  private synchronized HalHrefRewriter addRule(Rule rule) {
+    Rule[] newRules = Arrays.copyOf(rules, rules.length + 1);
+    newRules[rules.length] = rule;
+    rules = newRules;
+    return this;
+  }
+
+  /**
+   * @param href an href or URI template
+   * @return the href rewritten by the first matching rule, or the original href if no rule matched
+   */
+  public String rewrite(String href) {
+    if (href == null) {
+      return null;
+    }
+
+    // rules must only be applied to the literal part of a URI template
+    int expressionIndex = href.indexOf('{');
+    String literal = expressionIndex < 0 ? href : href.substring(0, expressionIndex);
+
+    for (Rule rule : rules) {
+      String rewritten = rule.apply(literal);
+      if (rewritten != null) {
+        return expressionIndex < 0 ? rewritten : rewritten + href.substring(expressionIndex);
+      }
+    }
+    return href;
+  }
+
+  /**
+   * Rewrites the hrefs of all links in the given resource and its embedded resources in a single pass. If change
+   * tracking is enabled, the hrefs are changed with {@link Link#setHref(String)}, so that the changes are recorded.
+   * Links and embedded resources that were added lazily are not rewritten (use
+   * {@link #write(HalResource, JsonGenerator)} instead).
+   * @param hal HAL resource to modify
+   * @return the number of hrefs that were changed
+   */
+  public int rewriteAll(HalResource hal) {
+    if (hal.isChangeTrackingEnabled()) {
+      return rewriteTracked(hal);
+    }
+
+    // without change tracking, the JSON models are modified directly, without creating any wrapper objects
+    AtomicInteger count = new AtomicInteger();
+    LinkModels.forEach(hal.getModel(), link -> {
+      String rewritten = rewriteHref(link);
+      if (rewritten != null) {
+        link.put("href", rewritten);
+        count.incrementAndGet();
+      }
+    });
+    return count.get();
+  }
+
+  private int rewriteTracked(HalResource hal) {
+    int count = 0;
+    for (String relation : getMaterializedRelations(hal.getModel().path("_links"))) {
+      for (Link link : hal.getLinks(relation)) {
+        String rewritten = rewriteHref(link.getModel());
+        if (rewritten != null) {
+          link.setHref(rewritten);
+          count++;
+        }
+      }
+    }
+    for (String relation : getMaterializedRelations(hal.getModel().path("_embedded"))) {
+      for (HalResource embedded : hal.getEmbedded(relation)) {
+        count += rewriteTracked(embedded);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @param link JSON model of a link
+   * @return the rewritten href, or null if the href doesn't change
+   */
+  private String rewriteHref(ObjectNode link) {
+    JsonNode href = link.get("href");
+    if (href == null || !href.isTextual()) {
+      return null;
+    }
+    String original = href.textValue();
+    String rewritten = rewrite(original);
+    return original.equals(rewritten) ? null : rewritten;
+  }
+
+  private static List<String> getMaterializedRelations(JsonNode container) {
+    // the content that was added lazily is not stored as an object or array
+    List<String> relations = new ArrayList<>();
+    Iterator<Map.Entry<String, JsonNode>> fields = container.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      if (field.getValue().isContainerNode()) {
+        relations.add(field.getKey());
+      }
+    }
+    return relations;
+  }
+
+  /**
+   * Writes the JSON representation of the given resource while rewriting all hrefs, without modifying the resource.
+   * @param hal HAL resource
+   * @param generator to write the JSON to
+   * @throws IOException if writing to the generator fails
+   */
+  public void write(HalResource hal, JsonGenerator generator) throws IOException {
+    OBJECT_MAPPER.writeTree(wrap(generator), hal.getModel());
+  }
+
+  /**
+   * @param generator the generator to write to
+   * @return a generator that rewrites the "href" property of every link in the HAL resources written with it
+   */
+  public JsonGenerator wrap(JsonGenerator generator) {
+    return new HrefRewritingJsonGenerator(generator, (relation, href) -> rewrite(href));
+  }
+
+  private interface Rule {
+
+    /**
+     * @param href the literal part of an href
+     * @return the rewritten href, or null if the rule doesn't match
+     */
+    String apply(String href);
+  }
+
+  private static final class PrefixRule implements Rule {
+
+    private final String prefix;
+    private final String replacement;
+
+    PrefixRule(String prefix, String replacement) {
+      this.prefix = prefix;
+      this.replacement = replacement;
+    }
+
+    @Override
+    public String apply(String href) {
+      if (!href.startsWith(prefix)) {
+        return null;
+      }
+      return replacement + href.substring(prefix.length());
+    }
+  }
+
+  private static final class PatternRule implements Rule {
+
+    private final Pattern pattern;
+    private final String replacement;
+
+    PatternRule(Pattern pattern, String replacement) {
+      this.pattern = pattern;
+      this.replacement = replacement;
+    }
+
+    @Override
+    public String apply(String href) {
+      Matcher matcher = pattern.matcher(href);
+      if (!matcher.find()) {
+        return null;
+      }
+      return matcher.replaceAll(replacement);
+    }
+  }
+
+}
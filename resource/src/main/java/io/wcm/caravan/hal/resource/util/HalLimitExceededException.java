@@ -0,0 +1,41 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.io.IOException;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Thrown by {@link HalResourceParser} as soon as a HAL document exceeds one of the configured limits.
+ */
+@ProviderType
+public final class HalLimitExceededException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * @param message describes the limit that was exceeded
+   */
+  public HalLimitExceededException(String message) {
+    super(message);
+  }
+
+}
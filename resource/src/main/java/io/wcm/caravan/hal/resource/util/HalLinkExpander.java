@@ -0,0 +1,259 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+/**
+ * Expands links of a HAL resource on the server side (e.g. for an <code>?embed=item.variant</code> query parameter) by
+ * resolving the linked resources and embedding them with the same relation, so clients don't have to follow each link
+ * themselves.
+ * <ul>
+ * <li>Relation paths are separated by dots: <code>item.variant</code> embeds all resources linked as "item", and then
+ * embeds all resources linked as "variant" from each of those resources.</li>
+ * <li>If resources are already embedded with a relation, they are not resolved again, but nested relation paths are
+ * still expanded on the existing embedded resources.</li>
+ * <li>Templated links are not expanded.</li>
+ * <li>Links are resolved concurrently, but never more than the given number at the same time.</li>
+ * <li>Each href is only resolved once per call to {@link #expand(HalResource, Collection)}, even if it is linked from
+ * multiple resources.</li>
+ * </ul>
+ * An expander can be shared between threads and requests.
+ */
+@ProviderType
+public final class HalLinkExpander {
+
+  private final Function<Link, CompletionStage<HalResource>> resolver;
+  private final int maxConcurrency;
+
+  /**
+   * @param resolver asynchronously loads the resource that a link points to
+   * @param maxConcurrency the maximum number of links that are resolved at the same time for one expansion
+   */
+  public HalLinkExpander(Function<Link, CompletionStage<HalResource>> resolver, int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be at least 1, but was " + maxConcurrency);
+    }
+    this.resolver = resolver;
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * @param embedParameter a comma-separated list of relation paths (e.g. "item.variant,author")
+   * @return the distinct relation paths, in the given order
+   */
+  public static Set<String> parseRelationPaths(String embedParameter) {
+    Set<String> paths = new LinkedHashSet<>();
+    for (String path : StringUtils.split(StringUtils.defaultString(embedParameter), ',')) {
+      if (StringUtils.isNotBlank(path)) {
+        paths.add(path.trim());
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Resolves the links for the given relation paths and embeds the resources into the given resource.
+   * @param hal HAL resource to modify
+   * @param relationPaths dot-separated relation paths to expand
+   * @return a stage that completes with the given (modified) resource when all links were resolved and embedded. If
+   *         any link can't be resolved, the stage still waits for all other links to be resolved, and then fails with
+   *         one of the resolution failures
+   */
+  public CompletionStage<HalResource> expand(HalResource hal, Collection<String> relationPaths) {
+    RelationTree tree = RelationTree.parse(relationPaths);
+    return new Expansion().expand(hal, tree).thenApply(ignore -> hal);
+  }
+
+  /**
+   * A tree of nested relations to expand, parsed from the dot-separated paths
+   */
+  private static final class RelationTree {
+
+    private final Map<String, RelationTree> children = new LinkedHashMap<>();
+
+    static RelationTree parse(Collection<String> relationPaths) {
+      RelationTree root = new RelationTree();
+      for (String path : relationPaths) {
+        RelationTree node = root;
+        for (String relation : StringUtils.split(path, '.')) {
+          node = node.children.computeIfAbsent(relation.trim(), key -> new RelationTree());
+        }
+      }
+      return root;
+    }
+  }
+
+  /**
+   * The state of a single call to {@link HalLinkExpander#expand(HalResource, Collection)}
+   */
+  private final class Expansion {
+
+    private final Map<String, CompletableFuture<HalResource>> resolvedByHref = new HashMap<>();
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+    private int active;
+
+    CompletableFuture<Void> expand(HalResource hal, RelationTree tree) {
+      // all relations are read before any link is resolved, and the resolved resources are only embedded in the final
+      // stage, so the given resource is never accessed by multiple threads at the same time
+      Map<String, List<HalResource>> embeddedByRelation = new LinkedHashMap<>();
+      Map<String, List<Link>> linksByRelation = new LinkedHashMap<>();
+      for (String relation : tree.children.keySet()) {
+        if (hal.hasEmbedded(relation)) {
+          embeddedByRelation.put(relation, hal.getEmbedded(relation));
+        }
+        else {
+          linksByRelation.put(relation, getLinksToResolve(hal, relation));
+        }
+      }
+
+      List<CompletableFuture<?>> futures = new ArrayList<>();
+      for (Map.Entry<String, List<HalResource>> entry : embeddedByRelation.entrySet()) {
+        RelationTree subTree = tree.children.get(entry.getKey());
+        for (HalResource embedded : entry.getValue()) {
+          futures.add(expand(embedded, subTree));
+        }
+      }
+
+      Map<String, List<CompletableFuture<HalResource>>> resolvedByRelation = new LinkedHashMap<>();
+      for (Map.Entry<String, List<Link>> entry : linksByRelation.entrySet()) {
+        RelationTree subTree = tree.children.get(entry.getKey());
+        List<CompletableFuture<HalResource>> resources = new ArrayList<>();
+        for (Link link : entry.getValue()) {
+          resources.add(resolve(link).thenCompose(resolved -> {
+            // the same resolved resource can be embedded in multiple places, so each one needs its own copy
+            HalResource copy = new HalResource((ObjectNode)resolved.getModel().deepCopy());
+            return expand(copy, subTree).thenApply(ignore -> copy);
+          }));
+        }
+        resolvedByRelation.put(entry.getKey(), resources);
+        futures.addAll(resources);
+      }
+
+      return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+          .thenRun(() -> {
+            for (Map.Entry<String, List<CompletableFuture<HalResource>>> entry : resolvedByRelation.entrySet()) {
+              embedResolved(hal, entry.getKey(), entry.getValue());
+            }
+          });
+    }
+
+    private List<Link> getLinksToResolve(HalResource hal, String relation) {
+      List<Link> links = new ArrayList<>();
+      for (Link link : hal.getLinks(relation)) {
+        if (!link.isTemplated() && link.getHref() != null) {
+          links.add(link);
+        }
+      }
+      return links;
+    }
+
+    private void embedResolved(HalResource hal, String relation, List<CompletableFuture<HalResource>> resources) {
+      if (resources.isEmpty()) {
+        return;
+      }
+      // resources are embedded in the order of the links, regardless of the order in which they were resolved
+      List<HalResource> embedded = new ArrayList<>(resources.size());
+      for (CompletableFuture<HalResource> resource : resources) {
+        embedded.add(resource.join());
+      }
+      hal.addEmbedded(relation, embedded);
+    }
+
+    private CompletableFuture<HalResource> resolve(Link link) {
+      CompletableFuture<HalResource> future;
+      synchronized (this) {
+        future = resolvedByHref.get(link.getHref());
+        if (future == null) {
+          CompletableFuture<HalResource> newFuture = new CompletableFuture<>();
+          resolvedByHref.put(link.getHref(), newFuture);
+          pending.add(() -> start(link, newFuture));
+          future = newFuture;
+        }
+      }
+      // the resolver is never called while holding the lock
+      drain();
+      return future;
+    }
+
+    private void start(Link link, CompletableFuture<HalResource> future) {
+      CompletionStage<HalResource> stage;
+      try {
+        stage = resolver.apply(link);
+      }
+      catch (RuntimeException ex) {
+        finish(future, null, ex);
+        return;
+      }
+      stage.whenComplete((resource, ex) -> finish(future, resource, ex));
+    }
+
+    private void finish(CompletableFuture<HalResource> future, HalResource resource, Throwable ex) {
+      synchronized (this) {
+        active--;
+      }
+      if (ex != null) {
+        future.completeExceptionally(ex);
+      }
+      else if (resource == null) {
+        future.completeExceptionally(new IllegalStateException("Link resolver returned null"));
+      }
+      else {
+        future.complete(resource);
+      }
+      drain();
+    }
+
+    private void drain() {
+      while (true) {
+        Runnable next;
+        synchronized (this) {
+          if (active >= maxConcurrency || pending.isEmpty()) {
+            return;
+          }
+          active++;
+          next = pending.poll();
+        }
+        next.run();
+      }
+    }
+  }
+
+}
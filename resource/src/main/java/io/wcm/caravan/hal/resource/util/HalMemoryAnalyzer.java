@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.util.HalMemoryReport.Usage;
+
+/**
+ * Estimates the memory retained by the JSON model of a HAL resource, and reports it by link relation, embedded relation
+ * and state field. The size of each node is estimated by a {@link NodeSizeModel}. An object or array that is referenced
+ * more than once in the tree is only counted for its first occurrence, and so is each field name instance (because most
+ * field names are interned). Content that was added lazily is not included.
+ * <p>
+ * Example for a memory budget in a unit test:
+ * </p>
+ *
+ * <pre>
+ * HalMemoryReport report = new HalMemoryAnalyzer().analyze(hal);
+ * assertTrue(report.toString(), report.getEmbeddedRelation("item").getBytes() &lt; 64 * 1024);
+ * </pre>
+ */
+@ProviderType
+public final class HalMemoryAnalyzer {
+
+  private final NodeSizeModel sizeModel;
+
+  /**
+   * Creates an analyzer with the {@link NodeSizeModel#DEFAULT} size model
+   */
+  public HalMemoryAnalyzer() {
+    this(NodeSizeModel.DEFAULT);
+  }
+
+  /**
+   * @param sizeModel estimates the size of each node
+   */
+  public HalMemoryAnalyzer(NodeSizeModel sizeModel) {
+    this.sizeModel = sizeModel;
+  }
+
+  /**
+   * @param hal the resource to analyze
+   * @return the memory usage of the resource
+   */
+  public HalMemoryReport analyze(HalResource hal) {
+    Measurement measurement = new Measurement();
+    JsonNode model = hal.getModel();
+
+    Map<String, Usage> links = new LinkedHashMap<>();
+    Map<String, Usage> embedded = new LinkedHashMap<>();
+    Map<String, Usage> state = new LinkedHashMap<>();
+
+    Counter total = new Counter();
+    measurement.measureShallow(model, 0, total);
+
+    Iterator<Entry<String, JsonNode>> fields = model.fields();
+    while (fields.hasNext()) {
+      Entry<String, JsonNode> field = fields.next();
+      if ("_links".equals(field.getKey()) && field.getValue().isObject()) {
+        measurement.measureShallow(field.getValue(), 1, total);
+        measureChildren(measurement, field.getValue(), links, total, 2);
+      }
+      else if ("_embedded".equals(field.getKey()) && field.getValue().isObject()) {
+        measurement.measureShallow(field.getValue(), 1, total);
+        measureChildren(measurement, field.getValue(), embedded, total, 2);
+      }
+      else {
+        Usage usage = measurement.measure(field.getValue());
+        state.put(field.getKey(), usage);
+        total.add(usage, 1);
+      }
+    }
+
+    return new HalMemoryReport(total.toUsage(), links, embedded, state);
+  }
+
+  private static void measureChildren(Measurement measurement, JsonNode container, Map<String, Usage> usages, Counter total, int depth) {
+    Iterator<Entry<String, JsonNode>> relations = container.fields();
+    while (relations.hasNext()) {
+      Entry<String, JsonNode> relation = relations.next();
+      Usage usage = measurement.measure(relation.getValue());
+      usages.put(relation.getKey(), usage);
+      total.add(usage, depth);
+    }
+  }
+
+  /**
+   * Accumulates bytes, node counts and depth
+   */
+  private static final class Counter {
+
+    private long bytes;
+    private int nodeCount;
+    private int maxDepth;
+
+    void add(long nodeBytes, int nodes, int depth) {
+      bytes += nodeBytes;
+      nodeCount += nodes;
+      maxDepth = Math.max(maxDepth, depth + 1);
+    }
+
+    void add(Usage usage, int depth) {
+      bytes += usage.getBytes();
+      nodeCount += usage.getNodeCount();
+      maxDepth = Math.max(maxDepth, depth + usage.getMaxDepth());
+    }
+
+    Usage toUsage() {
+      return new Usage(bytes, nodeCount, maxDepth);
+    }
+  }
+
+  /**
+   * Keeps track of the nodes that were already measured during a single analysis
+   */
+  private final class Measurement {
+
+    private final Set<JsonNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<String> countedNames = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    Usage measure(JsonNode node) {
+      Counter counter = new Counter();
+      measure(node, 0, counter);
+      return counter.toUsage();
+    }
+
+    private void measure(JsonNode node, int depth, Counter counter) {
+      if (measureShallow(node, depth, counter) && node.isContainerNode()) {
+        for (JsonNode child : node) {
+          measure(child, depth + 1, counter);
+        }
+      }
+    }
+
+    /**
+     * @return false if the given node is a container that was already measured
+     */
+    boolean measureShallow(JsonNode node, int depth, Counter counter) {
+      // value nodes are not tracked, because Jackson shares instances for some common values
+      if (node.isContainerNode() && !visited.add(node)) {
+        return false;
+      }
+      long bytes = sizeModel.getShallowSize(node);
+      if (node.isObject()) {
+        // equal field names that are different instances (i.e. not interned) use memory for each instance
+        Iterator<String> names = node.fieldNames();
+        while (names.hasNext()) {
+          String name = names.next();
+          if (countedNames.add(name)) {
+            bytes += sizeModel.getFieldNameSize(name);
+          }
+        }
+      }
+      counter.add(bytes, 1, depth);
+      return true;
+    }
+  }
+
+}
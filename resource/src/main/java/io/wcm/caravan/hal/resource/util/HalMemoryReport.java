@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * The estimated memory usage of a HAL resource, broken down by the link relations, embedded relations and state fields
+ * of the resource. Created by {@link HalMemoryAnalyzer}.
+ */
+@ProviderType
+public final class HalMemoryReport {
+
+  private final Usage total;
+  private final Map<String, Usage> linkRelations;
+  private final Map<String, Usage> embeddedRelations;
+  private final Map<String, Usage> stateFields;
+
+  HalMemoryReport(Usage total, Map<String, Usage> linkRelations, Map<String, Usage> embeddedRelations, Map<String, Usage> stateFields) {
+    this.total = total;
+    this.linkRelations = Collections.unmodifiableMap(linkRelations);
+    this.embeddedRelations = Collections.unmodifiableMap(embeddedRelations);
+    this.stateFields = Collections.unmodifiableMap(stateFields);
+  }
+
+  /**
+   * @return the memory usage of the whole resource tree
+   */
+  public Usage getTotal() {
+    return total;
+  }
+
+  /**
+   * @return the memory usage of the links of the resource, by relation (in the order of the JSON model)
+   */
+  public Map<String, Usage> getLinkRelations() {
+    return linkRelations;
+  }
+
+  /**
+   * @return the memory usage of the embedded resources (including all their content), by relation
+   */
+  public Map<String, Usage> getEmbeddedRelations() {
+    return embeddedRelations;
+  }
+
+  /**
+   * @return the memory usage of the resource's state, by field name
+   */
+  public Map<String, Usage> getStateFields() {
+    return stateFields;
+  }
+
+  /**
+   * @param relation link relation
+   * @return the memory usage of the links with the given relation (which is empty if there are no such links)
+   */
+  public Usage getLinkRelation(String relation) {
+    return linkRelations.getOrDefault(relation, Usage.EMPTY);
+  }
+
+  /**
+   * @param relation embedded relation
+   * @return the memory usage of the embedded resources with the given relation (which is empty if there are none)
+   */
+  public Usage getEmbeddedRelation(String relation) {
+    return embeddedRelations.getOrDefault(relation, Usage.EMPTY);
+  }
+
+  /**
+   * @param fieldName name of a state field
+   * @return the memory usage of the given field (which is empty if there is no such field)
+   */
+  public Usage getStateField(String fieldName) {
+    return stateFields.getOrDefault(fieldName, Usage.EMPTY);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("total: ").append(total);
+    append(sb, "_links/", linkRelations);
+    append(sb, "_embedded/", embeddedRelations);
+    append(sb, "", stateFields);
+    return sb.toString();
+  }
+
+  private static void append(StringBuilder sb, String prefix, Map<String, Usage> usages) {
+    usages.forEach((name, usage) -> sb.append('\n').append(prefix).append(name).append(": ").append(usage));
+  }
+
+  /**
+   * The estimated memory usage of a part of the JSON model
+   */
+  @ProviderType
+  public static final class Usage {
+
+    static final Usage EMPTY = new Usage(0, 0, 0);
+
+    private final long bytes;
+    private final int nodeCount;
+    private final int maxDepth;
+
+    Usage(long bytes, int nodeCount, int maxDepth) {
+      this.bytes = bytes;
+      this.nodeCount = nodeCount;
+      this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @return the estimated number of retained bytes
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * @return the number of JSON nodes
+     */
+    public int getNodeCount() {
+      return nodeCount;
+    }
+
+    /**
+     * @return the maximum nesting depth of the JSON nodes (where a single value has depth 1)
+     */
+    public int getMaxDepth() {
+      return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+      return bytes + " bytes, " + nodeCount + " nodes, depth " + maxDepth;
+    }
+  }
+
+}
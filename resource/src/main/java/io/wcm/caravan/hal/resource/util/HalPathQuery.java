@@ -0,0 +1,337 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.wcm.caravan.hal.resource.HalResource;
+
+/**
+ * A compiled query that selects values from a tree of embedded resources and links, without creating any
+ * {@link HalResource} or {@link io.wcm.caravan.hal.resource.Link} instances. A query consists of relation steps separated by
+ * slashes, optionally followed by a property path:
+ * <ul>
+ * <li><code>item/variant.sku</code> selects the "sku" property of all resources embedded with relation "variant" in all
+ * resources embedded with relation "item"</li>
+ * <li><code>item[*]</code> is the same as <code>item</code>, <code>item[0]</code> selects only the first resource of
+ * each parent</li>
+ * <li><code>item[id='123']/variant[available=true]</code> selects only resources where the given property has the given
+ * value (<code>!=</code> is supported as well)</li>
+ * <li><code>section/self.href</code> selects the href of the self links of all embedded sections. A relation is looked
+ * up in "_links" if there are no embedded resources with that relation. Links can't be followed any further.</li>
+ * <li><code>.title</code> selects a property of the root resource</li>
+ * </ul>
+ * Lazily added embedded resources and links are not included in the results. Compiled queries are immutable and can
+ * be shared between threads.
+ */
+@ProviderType
+public final class HalPathQuery {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final String query;
+  private final RelationStep[] relationSteps;
+  private final String[] propertyPath;
+
+  private HalPathQuery(String query, RelationStep[] relationSteps, String[] propertyPath) {
+    this.query = query;
+    this.relationSteps = relationSteps;
+    this.propertyPath = propertyPath;
+  }
+
+  /**
+   * @param query the query to parse
+   * @return a compiled query that can be executed repeatedly
+   * @throws IllegalArgumentException if the query is not valid
+   */
+  public static HalPathQuery compile(String query) {
+    return new Parser(query).parse();
+  }
+
+  /**
+   * @param hal the resource to start the query from
+   * @return the selected JSON nodes (embedded resources, links or property values) in document order
+   */
+  public List<JsonNode> select(HalResource hal) {
+    return select(hal.getModel());
+  }
+
+  /**
+   * @param model the JSON model of the resource to start the query from
+   * @return the selected JSON nodes (embedded resources, links or property values) in document order
+   */
+  public List<JsonNode> select(JsonNode model) {
+    List<JsonNode> current = new ArrayList<>();
+    current.add(model);
+
+    for (RelationStep step : relationSteps) {
+      List<JsonNode> next = new ArrayList<>();
+      for (JsonNode node : current) {
+        step.collect(node, next);
+      }
+      current = next;
+    }
+
+    if (propertyPath.length == 0) {
+      return current;
+    }
+
+    List<JsonNode> values = new ArrayList<>(current.size());
+    for (JsonNode node : current) {
+      JsonNode value = node;
+      for (String property : propertyPath) {
+        value = value.path(property);
+      }
+      if (!value.isMissingNode()) {
+        values.add(value);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @param hal the resource to start the query from
+   * @return the first selected JSON node, or null if nothing was selected
+   */
+  public JsonNode selectFirst(HalResource hal) {
+    List<JsonNode> result = select(hal);
+    return result.isEmpty() ? null : result.get(0);
+  }
+
+  /**
+   * @param hal the resource to start the query from
+   * @return the text values of all selected JSON nodes
+   */
+  public List<String> selectText(HalResource hal) {
+    return select(hal).stream()
+        .map(JsonNode::asText)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public String toString() {
+    return query;
+  }
+
+  private static final class RelationStep {
+
+    private final String relation;
+    private final int index;
+    private final String[] predicatePath;
+    private final JsonNode predicateValue;
+    private final boolean negated;
+
+    RelationStep(String relation, int index, String[] predicatePath, JsonNode predicateValue, boolean negated) {
+      this.relation = relation;
+      this.index = index;
+      this.predicatePath = predicatePath;
+      this.predicateValue = predicateValue;
+      this.negated = negated;
+    }
+
+    void collect(JsonNode resource, List<JsonNode> result) {
+      JsonNode container = resource.path("_embedded").path(relation);
+      if (container.isMissingNode()) {
+        container = resource.path("_links").path(relation);
+      }
+
+      if (container.isObject()) {
+        if ((index < 0 || index == 0) && matches(container)) {
+          result.add(container);
+        }
+      }
+      else if (container.isArray()) {
+        if (index >= 0) {
+          JsonNode item = container.path(index);
+          if (item.isObject() && matches(item)) {
+            result.add(item);
+          }
+          return;
+        }
+        for (JsonNode item : container) {
+          if (item.isObject() && matches(item)) {
+            result.add(item);
+          }
+        }
+      }
+    }
+
+    private boolean matches(JsonNode item) {
+      if (predicatePath == null) {
+        return true;
+      }
+      JsonNode value = item;
+      for (String property : predicatePath) {
+        value = value.path(property);
+      }
+      return valueEquals(predicateValue, value) != negated;
+    }
+
+    private static boolean valueEquals(JsonNode expected, JsonNode value) {
+      // a literal 5 is parsed as IntNode, but the same number could be stored as LongNode or DoubleNode
+      if (expected.isNumber() && value.isNumber()) {
+        return expected.decimalValue().compareTo(value.decimalValue()) == 0;
+      }
+      return expected.equals(value);
+    }
+  }
+
+  private static final class Parser {
+
+    private final String query;
+    private int pos;
+
+    Parser(String query) {
+      if (query == null) {
+        throw new IllegalArgumentException("query must not be null");
+      }
+      this.query = query.trim();
+    }
+
+    HalPathQuery parse() {
+      List<RelationStep> steps = new ArrayList<>();
+      List<String> properties = new ArrayList<>();
+
+      if (!query.startsWith(".")) {
+        do {
+          steps.add(parseRelationStep());
+        }
+        while (consume('/'));
+      }
+
+      while (consume('.')) {
+        properties.add(parseName("property"));
+      }
+
+      if (pos < query.length()) {
+        throw error("unexpected character '" + query.charAt(pos) + "'");
+      }
+      if (steps.isEmpty() && properties.isEmpty()) {
+        throw error("query is empty");
+      }
+
+      return new HalPathQuery(query, steps.toArray(new RelationStep[steps.size()]), properties.toArray(new String[properties.size()]));
+    }
+
+    private RelationStep parseRelationStep() {
+      String relation = parseName("relation");
+      if (!consume('[')) {
+        return new RelationStep(relation, -1, null, null, false);
+      }
+
+      RelationStep step;
+      if (consume('*')) {
+        step = new RelationStep(relation, -1, null, null, false);
+      }
+      else if (pos < query.length() && Character.isDigit(query.charAt(pos))) {
+        int start = pos;
+        while (pos < query.length() && Character.isDigit(query.charAt(pos))) {
+          pos++;
+        }
+        step = new RelationStep(relation, Integer.parseInt(query.substring(start, pos)), null, null, false);
+      }
+      else {
+        step = parsePredicate(relation);
+      }
+
+      if (!consume(']')) {
+        throw error("expected ']'");
+      }
+      return step;
+    }
+
+    private RelationStep parsePredicate(String relation) {
+      consume('@');
+      consume('.');
+      List<String> path = new ArrayList<>();
+      path.add(parseName("property"));
+      while (consume('.')) {
+        path.add(parseName("property"));
+      }
+
+      boolean negated = consume('!');
+      if (!consume('=')) {
+        throw error("expected '=' or '!='");
+      }
+      consume('=');
+
+      int start = pos;
+      JsonNode value;
+      if (consume('\'')) {
+        int end = query.indexOf('\'', pos);
+        if (end < 0) {
+          throw error("unterminated string literal");
+        }
+        value = OBJECT_MAPPER.getNodeFactory().textNode(query.substring(pos, end));
+        pos = end + 1;
+      }
+      else {
+        while (pos < query.length() && query.charAt(pos) != ']') {
+          pos++;
+        }
+        String literal = query.substring(start, pos).trim();
+        try {
+          value = OBJECT_MAPPER.readTree(literal);
+        }
+        catch (Exception ex) {
+          throw error("invalid literal '" + literal + "'");
+        }
+        if (value == null || value.isContainerNode()) {
+          throw error("invalid literal '" + literal + "'");
+        }
+      }
+
+      return new RelationStep(relation, -1, path.toArray(new String[path.size()]), value, negated);
+    }
+
+    private String parseName(String description) {
+      int start = pos;
+      while (pos < query.length() && StringUtils.indexOf("/.[]=!", query.charAt(pos)) < 0) {
+        pos++;
+      }
+      String name = query.substring(start, pos).trim();
+      if (name.isEmpty()) {
+        throw error("expected " + description + " name");
+      }
+      return name;
+    }
+
+    private boolean consume(char c) {
+      if (pos < query.length() && query.charAt(pos) == c) {
+        pos++;
+        return true;
+      }
+      return false;
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException("Invalid HAL path query '" + query + "' at position " + pos + ": " + message);
+    }
+  }
+
+}
@@ -0,0 +1,338 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.wcm.caravan.hal.resource.CompactJsonNodeFactory;
+import io.wcm.caravan.hal.resource.HalResource;
+
+/**
+ * Parses HAL resources from untrusted sources. The JSON tree is built while streaming through the input, and parsing
+ * fails with a {@link HalLimitExceededException} as soon as any of the following limits is exceeded:
+ * <ul>
+ * <li>the number of bytes read from the input</li>
+ * <li>the nesting depth of JSON objects and arrays</li>
+ * <li>the number of links for a single relation (in any resource of the tree)</li>
+ * <li>the total number of embedded resources in the tree</li>
+ * </ul>
+ * The parser is configured with fluent setters, and can be shared between threads once it is configured.
+ */
+@ProviderType
+public final class HalResourceParser {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final JsonNodeFactory NODE_FACTORY = CompactJsonNodeFactory.INSTANCE;
+
+  /**
+   * The highest value that is accepted by {@link #setMaxDepth(int)}. Each level of nesting is parsed recursively, and
+   * this keeps the recursion well within the default thread stack size.
+   */
+  public static final int MAX_DEPTH_LIMIT = 1000;
+
+  private long maxBytes = 16 * 1024 * 1024;
+  private int maxDepth = 100;
+  private int maxLinksPerRelation = 10000;
+  private int maxEmbeddedResources = 10000;
+
+  /**
+   * @param value the maximum number of bytes to read from the input (default is 16 MiB)
+   * @return this parser
+   */
+  public HalResourceParser setMaxBytes(long value) {
+    this.maxBytes = value;
+    return this;
+  }
+
+  /**
+   * @param value the maximum nesting depth of JSON objects and arrays, where the resource itself has depth 1 (default
+   *          is 100, must not be higher than {@value #MAX_DEPTH_LIMIT})
+   * @return this parser
+   * @throws IllegalArgumentException if the value is higher than {@link #MAX_DEPTH_LIMIT}
+   */
+  public HalResourceParser setMaxDepth(int value) {
+    if (value > MAX_DEPTH_LIMIT) {
+      throw new IllegalArgumentException("The maximum depth must not be higher than " + MAX_DEPTH_LIMIT + ", but was " + value);
+    }
+    this.maxDepth = value;
+    return this;
+  }
+
+  /**
+   * @param value the maximum number of links for any relation in any resource of the tree (default is 10000)
+   * @return this parser
+   */
+  public HalResourceParser setMaxLinksPerRelation(int value) {
+    this.maxLinksPerRelation = value;
+    return this;
+  }
+
+  /**
+   * @param value the maximum number of embedded resources in the whole tree (default is 10000)
+   * @return this parser
+   */
+  public HalResourceParser setMaxEmbeddedResources(int value) {
+    this.maxEmbeddedResources = value;
+    return this;
+  }
+
+  /**
+   * @param json the HAL document
+   * @return the parsed resource
+   * @throws HalLimitExceededException if any of the limits is exceeded
+   * @throws IOException if the input is not a valid JSON object
+   */
+  public HalResource parse(byte[] json) throws IOException {
+    if (json.length > maxBytes) {
+      throw new HalLimitExceededException("HAL document has " + json.length + " bytes, but the limit is " + maxBytes);
+    }
+    return parse(new ByteArrayInputStream(json));
+  }
+
+  /**
+   * @param input stream with the HAL document (which is not closed by this method)
+   * @return the parsed resource
+   * @throws HalLimitExceededException if any of the limits is exceeded
+   * @throws IOException if the input is not a valid JSON object or can't be read
+   */
+  public HalResource parse(InputStream input) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(new LimitedInputStream(input, maxBytes))) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException("A HAL resource must be a JSON object", parser.getCurrentLocation());
+      }
+      ObjectNode model = new TreeBuilder(parser).readObject(Kind.RESOURCE, 1);
+      if (parser.nextToken() != null) {
+        throw new JsonParseException("Unexpected content after the HAL resource", parser.getCurrentLocation());
+      }
+      return new HalResource(model);
+    }
+  }
+
+  /**
+   * The role of a JSON object or array within the HAL document
+   */
+  private enum Kind {
+    RESOURCE, LINKS, LINK_RELATION, EMBEDDED, EMBEDDED_RELATION, OTHER
+  }
+
+  /**
+   * Builds the tree for a single document
+   */
+  private final class TreeBuilder {
+
+    private final JsonParser parser;
+    private int embeddedResources;
+
+    TreeBuilder(JsonParser parser) {
+      this.parser = parser;
+    }
+
+    ObjectNode readObject(Kind kind, int depth) throws IOException {
+      checkDepth(depth);
+      ObjectNode node = NODE_FACTORY.objectNode();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        Kind childKind = getChildKind(kind, name);
+
+        if (childKind == Kind.LINK_RELATION && token == JsonToken.START_OBJECT) {
+          checkLinkCount(name, 1);
+        }
+        else if (childKind == Kind.EMBEDDED_RELATION && token == JsonToken.START_OBJECT) {
+          countEmbeddedResource();
+        }
+
+        node.set(name, readValue(token, childKind, name, depth));
+      }
+      return node;
+    }
+
+    private Kind getChildKind(Kind kind, String name) {
+      switch (kind) {
+        case RESOURCE:
+          if ("_links".equals(name)) {
+            return Kind.LINKS;
+          }
+          return "_embedded".equals(name) ? Kind.EMBEDDED : Kind.OTHER;
+        case LINKS:
+          return Kind.LINK_RELATION;
+        case EMBEDDED:
+          return Kind.EMBEDDED_RELATION;
+        default:
+          return Kind.OTHER;
+      }
+    }
+
+    private Kind getObjectKind(Kind kind) {
+      // a single embedded resource is a resource itself, a single link is just an object
+      switch (kind) {
+        case EMBEDDED_RELATION:
+          return Kind.RESOURCE;
+        case LINK_RELATION:
+          return Kind.OTHER;
+        default:
+          return kind;
+      }
+    }
+
+    private JsonNode readValue(JsonToken token, Kind kind, String relation, int depth) throws IOException {
+      switch (token) {
+        case START_OBJECT:
+          return readObject(getObjectKind(kind), depth + 1);
+        case START_ARRAY:
+          return readArray(kind, relation, depth + 1);
+        case VALUE_STRING:
+          return NODE_FACTORY.textNode(parser.getText());
+        case VALUE_NUMBER_INT:
+          switch (parser.getNumberType()) {
+            case INT:
+              return NODE_FACTORY.numberNode(parser.getIntValue());
+            case LONG:
+              return NODE_FACTORY.numberNode(parser.getLongValue());
+            default:
+              return NODE_FACTORY.numberNode(parser.getBigIntegerValue());
+          }
+        case VALUE_NUMBER_FLOAT:
+          return NODE_FACTORY.numberNode(parser.getDoubleValue());
+        case VALUE_TRUE:
+          return NODE_FACTORY.booleanNode(true);
+        case VALUE_FALSE:
+          return NODE_FACTORY.booleanNode(false);
+        case VALUE_NULL:
+          return NODE_FACTORY.nullNode();
+        default:
+          throw new JsonParseException("Unexpected token " + token, parser.getCurrentLocation());
+      }
+    }
+
+    private ArrayNode readArray(Kind kind, String relation, int depth) throws IOException {
+      checkDepth(depth);
+      ArrayNode array = NODE_FACTORY.arrayNode();
+      JsonToken token;
+      while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+        if (token == null) {
+          throw new JsonParseException("Unexpected end of input", parser.getCurrentLocation());
+        }
+        Kind itemKind = Kind.OTHER;
+        if (kind == Kind.LINK_RELATION) {
+          checkLinkCount(relation, array.size() + 1);
+        }
+        else if (kind == Kind.EMBEDDED_RELATION && token == JsonToken.START_OBJECT) {
+          countEmbeddedResource();
+          itemKind = Kind.RESOURCE;
+        }
+        array.add(token == JsonToken.START_OBJECT ? readObject(itemKind, depth + 1) : readValue(token, Kind.OTHER, null, depth));
+      }
+      return array;
+    }
+
+    private void checkDepth(int depth) throws HalLimitExceededException {
+      if (depth > maxDepth) {
+        throw new HalLimitExceededException("HAL document is nested deeper than " + maxDepth + " levels at " + location());
+      }
+    }
+
+    private void checkLinkCount(String relation, int count) throws HalLimitExceededException {
+      if (count > maxLinksPerRelation) {
+        throw new HalLimitExceededException("HAL document has more than " + maxLinksPerRelation + " links with relation '" + relation + "' at "
+            + location());
+      }
+    }
+
+    private void countEmbeddedResource() throws HalLimitExceededException {
+      if (++embeddedResources > maxEmbeddedResources) {
+        throw new HalLimitExceededException("HAL document has more than " + maxEmbeddedResources + " embedded resources at " + location());
+      }
+    }
+
+    private String location() {
+      return "byte " + parser.getCurrentLocation().getByteOffset();
+    }
+  }
+
+  /**
+   * Fails as soon as more than the given number of bytes are read from the underlying stream
+   */
+  private static final class LimitedInputStream extends FilterInputStream {
+
+    private final long maxBytes;
+    private long count;
+
+    LimitedInputStream(InputStream in, long maxBytes) {
+      super(in);
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int result = super.read();
+      if (result >= 0) {
+        count(1);
+      }
+      return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      // never read more than one byte beyond the limit (without overflowing if the limit is close to Long.MAX_VALUE)
+      long remaining = maxBytes - count;
+      int result = super.read(b, off, remaining >= len ? len : (int)(remaining + 1));
+      if (result > 0) {
+        count(result);
+      }
+      return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long result = super.skip(n);
+      count(result);
+      return result;
+    }
+
+    @Override
+    public void close() {
+      // the stream is owned by the caller
+    }
+
+    private void count(long bytes) throws HalLimitExceededException {
+      count += bytes;
+      if (count > maxBytes) {
+        throw new HalLimitExceededException("HAL document is larger than " + maxBytes + " bytes");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.io.IOException;
+import java.util.function.BiFunction;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+
+/**
+ * A {@link JsonGenerator} that replaces the "href" property of every link (in the "_links" object of any resource in
+ * the tree) while it is being written, so that href values can be changed without modifying (or copying) the model.
+ */
+class HrefRewritingJsonGenerator extends JsonGeneratorDelegate {
+
+  private static final String LINKS = "_links";
+  private static final String HREF = "href";
+
+  private final BiFunction<String, String, String> rewriter;
+
+  /**
+   * @param delegate the generator to write to
+   * @param rewriter a function that takes the link relation and original href, and returns the href to write
+   */
+  HrefRewritingJsonGenerator(JsonGenerator delegate, BiFunction<String, String, String> rewriter) {
+    super(delegate, false);
+    this.rewriter = rewriter;
+  }
+
+  @Override
+  public void writeString(String text) throws IOException {
+    String relation = getRelationIfWritingHref();
+    if (relation != null && text != null) {
+      super.writeString(rewriter.apply(relation, text));
+    }
+    else {
+      super.writeString(text);
+    }
+  }
+
+  private String getRelationIfWritingHref() {
+
+    // the context of the link object, with the name of the field being written
+    JsonStreamContext linkContext = getOutputContext();
+    if (!linkContext.inObject() || !HREF.equals(linkContext.getCurrentName())) {
+      return null;
+    }
+
+    // multiple links for the same relation are contained in an array
+    JsonStreamContext relationContext = linkContext.getParent();
+    if (relationContext != null && relationContext.inArray()) {
+      relationContext = relationContext.getParent();
+    }
+    if (relationContext == null || !relationContext.inObject()) {
+      return null;
+    }
+
+    // the "_links" object must have been written as a property of the resource
+    JsonStreamContext resourceContext = relationContext.getParent();
+    if (resourceContext == null || !resourceContext.inObject() || !LINKS.equals(resourceContext.getCurrentName())) {
+      return null;
+    }
+
+    return relationContext.getCurrentName();
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Traverses the JSON models of all links or embedded resources in a resource tree, without creating any wrapper
+ * objects.
+ */
+final class LinkModels {
+
+  private LinkModels() {
+    // static methods only
+  }
+
+  /**
+   * Calls the given consumer for the JSON model of every link in the given resource and all its embedded resources.
+   * Embedded resources and links that were added lazily are not visited.
+   * @param resource JSON model of a HAL resource
+   * @param consumer to call for each link
+   */
+  static void forEach(JsonNode resource, Consumer<ObjectNode> consumer) {
+    forEachChild(resource.path("_links"), consumer);
+    forEachChild(resource.path("_embedded"), embedded -> forEach(embedded, consumer));
+  }
+
+  /**
+   * Calls the given consumer for the JSON model of every embedded resource in the given resource, including the
+   * resources embedded within other embedded resources. Embedded resources that were added lazily are not visited.
+   * @param resource JSON model of a HAL resource
+   * @param consumer to call for each embedded resource
+   */
+  static void forEachEmbedded(JsonNode resource, Consumer<ObjectNode> consumer) {
+    forEachChild(resource.path("_embedded"), embedded -> {
+      consumer.accept(embedded);
+      forEachEmbedded(embedded, consumer);
+    });
+  }
+
+  private static void forEachChild(JsonNode container, Consumer<ObjectNode> consumer) {
+    for (JsonNode byRelation : container) {
+      if (byRelation.isObject()) {
+        consumer.accept((ObjectNode)byRelation);
+      }
+      else if (byRelation.isArray()) {
+        for (JsonNode item : byRelation) {
+          if (item.isObject()) {
+            consumer.accept((ObjectNode)item);
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Estimates the memory used by a single JSON node, for the {@link HalMemoryAnalyzer}.
+ */
+@ConsumerType
+public interface NodeSizeModel {
+
+  /**
+   * Estimates for a 64-bit JVM with compressed object pointers, Jackson's default node implementations (or the object
+   * nodes of {@link io.wcm.caravan.hal.resource.CompactJsonNodeFactory}) and compact strings
+   */
+  NodeSizeModel DEFAULT = new DefaultNodeSizeModel();
+
+  /**
+   * @param node a JSON node
+   * @return the estimated number of bytes used by the node itself and any internal data structures (e.g. the map of an
+   *         object node), but excluding the child nodes and the field names
+   */
+  long getShallowSize(JsonNode node);
+
+  /**
+   * Field names are usually interned by the parser and shared by many objects, so this is only called once per analysis
+   * for each distinct field name instance.
+   * @param name the name of a field
+   * @return the estimated number of bytes used by the string, or 0 if field names are already included in
+   *         {@link #getShallowSize(JsonNode)}
+   */
+  default long getFieldNameSize(String name) {
+    return 0;
+  }
+
+}
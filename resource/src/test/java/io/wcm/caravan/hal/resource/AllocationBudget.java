@@ -0,0 +1,219 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Asserts that an operation doesn't allocate more than a given number of bytes on the heap (on average), so that
+ * allocation regressions in hot code paths fail the unit tests. The allocated bytes are measured with
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} after the operation was warmed up (so that the
+ * JIT compiler had a chance to eliminate allocations), and the lowest average of several rounds is used to ignore
+ * one-off allocations.
+ * <p>
+ * Example:
+ * </p>
+ *
+ * <pre>
+ * AllocationBudget.of("HalResource#getLink", 64).check(() -&gt; hal.getLink());
+ * </pre>
+ * <p>
+ * All budgets can be scaled with the system property {@value #FACTOR_PROPERTY} (e.g. when running with a different JVM
+ * or an instrumenting agent), and the budget for a single operation can be replaced with the system property
+ * {@value #BUDGET_PROPERTY_PREFIX}&lt;name&gt;. If the JVM can't measure allocations, the test is skipped.
+ * </p>
+ * <p>
+ * The allocations depend on the JVM (e.g. on the object layout and the JIT compiler), so a budget that was determined
+ * with {@link #measuredOn(int)} is only checked on a HotSpot server VM of that Java version, unless one of the system
+ * properties is set.
+ * </p>
+ */
+final class AllocationBudget {
+
+  /**
+   * System property with a factor for all budgets
+   */
+  static final String FACTOR_PROPERTY = "allocation.budget.factor";
+
+  /**
+   * Prefix for system properties that override the budget of a single operation
+   */
+  static final String BUDGET_PROPERTY_PREFIX = "allocation.budget.";
+
+  // prevents the JIT compiler from eliminating operations whose result is not used
+  private static volatile Object sink;
+
+  private final String name;
+  private final long maxBytesPerOperation;
+  private int warmupIterations = 20000;
+  private int iterations = 1000;
+  private int rounds = 5;
+  private int baselineJavaVersion;
+
+  private AllocationBudget(String name, long maxBytesPerOperation) {
+    this.name = name;
+    this.maxBytesPerOperation = maxBytesPerOperation;
+  }
+
+  /**
+   * @param name of the operation (used in the failure message, and to override the budget with a system property)
+   * @param maxBytesPerOperation the number of bytes that may be allocated by each call of the operation
+   * @return a new budget
+   */
+  static AllocationBudget of(String name, long maxBytesPerOperation) {
+    return new AllocationBudget(name, maxBytesPerOperation);
+  }
+
+  /**
+   * @param value the number of calls before allocations are measured
+   * @return this budget
+   */
+  AllocationBudget warmupIterations(int value) {
+    this.warmupIterations = value;
+    return this;
+  }
+
+  /**
+   * @param value the number of calls in each measured round
+   * @return this budget
+   */
+  AllocationBudget iterations(int value) {
+    this.iterations = value;
+    return this;
+  }
+
+  /**
+   * @param value the number of measured rounds
+   * @return this budget
+   */
+  AllocationBudget rounds(int value) {
+    this.rounds = value;
+    return this;
+  }
+
+  /**
+   * @param javaVersion the Java feature version (e.g. 17) with which the budget was determined on a HotSpot server VM
+   * @return this budget
+   */
+  AllocationBudget measuredOn(int javaVersion) {
+    this.baselineJavaVersion = javaVersion;
+    return this;
+  }
+
+  /**
+   * @return the budget, after applying the system properties
+   */
+  long getMaxBytesPerOperation() {
+    long budget = Long.getLong(BUDGET_PROPERTY_PREFIX + name, maxBytesPerOperation);
+    String factor = System.getProperty(FACTOR_PROPERTY);
+    return factor == null ? budget : (long)(budget * Double.parseDouble(factor));
+  }
+
+  /**
+   * Measures the operation, and fails if it allocates more than the budget
+   * @param operation to measure
+   * @return the measured bytes per operation
+   * @throws AssertionError if the budget is exceeded
+   */
+  long check(Supplier<?> operation) {
+    assumeBaselineJvm();
+    long bytesPerOperation = measure(operation);
+    assertWithinBudget(bytesPerOperation);
+    return bytesPerOperation;
+  }
+
+  /**
+   * Measures an operation that modifies its input (and therefore needs a new input for each call), and fails if it
+   * allocates more than the budget. The allocations of the setup are measured separately, and are not included.
+   * @param setup creates the input for a single call of the operation
+   * @param operation to measure
+   * @param <T> input type
+   * @return the measured bytes per operation
+   * @throws AssertionError if the budget is exceeded
+   */
+  <T> long check(Supplier<T> setup, Function<T, ?> operation) {
+    assumeBaselineJvm();
+    long setupBytes = measure(setup);
+    long bytesPerOperation = Math.max(0, measure(() -> operation.apply(setup.get())) - setupBytes);
+    assertWithinBudget(bytesPerOperation);
+    return bytesPerOperation;
+  }
+
+  /**
+   * @param operation to measure
+   * @return the (lowest) average number of bytes allocated by each call of the operation
+   */
+  long measure(Supplier<?> operation) {
+    com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    for (int i = 0; i < warmupIterations; i++) {
+      sink = operation.get();
+    }
+
+    // the measurement itself may allocate a few bytes
+    long overhead = -threadMXBean.getThreadAllocatedBytes(threadId) + threadMXBean.getThreadAllocatedBytes(threadId);
+
+    long min = Long.MAX_VALUE;
+    for (int round = 0; round < rounds; round++) {
+      long start = threadMXBean.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < iterations; i++) {
+        sink = operation.get();
+      }
+      long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - start - overhead;
+      min = Math.min(min, Math.max(0, allocated) / iterations);
+    }
+    sink = null;
+    return min;
+  }
+
+  private void assumeBaselineJvm() {
+    if (baselineJavaVersion == 0 || System.getProperty(FACTOR_PROPERTY) != null
+        || System.getProperty(BUDGET_PROPERTY_PREFIX + name) != null) {
+      return;
+    }
+    String javaVersion = System.getProperty("java.specification.version");
+    String vmName = System.getProperty("java.vm.name", "");
+    assumeTrue("the budget for " + name + " was measured on Java " + baselineJavaVersion + ", not " + javaVersion + " (" + vmName + ")",
+        Integer.toString(baselineJavaVersion).equals(javaVersion) && vmName.contains("Server VM"));
+  }
+
+  private void assertWithinBudget(long bytesPerOperation) {
+    long budget = getMaxBytesPerOperation();
+    if (bytesPerOperation > budget) {
+      throw new AssertionError(name + " allocated " + bytesPerOperation + " bytes per operation, but the budget is " + budget + " bytes");
+    }
+  }
+
+  private static com.sun.management.ThreadMXBean getThreadMXBean() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    assumeTrue("allocations can't be measured on this JVM", threadMXBean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threadMXBean;
+    assumeTrue("allocations can't be measured on this JVM", allocations.isThreadAllocatedMemorySupported()
+        && allocations.isThreadAllocatedMemoryEnabled());
+    return allocations;
+  }
+
+}
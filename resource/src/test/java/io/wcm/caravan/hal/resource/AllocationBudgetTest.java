@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.internal.AssumptionViolatedException;
+
+public class AllocationBudgetTest {
+
+  @After
+  public void tearDown() {
+    System.clearProperty(AllocationBudget.FACTOR_PROPERTY);
+    System.clearProperty(AllocationBudget.BUDGET_PROPERTY_PREFIX + "array");
+  }
+
+  @Test
+  public void measure_shouldReportAllocatedBytes() {
+    long bytes = AllocationBudget.of("array", 0).measure(() -> new byte[1000]);
+    assertTrue("measured " + bytes, bytes >= 1000 && bytes < 1100);
+  }
+
+  @Test
+  public void check_shouldPassIfNothingIsAllocated() {
+    Integer value = 42;
+    assertEquals(0, AllocationBudget.of("constant", 0).check(() -> value));
+  }
+
+  @Test
+  public void check_shouldFailIfBudgetIsExceeded() {
+    try {
+      AllocationBudget.of("array", 100).iterations(100).check(() -> new byte[1000]);
+      fail("expected AssertionError");
+    }
+    catch (AssertionError ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().startsWith("array allocated "));
+    }
+  }
+
+  @Test
+  public void check_shouldNotIncludeSetup() {
+    long bytes = AllocationBudget.of("copy", 1100).check(() -> new byte[10000], array -> new byte[1000]);
+    assertTrue("measured " + bytes, bytes >= 1000 && bytes < 1100);
+  }
+
+  @Test(expected = AssumptionViolatedException.class)
+  public void check_shouldBeSkippedOnOtherJvm() {
+    AllocationBudget.of("array", 100).measuredOn(1).iterations(100).check(() -> new byte[1000]);
+  }
+
+  @Test(expected = AssertionError.class)
+  public void check_shouldNotBeSkippedIfBudgetIsOverridden() {
+    System.setProperty(AllocationBudget.BUDGET_PROPERTY_PREFIX + "array", "100");
+    AllocationBudget.of("array", 100).measuredOn(1).iterations(100).check(() -> new byte[1000]);
+  }
+
+  @Test
+  public void getMaxBytesPerOperation_shouldApplySystemProperties() {
+    assertEquals(100, AllocationBudget.of("array", 100).getMaxBytesPerOperation());
+
+    System.setProperty(AllocationBudget.FACTOR_PROPERTY, "1.5");
+    assertEquals(150, AllocationBudget.of("array", 100).getMaxBytesPerOperation());
+
+    System.setProperty(AllocationBudget.BUDGET_PROPERTY_PREFIX + "array", "2000");
+    assertEquals(3000, AllocationBudget.of("array", 100).getMaxBytesPerOperation());
+  }
+
+}
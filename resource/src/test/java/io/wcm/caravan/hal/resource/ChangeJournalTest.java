@@ -0,0 +1,199 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+import io.wcm.caravan.hal.resource.HalChange.Operation;
+
+public class ChangeJournalTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private HalResource hal;
+
+  @Before
+  public void setUp() {
+    hal = new HalResource(OBJECT_MAPPER.createObjectNode().put("title", "Product"), "/product")
+        .addLinks("item", new Link("/item/1"))
+        .addEmbedded("variant", new HalResource("/variant/1"));
+  }
+
+  private List<String> drain() {
+    return hal.drainChanges().stream()
+        .map(change -> change.getOperation() + " " + change.getPath())
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void drainChanges_shouldBeEmptyWithoutTracking() {
+    hal.setLink("next", new Link("/next"));
+    assertFalse(hal.isChangeTrackingEnabled());
+    assertTrue(hal.drainChanges().isEmpty());
+  }
+
+  @Test
+  public void drainChanges_shouldRecordLinkChanges() {
+    hal.startChangeTracking()
+        .setLink("next", new Link("/next"))
+        .setLink(new Link("/product/v2"))
+        .addLinks("item", new Link("/item/2"), new Link("/item/3"))
+        .removeLink("item", 0)
+        .removeLinks("next");
+
+    assertEquals(ImmutableList.of(
+        "ADD /_links/next",
+        "REPLACE /_links/self",
+        "ADD /_links/item/1",
+        "ADD /_links/item/2",
+        "REMOVE /_links/item/0",
+        "REMOVE /_links/next"), drain());
+  }
+
+  @Test
+  public void drainChanges_shouldRecordConversionOfSingleObjectToArray() {
+    hal.setLink("next", new Link("/next"))
+        .setEmbedded("main", new HalResource("/main"))
+        .startChangeTracking()
+        .addLinks("next", new Link("/next/2"))
+        .addEmbedded("main", new HalResource("/main/2"));
+
+    List<HalChange> changes = hal.drainChanges();
+    assertEquals(ImmutableList.of(
+        "REPLACE /_links/next",
+        "ADD /_links/next/1",
+        "REPLACE /_embedded/main",
+        "ADD /_embedded/main/1"), changes.stream()
+            .map(change -> change.getOperation() + " " + change.getPath())
+            .collect(Collectors.toList()));
+    assertTrue(changes.get(0).getOldValue().isObject());
+    assertEquals(1, changes.get(0).getNewValue().size());
+    assertEquals("/next", changes.get(0).getNewValue().get(0).get("href").asText());
+  }
+
+  @Test
+  public void drainChanges_shouldRecordOldAndNewValues() {
+    Link previous = hal.getLink();
+    Link replacement = new Link("/product/v2");
+    hal.startChangeTracking().setLink(replacement);
+
+    HalChange change = hal.drainChanges().get(0);
+    assertEquals(Operation.REPLACE, change.getOperation());
+    assertEquals(previous.getModel(), change.getOldValue());
+    assertEquals(replacement.getModel(), change.getNewValue());
+  }
+
+  @Test
+  public void drainChanges_shouldRecordStateChanges() {
+    hal.startChangeTracking()
+        .addState(OBJECT_MAPPER.createObjectNode().put("title", "Renamed").put("a/b", 1))
+        .removeState();
+
+    assertEquals(ImmutableList.of(
+        "REPLACE /title",
+        "ADD /a~1b",
+        "REMOVE /title",
+        "REMOVE /a~1b"), drain());
+  }
+
+  @Test
+  public void drainChanges_shouldRecordLinkSetters() {
+    hal.startChangeTracking();
+    hal.getLinks("item").get(0).setTitle("Item").setHref("/item/one");
+
+    List<HalChange> changes = hal.drainChanges();
+    assertEquals("ADD /_links/item/0/title", changes.get(0).getOperation() + " " + changes.get(0).getPath());
+    assertEquals("REPLACE /_links/item/0/href", changes.get(1).getOperation() + " " + changes.get(1).getPath());
+    assertEquals("/item/1", changes.get(1).getOldValue().asText());
+    assertEquals("/item/one", changes.get(1).getNewValue().asText());
+  }
+
+  @Test
+  public void drainChanges_shouldRecordChangesOfEmbeddedResources() {
+    hal.startChangeTracking();
+    HalResource variant = hal.getEmbeddedResource("variant");
+    variant.setLink("next", new Link("/variant/2"));
+    variant.getLink().setName("first");
+    hal.removeEmbedded();
+
+    assertEquals(ImmutableList.of(
+        "ADD /_embedded/variant/0/_links/next",
+        "ADD /_embedded/variant/0/_links/self/name",
+        "REMOVE /_embedded"), drain());
+  }
+
+  @Test
+  public void drainChanges_shouldRecordChangesOfAddedResources() {
+    HalResource added = new HalResource("/variant/2");
+    hal.startChangeTracking().addEmbedded("variant", added);
+    added.setLink("next", new Link("/variant/3"));
+
+    assertEquals(ImmutableList.of(
+        "ADD /_embedded/variant/1",
+        "ADD /_embedded/variant/1/_links/next"), drain());
+  }
+
+  @Test
+  public void drainChanges_shouldRecordPatches() {
+    hal.startChangeTracking().applyMergePatch(OBJECT_MAPPER.createObjectNode().put("title", "Renamed"));
+    HalChange change = hal.drainChanges().get(0);
+    assertEquals(Operation.PATCH, change.getOperation());
+    assertEquals("", change.getPath());
+  }
+
+  @Test
+  public void drainChanges_shouldClearJournal() {
+    hal.startChangeTracking().setLink("next", new Link("/next"));
+    assertEquals(1, hal.drainChanges().size());
+    assertTrue(hal.drainChanges().isEmpty());
+  }
+
+  @Test
+  public void resetChanges_shouldDiscardChanges() {
+    hal.startChangeTracking().setLink("next", new Link("/next")).resetChanges();
+    hal.removeLinks("next");
+    assertEquals(ImmutableList.of("REMOVE /_links/next"), drain());
+  }
+
+  @Test
+  public void stopChangeTracking_shouldStopRecording() {
+    hal.startChangeTracking();
+    Link link = hal.getLink();
+    hal.stopChangeTracking();
+    link.setTitle("title");
+    hal.setLink("next", new Link("/next"));
+
+    assertFalse(hal.isChangeTrackingEnabled());
+    assertTrue(hal.drainChanges().isEmpty());
+    assertTrue(hal.startChangeTracking().drainChanges().isEmpty());
+  }
+
+}
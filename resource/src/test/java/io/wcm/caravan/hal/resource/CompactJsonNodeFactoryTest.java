@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class CompactJsonNodeFactoryTest {
+
+  private static final ObjectMapper DEFAULT_MAPPER = new ObjectMapper();
+  private static final ObjectMapper COMPACT_MAPPER = new ObjectMapper().setNodeFactory(CompactJsonNodeFactory.INSTANCE);
+
+  private static ObjectNode createNode(int fieldCount) {
+    ObjectNode node = CompactJsonNodeFactory.INSTANCE.objectNode();
+    for (int i = 0; i < fieldCount; i++) {
+      node.put("field" + i, i);
+    }
+    return node;
+  }
+
+  private static List<String> fieldNames(JsonNode node) {
+    return Lists.newArrayList(node.fieldNames());
+  }
+
+  @Test
+  public void objectNode_shouldKeepInsertionOrder() {
+    for (int fieldCount : new int[] { 0, 3, CompactFieldMap.MAX_COMPACT_SIZE, CompactFieldMap.MAX_COMPACT_SIZE + 5 }) {
+      ObjectNode node = createNode(fieldCount);
+      assertEquals(fieldCount, node.size());
+      for (int i = 0; i < fieldCount; i++) {
+        assertEquals("field" + i, fieldNames(node).get(i));
+        assertEquals(i, node.get("field" + i).asInt());
+      }
+    }
+  }
+
+  @Test
+  public void objectNode_shouldReplaceExistingFields() {
+    ObjectNode node = createNode(3).put("field1", "replaced");
+    assertEquals(ImmutableList.of("field0", "field1", "field2"), fieldNames(node));
+    assertEquals("replaced", node.get("field1").asText());
+  }
+
+  @Test
+  public void objectNode_shouldRemoveFields() {
+    ObjectNode node = createNode(4);
+    node.remove("field1");
+    node.remove("unknown");
+    assertEquals(ImmutableList.of("field0", "field2", "field3"), fieldNames(node));
+    assertNull(node.get("field1"));
+
+    node.retain("field0", "field3");
+    assertEquals(ImmutableList.of("field0", "field3"), fieldNames(node));
+
+    node.removeAll();
+    assertEquals(0, node.size());
+    assertFalse(node.fields().hasNext());
+  }
+
+  @Test
+  public void objectNode_shouldBeEqualToDefaultNodes() throws Exception {
+    for (int fieldCount : new int[] { 0, 2, CompactFieldMap.MAX_COMPACT_SIZE + 1 }) {
+      ObjectNode compact = createNode(fieldCount);
+      ObjectNode standard = JsonNodeFactory.instance.objectNode();
+      standard.setAll(compact);
+      assertEquals(standard, compact);
+      assertEquals(compact, standard);
+      assertEquals(standard.hashCode(), compact.hashCode());
+      assertEquals(standard.toString(), compact.toString());
+    }
+  }
+
+  @Test
+  public void halResource_shouldUseCompactNodesByDefault() throws Exception {
+    HalResource hal = new HalResource("/resource").addLinks("item", new Link("/item"));
+    hal.getModel().set("state", DEFAULT_MAPPER.createObjectNode().put("a", 1));
+
+    assertTrue(isCompact(hal.getModel()));
+    assertTrue(isCompact(hal.getLink().getModel()));
+    assertTrue(isCompact(hal.getModel().get("_links")));
+    assertFalse(isCompact(hal.getModel().get("state")));
+  }
+
+  @Test
+  public void isCompactObject_shouldRecognizeNodesOfFactory() throws Exception {
+    ObjectNode node = createNode(3);
+
+    assertTrue(CompactJsonNodeFactory.isCompactObject(node));
+    assertTrue(CompactJsonNodeFactory.isCompactObject(COMPACT_MAPPER.readTree("{\"a\":1}")));
+    assertFalse(CompactJsonNodeFactory.isCompactObject(node.deepCopy()));
+    assertFalse(isCompact(node.deepCopy()));
+    assertFalse(CompactJsonNodeFactory.isCompactObject(DEFAULT_MAPPER.createObjectNode()));
+  }
+
+  private static boolean isCompact(JsonNode node) throws ReflectiveOperationException {
+    Field children = ObjectNode.class.getDeclaredField("_children");
+    children.setAccessible(true);
+    return children.get(node) instanceof CompactFieldMap;
+  }
+
+  @Test
+  public void parsing_shouldProduceEqualModels() throws Exception {
+    String json = createCorpus(DEFAULT_MAPPER).toString();
+    assertEquals(DEFAULT_MAPPER.readTree(json), COMPACT_MAPPER.readTree(json));
+    assertEquals(json, COMPACT_MAPPER.readTree(json).toString());
+  }
+
+  @Test
+  public void parsing_shouldAllocateLessMemory() throws Exception {
+    java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threadMXBean;
+    assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+    byte[] json = DEFAULT_MAPPER.writeValueAsBytes(createCorpus(DEFAULT_MAPPER));
+    long threadId = Thread.currentThread().getId();
+
+    // warm up both code paths, so that class loading is not measured
+    DEFAULT_MAPPER.readTree(json);
+    COMPACT_MAPPER.readTree(json);
+
+    long start = allocations.getThreadAllocatedBytes(threadId);
+    DEFAULT_MAPPER.readTree(json);
+    long defaultBytes = allocations.getThreadAllocatedBytes(threadId) - start;
+
+    start = allocations.getThreadAllocatedBytes(threadId);
+    COMPACT_MAPPER.readTree(json);
+    long compactBytes = allocations.getThreadAllocatedBytes(threadId) - start;
+
+    assertTrue("compact: " + compactBytes + " bytes, default: " + defaultBytes + " bytes", compactBytes < defaultBytes * 0.8);
+  }
+
+  /**
+   * @return a product list resource with 100 embedded products that have links, curies and a few state properties
+   */
+  private static ObjectNode createCorpus(ObjectMapper mapper) {
+    List<HalResource> products = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      ObjectNode state = mapper.createObjectNode()
+          .put("id", i)
+          .put("title", "Product " + i)
+          .put("price", i * 1.5)
+          .put("available", i % 2 == 0);
+      products.add(new HalResource(state, "/products/" + i)
+          .addLinks("ex:variant", Arrays.asList(new Link("/products/" + i + "/variants/a").setTitle("Variant A"),
+              new Link("/products/" + i + "/variants/b").setTitle("Variant B")))
+          .setLink("ex:category", new Link("/categories/" + i % 10).setName("category-" + i % 10))
+          .setLink("ex:search", new Link("/products/" + i + "/search{?q}").setTemplated(true)));
+    }
+    return new HalResource("/products")
+        .addLinks("curies", new Link("/docs/{rel}").setName("ex").setTemplated(true))
+        .addEmbedded("ex:product", products)
+        .getModel();
+  }
+
+}
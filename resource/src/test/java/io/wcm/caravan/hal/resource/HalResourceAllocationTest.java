@@ -0,0 +1,65 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Allocation budgets for the most frequently used read operations. The budgets are about 25% above the allocations
+ * measured on Java 17 (and are only checked there), and can be adjusted with the system properties described in
+ * {@link AllocationBudget}.
+ */
+public class HalResourceAllocationTest {
+
+  private HalResource hal;
+  private Link link;
+  private Link equalLink;
+
+  @Before
+  public void setUp() {
+    hal = new HalResource("/resource")
+        .addLinks("item", new Link("/item/1"), new Link("/item/2"))
+        .setEmbedded("child", new HalResource("/child"));
+    link = new Link("/item/1").setTitle("Item").setName("item-1");
+    equalLink = new Link("/item/1").setTitle("Item").setName("item-1");
+  }
+
+  @Test
+  public void getLink() {
+    AllocationBudget.of("HalResource#getLink", 1536).measuredOn(17).check(() -> hal.getLink());
+  }
+
+  @Test
+  public void getLinkForRelation() {
+    AllocationBudget.of("HalResource#getLink(relation)", 1280).measuredOn(17).check(() -> hal.getLink("item"));
+  }
+
+  @Test
+  public void linkEquals() {
+    AllocationBudget.of("Link#equals", 1664).measuredOn(17).check(() -> link.equals(equalLink));
+  }
+
+  @Test
+  public void linkHashCode() {
+    AllocationBudget.of("Link#hashCode", 864).measuredOn(17).check(() -> link.hashCode());
+  }
+
+}
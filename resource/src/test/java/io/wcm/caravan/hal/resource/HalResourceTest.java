@@ -21,12 +21,18 @@ package io.wcm.caravan.hal.resource;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -391,4 +397,191 @@ public class HalResourceTest {
     assertEquals("value3", hal.getModel().get("property3").asText(null));
   }
 
+  private static Supplier<Iterator<HalResource>> countingSupplier(AtomicInteger calls, String... hrefs) {
+    return () -> {
+      calls.incrementAndGet();
+      return Lists.newArrayList(hrefs).stream().map(HalResource::new).iterator();
+    };
+  }
+
+  @Test
+  public void addEmbeddedLazily_shouldNotCallSupplierBeforeSerialization() {
+    AtomicInteger calls = new AtomicInteger();
+    hal.addEmbeddedLazily("lazy", countingSupplier(calls, "/lazy1", "/lazy2"));
+    assertEquals(0, calls.get());
+    assertTrue(hal.hasEmbedded("lazy"));
+  }
+
+  @Test
+  public void addEmbeddedLazily_shouldSerializeSameJsonAsAddEmbedded() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    hal.addEmbeddedLazily("lazy", countingSupplier(calls, "/lazy1", "/lazy2"));
+    String json = OBJECT_MAPPER.writeValueAsString(hal.getModel());
+    assertEquals(1, calls.get());
+
+    HalResource eager = new HalResource(OBJECT_MAPPER.readValue(getClass().getResourceAsStream("/jackson_hal_resource_model.json"), ObjectNode.class))
+        .addEmbedded("lazy", new HalResource("/lazy1"), new HalResource("/lazy2"));
+    assertEquals(OBJECT_MAPPER.writeValueAsString(eager.getModel()), json);
+  }
+
+  @Test
+  public void addEmbeddedLazily_shouldMaterializeOnAccess() {
+    AtomicInteger calls = new AtomicInteger();
+    hal.addEmbeddedLazily("lazy", countingSupplier(calls, "/lazy1", "/lazy2"));
+    List<HalResource> embedded = hal.getEmbedded("lazy");
+    assertEquals(2, embedded.size());
+    assertEquals("/lazy2", embedded.get(1).getLink().getHref());
+    assertEquals(ArrayNode.class, model.at("/_embedded/lazy").getClass());
+
+    hal.getEmbedded("lazy");
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void addEmbeddedLazily_shouldAppendToExistingResources() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    hal.addEmbeddedLazily("one", countingSupplier(calls, "/lazy1"));
+    hal.addEmbeddedLazily("one", countingSupplier(calls, "/lazy2"));
+    JsonNode serialized = OBJECT_MAPPER.readTree(OBJECT_MAPPER.writeValueAsString(hal.getModel()));
+    JsonNode one = serialized.at("/_embedded/one");
+    assertEquals(3, one.size());
+    assertEquals("value", one.get(0).get("att").asText());
+    assertEquals("/lazy2", one.get(2).at("/_links/self/href").asText());
+  }
+
+  @Test
+  public void addEmbeddedLazily_shouldMaterializeBeforeAddingOrRemoving() {
+    AtomicInteger calls = new AtomicInteger();
+    hal.addEmbeddedLazily("lazy", countingSupplier(calls, "/lazy1", "/lazy2"));
+    hal.addEmbedded("lazy", new HalResource("/lazy3"));
+    hal.removeEmbedded("lazy", 0);
+    List<HalResource> embedded = hal.getEmbedded("lazy");
+    assertEquals(2, embedded.size());
+    assertEquals("/lazy2", embedded.get(0).getLink().getHref());
+    assertEquals("/lazy3", embedded.get(1).getLink().getHref());
+  }
+
+  @Test
+  public void addLinksLazily_shouldSerializeLinks() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    hal.addLinksLazily("lazy", () -> {
+      calls.incrementAndGet();
+      return Lists.newArrayList(new Link("/lazy1"), new Link("/lazy/{id}")).iterator();
+    });
+    assertEquals(0, calls.get());
+
+    JsonNode serialized = OBJECT_MAPPER.readTree(OBJECT_MAPPER.writeValueAsString(hal.getModel()));
+    assertEquals(1, calls.get());
+    assertEquals("/lazy1", serialized.at("/_links/lazy/0/href").asText());
+    assertTrue(serialized.at("/_links/lazy/1/templated").asBoolean());
+  }
+
+  @Test
+  public void addLinksLazily_shouldMaterializeForLinkRemoval() {
+    hal.addLinksLazily("lazy", () -> Lists.newArrayList(new Link("/lazy1"), new Link("/lazy2")).iterator());
+    Link link = hal.getLinks("lazy").get(0);
+    link.remove();
+    assertEquals("/lazy2", hal.getLink("lazy").getHref());
+  }
+
+  private static final Function<HalResource, Integer> NUMBER = resource -> resource.getModel().path("number").asInt();
+
+  @Test
+  public void indexEmbedded_shouldFindResourcesByKey() {
+    EmbeddedIndex<Integer> index = hal.indexEmbedded("multiple", NUMBER);
+    assertEquals("/multiple1", index.getFirst(42).getLink().getHref());
+    assertEquals("/multiple2", index.getFirst(2).getLink().getHref());
+    assertNull(index.getFirst(3));
+    assertTrue(index.get(3).isEmpty());
+    assertEquals(2, index.keySet().size());
+  }
+
+  @Test
+  public void indexEmbedded_shouldIndexSingleEmbeddedObject() {
+    EmbeddedIndex<String> index = hal.indexEmbedded("one", resource -> resource.getModel().path("att").asText());
+    assertEquals("/one", index.getFirst("value").getLink().getHref());
+  }
+
+  @Test
+  public void indexEmbedded_shouldReturnEmptyIndexForMissingRelation() {
+    assertEquals(0, hal.indexEmbedded("unknown", NUMBER).size());
+  }
+
+  @Test
+  public void indexEmbedded_shouldReturnSameIndexIfUnchanged() {
+    assertSame(hal.indexEmbedded("multiple", NUMBER), hal.indexEmbedded("multiple", NUMBER));
+  }
+
+  @Test
+  public void indexEmbedded_shouldKeepIndexIfOtherRelationChanges() {
+    EmbeddedIndex<Integer> index = hal.indexEmbedded("multiple", NUMBER);
+    hal.addEmbedded("one", new HalResource("/one2"));
+    assertSame(index, hal.indexEmbedded("multiple", NUMBER));
+  }
+
+  @Test
+  public void indexEmbedded_shouldRebuildIndexWhenRelationChanges() {
+    EmbeddedIndex<Integer> index = hal.indexEmbedded("multiple", NUMBER);
+
+    // adding and removing results in an array of the same size, but with different content
+    hal.addEmbedded("multiple", new HalResource(OBJECT_MAPPER.createObjectNode().put("number", 7)));
+    hal.removeEmbedded("multiple", 0);
+
+    EmbeddedIndex<Integer> newIndex = hal.indexEmbedded("multiple", NUMBER);
+    assertNotSame(index, newIndex);
+    assertFalse(newIndex.containsKey(42));
+    assertTrue(newIndex.containsKey(7));
+  }
+
+  @Test
+  public void indexEmbedded_shouldRebuildIndexWhenModelIsChangedDirectly() {
+    EmbeddedIndex<Integer> index = hal.indexEmbedded("multiple", NUMBER);
+    ((ArrayNode)model.at("/_embedded/multiple")).addObject().put("number", 8);
+    assertNotSame(index, hal.indexEmbedded("multiple", NUMBER));
+    assertTrue(hal.indexEmbedded("multiple", NUMBER).containsKey(8));
+  }
+
+  @Test
+  public void indexEmbedded_shouldOnlyKeepLastIndexForRelation() {
+    Function<HalResource, Integer> otherFunction = resource -> resource.getModel().path("number").asInt() + 1;
+
+    EmbeddedIndex<Integer> index = hal.indexEmbedded("multiple", NUMBER);
+    EmbeddedIndex<Integer> otherIndex = hal.indexEmbedded("multiple", otherFunction);
+
+    assertNotSame(index, otherIndex);
+    assertSame(otherIndex, hal.indexEmbedded("multiple", otherFunction));
+    assertNotSame(index, hal.indexEmbedded("multiple", NUMBER));
+  }
+
+  @Test
+  public void indexEmbedded_shouldTrackChangesOfIndexedResources() {
+    hal.startChangeTracking();
+    EmbeddedIndex<Integer> index = hal.indexEmbedded("multiple", NUMBER);
+
+    index.getFirst(42).setLink("related", new Link("/related"));
+
+    assertEquals(1, hal.drainChanges().size());
+  }
+
+  @Test
+  public void indexEmbedded_shouldIgnoreNullKeys() {
+    EmbeddedIndex<String> index = hal.indexEmbedded("multiple", resource -> null);
+    assertEquals(0, index.size());
+  }
+
+  @Test
+  public void indexEmbeddedMultiValued_shouldIndexResourceUnderAllKeys() {
+    hal.addEmbedded("tagged",
+        new HalResource(OBJECT_MAPPER.createObjectNode().put("tags", "a,b"), "/tagged1"),
+        new HalResource(OBJECT_MAPPER.createObjectNode().put("tags", "b,c"), "/tagged2"));
+
+    EmbeddedIndex<String> index = hal.indexEmbeddedMultiValued("tagged",
+        resource -> Lists.newArrayList(resource.getModel().path("tags").asText().split(",")));
+
+    assertEquals(1, index.get("a").size());
+    assertEquals(2, index.get("b").size());
+    assertEquals("/tagged2", index.get("b").get(1).getLink().getHref());
+    assertEquals(4, index.size());
+  }
+
 }
@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JsonPatchesTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private HalResource hal;
+
+  @Before
+  public void setUp() {
+    hal = new HalResource(OBJECT_MAPPER.createObjectNode().put("title", "Product").put("price", 10), "/product")
+        .addLinks("item", new Link("/item/1"), new Link("/item/2"))
+        .setEmbedded("variant", new HalResource("/variant/1"));
+  }
+
+  private static JsonNode json(String json) throws Exception {
+    return OBJECT_MAPPER.readTree(json.replace('\'', '"'));
+  }
+
+  private HalResource patch(String patch) throws Exception {
+    return hal.applyPatch(json(patch));
+  }
+
+  private void assertPatchFails(String patch) throws Exception {
+    String before = hal.getModel().toString();
+    try {
+      patch(patch);
+      fail("expected failure of " + patch);
+    }
+    catch (IllegalArgumentException ex) {
+      assertEquals(before, hal.getModel().toString());
+    }
+  }
+
+  @Test
+  public void applyPatch_shouldApplyAllOperations() throws Exception {
+    patch("[{'op':'replace','path':'/title','value':'Renamed'},"
+        + "{'op':'add','path':'/tags','value':['a']},"
+        + "{'op':'add','path':'/tags/0','value':'b'},"
+        + "{'op':'remove','path':'/price'},"
+        + "{'op':'copy','from':'/title','path':'/name'},"
+        + "{'op':'move','from':'/name','path':'/label'},"
+        + "{'op':'test','path':'/label','value':'Renamed'}]");
+
+    assertEquals(json("{'_links':{'self':{'href':'/product'},'item':[{'href':'/item/1'},{'href':'/item/2'}]},"
+        + "'title':'Renamed','_embedded':{'variant':{'_links':{'self':{'href':'/variant/1'}}}},"
+        + "'tags':['b','a'],'label':'Renamed'}"), hal.getModel());
+  }
+
+  @Test
+  public void applyPatch_shouldAppendLinks() throws Exception {
+    patch("[{'op':'add','path':'/_links/item/-','value':{'href':'/item/3'}}]");
+    assertEquals("/item/3", hal.getLinks("item").get(2).getHref());
+  }
+
+  @Test
+  public void applyPatch_shouldAddressSingleLinkWithIndex() throws Exception {
+    patch("[{'op':'test','path':'/_links/self/0/href','value':'/product'},"
+        + "{'op':'replace','path':'/_embedded/variant/0/_links/self/0/href','value':'/variant/2'}]");
+    assertEquals("/variant/2", hal.getEmbeddedResource("variant").getLink().getHref());
+  }
+
+  @Test
+  public void applyPatch_shouldConvertSingleLinkToArray() throws Exception {
+    patch("[{'op':'add','path':'/_links/self/-','value':{'href':'/alias'}}]");
+    assertTrue(hal.getModel().at("/_links/self").isArray());
+    assertEquals(2, hal.getLinks("self").size());
+  }
+
+  @Test
+  public void applyPatch_shouldKeepSingleLinkAsObject() throws Exception {
+    JsonNode self = hal.getModel().at("/_links/self").deepCopy();
+    patch("[{'op':'replace','path':'/_links/self/0','value':{'href':'/renamed'}},"
+        + "{'op':'replace','path':'/_links/self/0','value':" + self + "}]");
+    assertEquals(self, hal.getModel().at("/_links/self"));
+
+    patch("[{'op':'remove','path':'/_embedded/variant/0'}]");
+    assertFalse(hal.hasEmbedded("variant"));
+  }
+
+  @Test
+  public void applyPatch_shouldCreateMissingRelation() throws Exception {
+    patch("[{'op':'add','path':'/_links/related/-','value':{'href':'/related'}}]");
+    assertEquals("/related", hal.getLink("related").getHref());
+  }
+
+  @Test
+  public void applyPatch_shouldRemoveRelationWithLastLink() throws Exception {
+    patch("[{'op':'remove','path':'/_links/item/1'},{'op':'remove','path':'/_links/item/0'}]");
+    assertFalse(hal.hasLink("item"));
+  }
+
+  @Test
+  public void applyPatch_shouldPatchLazilyAddedLinks() throws Exception {
+    hal.addLinksLazily("lazy", () -> Collections.singletonList(new Link("/lazy")).iterator());
+    patch("[{'op':'replace','path':'/_links/lazy/0/href','value':'/patched'}]");
+    assertEquals("/patched", hal.getLink("lazy").getHref());
+  }
+
+  @Test
+  public void applyPatch_shouldUnescapePointers() throws Exception {
+    patch("[{'op':'add','path':'/a~1b~0c','value':1}]");
+    assertEquals(1, hal.getModel().get("a/b~c").asInt());
+  }
+
+  @Test
+  public void applyPatch_shouldInvalidateEmbeddedIndex() throws Exception {
+    assertEquals(1, hal.indexEmbedded("variant", variant -> variant.getLink().getHref()).size());
+    patch("[{'op':'replace','path':'/_embedded/variant/0/_links/self/href','value':'/variant/2'}]");
+    assertTrue(hal.indexEmbedded("variant", variant -> variant.getLink().getHref()).containsKey("/variant/2"));
+  }
+
+  @Test
+  public void applyPatch_shouldTestNumbersByValue() throws Exception {
+    patch("[{'op':'test','path':'/price','value':10.0},"
+        + "{'op':'test','path':'/price','value':1e1},"
+        + "{'op':'add','path':'/sizes','value':[1,{'value':2.50}]},"
+        + "{'op':'test','path':'/sizes','value':[1.0,{'value':2.5}]}]");
+
+    assertPatchFails("[{'op':'test','path':'/price','value':10.5}]");
+    assertPatchFails("[{'op':'test','path':'/price','value':'10'}]");
+  }
+
+  @Test
+  public void applyPatch_shouldBeAtomic() throws Exception {
+    assertPatchFails("[{'op':'replace','path':'/title','value':'Renamed'},"
+        + "{'op':'remove','path':'/_links/item/0'},"
+        + "{'op':'add','path':'/_links/self/-','value':{'href':'/alias'}},"
+        + "{'op':'remove','path':'/price'},"
+        + "{'op':'test','path':'/title','value':'Product'}]");
+  }
+
+  @Test
+  public void applyPatch_shouldFailForInvalidOperations() throws Exception {
+    assertPatchFails("[{'op':'remove','path':'/unknown'}]");
+    assertPatchFails("[{'op':'replace','path':'/unknown','value':1}]");
+    assertPatchFails("[{'op':'add','path':'/unknown/child','value':1}]");
+    assertPatchFails("[{'op':'add','path':'/_links/item/5','value':{}}]");
+    assertPatchFails("[{'op':'remove','path':'/_links/missing/0'}]");
+    assertPatchFails("[{'op':'move','from':'/_links','path':'/_links/item/0'}]");
+    assertPatchFails("[{'op':'remove','path':''}]");
+    assertPatchFails("[{'op':'add','path':'','value':[]}]");
+    assertPatchFails("[{'op':'add','path':'title','value':1}]");
+    assertPatchFails("[{'op':'add','path':'/title'}]");
+    assertPatchFails("[{'op':'unknown','path':'/title'}]");
+    assertPatchFails("[{'path':'/title'}]");
+    assertPatchFails("{'op':'remove','path':'/title'}");
+  }
+
+  @Test
+  public void applyMergePatch_shouldMergeState() throws Exception {
+    hal.applyMergePatch(json("{'title':'Renamed','price':null,'details':{'color':'red','size':null}}"));
+
+    assertEquals("Renamed", hal.getModel().get("title").asText());
+    assertFalse(hal.getModel().has("price"));
+    assertEquals(json("{'color':'red'}"), hal.getModel().get("details"));
+  }
+
+  @Test
+  public void applyMergePatch_shouldMergeIntoSingleItemArrays() throws Exception {
+    hal.removeLinks("item").addLinks("item", new Link("/item/1").setTitle("Item"));
+
+    hal.applyMergePatch(json("{'_links':{'item':{'title':'Renamed'},'self':{'name':'product'}}}"));
+
+    assertEquals("/item/1", hal.getLink("item").getHref());
+    assertEquals("Renamed", hal.getLink("item").getTitle());
+    assertEquals("product", hal.getLink().getName());
+  }
+
+  @Test
+  public void applyMergePatch_shouldReplaceArrays() throws Exception {
+    hal.applyMergePatch(json("{'_links':{'item':[{'href':'/item/3'}]}}"));
+    assertEquals(1, hal.getLinks("item").size());
+    assertEquals("/item/3", hal.getLink("item").getHref());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void applyMergePatch_shouldFailForNonObjectPatch() throws Exception {
+    hal.applyMergePatch(json("[]"));
+  }
+
+}
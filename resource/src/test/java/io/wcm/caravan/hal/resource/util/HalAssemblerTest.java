@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+import io.wcm.caravan.hal.resource.util.HalAssembler.PartialResultPolicy;
+
+public class HalAssemblerTest {
+
+  private ScheduledExecutorService scheduler;
+  private HalResource hal;
+  private HalAssembler assembler;
+
+  @Before
+  public void setUp() {
+    scheduler = Executors.newScheduledThreadPool(4);
+    hal = new HalResource("/");
+    assembler = new HalAssembler(hal);
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  private CompletionStage<HalResource> resourceAfter(String href, long millis) {
+    CompletableFuture<HalResource> future = new CompletableFuture<>();
+    scheduler.schedule(() -> future.complete(new HalResource(href)), millis, TimeUnit.MILLISECONDS);
+    return future;
+  }
+
+  private static List<String> embeddedHrefs(HalResource resource, String relation) {
+    return resource.getEmbedded(relation).stream().map(item -> item.getLink().getHref()).collect(Collectors.toList());
+  }
+
+  private HalResource assemble() throws Exception {
+    return assembler.assemble().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void assemble_shouldKeepDeclaredOrder() throws Exception {
+    assembler
+        .addEmbedded("item", resourceAfter("/1", 60))
+        .addEmbedded("item", resourceAfter("/2", 0))
+        .addEmbedded("item", resourceAfter("/3", 30))
+        .addLink("related", CompletableFuture.completedFuture(new Link("/related/1")))
+        .addLink("related", CompletableFuture.supplyAsync(() -> new Link("/related/2"), scheduler));
+
+    HalResource result = assemble();
+
+    assertEquals(Arrays.asList("/1", "/2", "/3"), embeddedHrefs(result, "item"));
+    assertEquals("/related/1", result.getLinks("related").get(0).getHref());
+    assertEquals("/related/2", result.getLinks("related").get(1).getHref());
+  }
+
+  @Test
+  public void assemble_shouldAddContributionsWhenPreviousOnesAreComplete() throws Exception {
+    CompletableFuture<HalResource> first = new CompletableFuture<>();
+    CompletableFuture<HalResource> second = new CompletableFuture<>();
+    CompletionStage<HalResource> result = assembler
+        .addEmbedded("item", first)
+        .addEmbedded("item", second)
+        .addEmbedded("other", CompletableFuture.completedFuture(new HalResource("/other")))
+        .assemble();
+
+    assertTrue(hal.hasEmbedded("other"));
+
+    second.complete(new HalResource("/2"));
+    assertTrue(hal.getEmbedded("item").isEmpty());
+    assertFalse(result.toCompletableFuture().isDone());
+
+    first.complete(new HalResource("/1"));
+    assertEquals(Arrays.asList("/1", "/2"), embeddedHrefs(hal, "item"));
+    assertTrue(result.toCompletableFuture().isDone());
+  }
+
+  @Test
+  public void assemble_shouldNotOrderLinksAfterEmbeddedResourcesWithSameRelation() throws Exception {
+    CompletableFuture<HalResource> embedded = new CompletableFuture<>();
+    CompletionStage<HalResource> result = assembler
+        .addEmbedded("item", embedded)
+        .addLink("item", CompletableFuture.completedFuture(new Link("/item/1")))
+        .assemble();
+
+    // the link must not wait for the pending embedded resource
+    assertEquals("/item/1", hal.getLink("item").getHref());
+    assertFalse(result.toCompletableFuture().isDone());
+
+    embedded.complete(new HalResource("/item/1"));
+    assertEquals(Arrays.asList("/item/1"), embeddedHrefs(hal, "item"));
+    assertTrue(result.toCompletableFuture().isDone());
+  }
+
+  @Test
+  public void assemble_shouldFailWithFirstFailureByDefault() throws Exception {
+    CompletableFuture<HalResource> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalArgumentException("upstream failed"));
+    assembler
+        .addEmbedded("item", resourceAfter("/1", 0))
+        .addEmbedded("item", failed);
+
+    try {
+      assemble();
+      fail("expected failure");
+    }
+    catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof IllegalArgumentException);
+    }
+  }
+
+  @Test
+  public void assemble_shouldOmitFailedContributions() throws Exception {
+    assembler
+        .setPartialResultPolicy(PartialResultPolicy.OMIT)
+        .addEmbedded("item", resourceAfter("/1", 10))
+        .addEmbedded("item", CompletableFuture.supplyAsync(() -> {
+          throw new IllegalArgumentException("upstream failed");
+        }, scheduler))
+        .addEmbedded("item", resourceAfter("/3", 0));
+
+    assertEquals(Arrays.asList("/1", "/3"), embeddedHrefs(assemble(), "item"));
+  }
+
+  @Test
+  public void assemble_shouldOmitContributionsThatTimeOut() throws Exception {
+    assembler
+        .setPartialResultPolicy(PartialResultPolicy.OMIT)
+        .setTimeout(100, TimeUnit.MILLISECONDS, scheduler)
+        .addEmbedded("item", resourceAfter("/1", 0))
+        .addEmbedded("item", new CompletableFuture<>())
+        .addEmbedded("item", resourceAfter("/3", 0));
+
+    assertEquals(Arrays.asList("/1", "/3"), embeddedHrefs(assemble(), "item"));
+  }
+
+  @Test
+  public void assemble_shouldFailOnTimeoutByDefault() throws Exception {
+    assembler
+        .setTimeout(50, TimeUnit.MILLISECONDS, scheduler)
+        .addLink("related", new CompletableFuture<>());
+
+    try {
+      assemble();
+      fail("expected failure");
+    }
+    catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof TimeoutException);
+    }
+  }
+
+  @Test
+  public void assemble_shouldCreateRelationsInDeclaredOrder() throws Exception {
+    assembler
+        .setPartialResultPolicy(PartialResultPolicy.OMIT)
+        .addEmbedded("slow", resourceAfter("/slow", 50))
+        .addEmbedded("failed", CompletableFuture.supplyAsync(() -> {
+          throw new IllegalArgumentException("upstream failed");
+        }, scheduler))
+        .addEmbedded("fast", resourceAfter("/fast", 0))
+        .addLink("related", resourceAfter("/related", 20).thenApply(HalResource::getLink));
+
+    HalResource result = assemble();
+
+    List<String> names = new ArrayList<>();
+    result.getModel().fieldNames().forEachRemaining(names::add);
+    assertEquals(Arrays.asList("_links", "_embedded"), names);
+    List<String> relations = new ArrayList<>();
+    result.getModel().path("_embedded").fieldNames().forEachRemaining(relations::add);
+    assertEquals(Arrays.asList("slow", "fast"), relations);
+  }
+
+  @Test
+  public void assemble_shouldCancelTimeoutWhenCompleted() throws Exception {
+    ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+    timer.setRemoveOnCancelPolicy(true);
+    try {
+      assembler
+          .setTimeout(1, TimeUnit.MINUTES, timer)
+          .addEmbedded("item", CompletableFuture.completedFuture(new HalResource("/1")));
+
+      assemble();
+
+      assertTrue(timer.getQueue().isEmpty());
+    }
+    finally {
+      timer.shutdownNow();
+    }
+  }
+
+  @Test
+  public void assemble_shouldCompleteImmediatelyWithoutContributions() throws Exception {
+    assertEquals(hal, assemble());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void addEmbedded_shouldFailAfterAssemble() {
+    assembler.assemble();
+    assembler.addEmbedded("item", new CompletableFuture<>());
+  }
+
+}
@@ -25,7 +25,11 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
@@ -130,4 +134,46 @@ public class HalCuriAugmenterTest {
     assertEquals("cust", curies.get(2).getName());
   }
 
+  @Test
+  public void augment_shouldNotOverrideAnyOfMultipleExistingCuries() {
+    hal.addLinks("curies", new Link("https://example.com/doc/other/{rel}").setName("other"),
+        new Link("https://example.com/doc/in/{rel}").setName("in"));
+    augmenter.augment(hal);
+    List<Link> curies = hal.getLinks("curies");
+    assertEquals(3, curies.size());
+    assertEquals("ex", curies.get(2).getName());
+  }
+
+  @Test
+  public void augment_shouldAddCopiesOfRegisteredLinks() {
+    augmenter.augment(hal);
+    hal.getLinks("curies").get(0).setHref("/modified");
+    assertEquals("https://example.com/doc/ex/{rel}", augmenter.get("ex").getHref());
+  }
+
+  @Test
+  public void augment_shouldSupportConcurrentRegistration() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        String name = "temp" + i;
+        futures.add(executor.submit(() -> augmenter.register(name, "/" + name).unregister(name)));
+        futures.add(executor.submit(() -> {
+          HalResource resource = new HalResource("/resource").setLink("ex:link", new Link("/link"));
+          augmenter.augment(resource);
+          assertEquals("ex", resource.getLink("curies").getName());
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+    assertTrue(augmenter.has("ex"));
+    assertFalse(augmenter.has("temp0"));
+  }
+
 }
@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+public class HalDependencyIndexTest {
+
+  private HalDependencyIndex index;
+
+  @Before
+  public void setUp() {
+    index = new HalDependencyIndex();
+  }
+
+  private static HalResource createAggregate(String href, String... itemHrefs) {
+    HalResource hal = new HalResource(href).setLink("related", new Link("/related"));
+    for (String itemHref : itemHrefs) {
+      hal.addEmbedded("item", new HalResource(itemHref)
+          .setEmbedded("detail", new HalResource(itemHref + "/detail")));
+    }
+    return hal;
+  }
+
+  @Test
+  public void getRootsContaining_shouldFindRootsByEmbeddedSelfHref() {
+    index.put("a", createAggregate("/a", "/item/1", "/item/2"));
+    index.put("b", createAggregate("/b", "/item/2", "/item/3"));
+
+    assertEquals(ImmutableList.of("a"), index.getRootsContaining("/item/1"));
+    assertEquals(ImmutableSet.of("a", "b"), new HashSet<>(index.getRootsContaining("/item/2")));
+    assertEquals(ImmutableList.of("b"), index.getRootsContaining("/item/3/detail"));
+    assertEquals(ImmutableList.of("a"), index.getRootsContaining("/a"));
+    assertTrue(index.getRootsContaining("/unknown").isEmpty());
+  }
+
+  @Test
+  public void getRootsContaining_shouldIgnoreLinksByDefault() {
+    index.put("a", createAggregate("/a", "/item/1"));
+    assertTrue(index.getRootsContaining("/related").isEmpty());
+  }
+
+  @Test
+  public void getRootsContaining_shouldIncludeLinksIfEnabled() {
+    index = new HalDependencyIndex(true);
+    index.put("a", createAggregate("/a", "/item/1").setLink("search", new Link("/search{?q}")));
+
+    assertEquals(ImmutableList.of("a"), index.getRootsContaining("/related"));
+    assertEquals(ImmutableList.of("a"), index.getRootsContaining("/item/1/detail"));
+    assertTrue(index.getRootsContaining("/search{?q}").isEmpty());
+  }
+
+  @Test
+  public void put_shouldReplacePreviousDependencies() {
+    index.put("a", createAggregate("/a", "/item/1", "/item/2"));
+    index.put("a", createAggregate("/a", "/item/2", "/item/3"));
+
+    assertTrue(index.getRootsContaining("/item/1").isEmpty());
+    assertEquals(ImmutableList.of("a"), index.getRootsContaining("/item/2"));
+    assertEquals(ImmutableList.of("a"), index.getRootsContaining("/item/3"));
+    assertEquals(1, index.getRootCount());
+  }
+
+  @Test
+  public void remove_shouldRemoveAllDependencies() {
+    index.put("a", createAggregate("/a", "/item/1"));
+    index.put("b", createAggregate("/b", "/item/1"));
+    index.remove("a");
+    index.remove("unknown");
+
+    assertFalse(index.contains("a"));
+    assertEquals(ImmutableList.of("b"), index.getRootsContaining("/item/1"));
+    assertEquals(3, index.getHrefCount());
+  }
+
+  @Test
+  public void getRootsContaining_shouldFindManyRootsWithSameHref() {
+    for (int i = 0; i < 20; i++) {
+      index.put("root" + i, createAggregate("/root" + i, "/shared"));
+      assertEquals(i + 1, index.getRootsContaining("/shared").size());
+    }
+    for (int i = 0; i < 20; i += 2) {
+      index.remove("root" + i);
+    }
+    assertEquals(10, index.getRootsContaining("/shared").size());
+    for (int i = 1; i < 20; i += 2) {
+      index.remove("root" + i);
+    }
+    assertTrue(index.getRootsContaining("/shared").isEmpty());
+    assertEquals(0, index.getHrefCount());
+  }
+
+  @Test
+  public void remove_shouldKeepOtherRootsWithSameHref() {
+    index.put("a", createAggregate("/a", "/item/1"));
+    index.put("b", createAggregate("/b", "/item/1"));
+    index.put("c", createAggregate("/c", "/item/1"));
+    index.remove("b");
+
+    assertEquals(ImmutableList.of("a", "c"), index.getRootsContaining("/item/1"));
+
+    index.remove("a");
+    assertEquals(ImmutableList.of("c"), index.getRootsContaining("/item/1"));
+  }
+
+  @Test
+  public void put_shouldSupportConcurrentUpdates() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        String key = "root" + i;
+        futures.add(executor.submit(() -> {
+          index.put(key, createAggregate("/" + key, "/shared", "/" + key + "/item"));
+          index.put(key, createAggregate("/" + key, "/shared"));
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    assertEquals(200, index.getRootCount());
+    assertEquals(200, index.getRootsContaining("/shared").size());
+    assertTrue(index.getRootsContaining("/root1/item").isEmpty());
+  }
+
+}
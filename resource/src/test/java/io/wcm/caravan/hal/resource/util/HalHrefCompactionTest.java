@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+public class HalHrefCompactionTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private static final String BASE = "https://api.example.com/v1/";
+
+  private HalResource hal;
+
+  @Before
+  public void setUp() {
+    hal = new HalResource(BASE + "products")
+        .addLinks("item", new Link(BASE + "products/1"), new Link(BASE + "products/2"))
+        .setLink("search", new Link(BASE + "products{?q,page}"))
+        .setLink("docs", new Link("https://docs.example.com/products"))
+        .addEmbedded("item", new HalResource(BASE + "products/1")
+            .setLink("variant", new Link(BASE + "products/1/variants/{variantId}")));
+  }
+
+  private JsonNode compact(HalResource resource) throws IOException {
+    return OBJECT_MAPPER.readTree(HalHrefCompaction.toCompactedJson(resource));
+  }
+
+  private static void assertValidUriTemplate(String template) {
+    assertTrue(template + " has unbalanced expressions", template.replaceAll("\\{[^{}]+\\}", "").matches("[^{}]*"));
+  }
+
+  @Test
+  public void findCommonBase_shouldReturnLongestCommonPathPrefix() {
+    assertEquals(BASE, HalHrefCompaction.findCommonBase(hal));
+  }
+
+  @Test
+  public void findCommonBase_shouldUseMostFrequentOrigin() {
+    hal.addLinks("related", new Link("https://other.example.com/a/b"));
+    assertEquals(BASE, HalHrefCompaction.findCommonBase(hal));
+  }
+
+  @Test
+  public void findCommonBase_shouldReturnNullForSingleAbsoluteHref() {
+    assertNull(HalHrefCompaction.findCommonBase(new HalResource(BASE + "products")));
+  }
+
+  @Test
+  public void findCommonBase_shouldNotIncludeTemplateExpressions() {
+    HalResource resource = new HalResource("https://api.example.com/{tenant}/products")
+        .setLink("search", new Link("https://api.example.com/{tenant}/search"));
+    assertEquals("https://api.example.com/", HalHrefCompaction.findCommonBase(resource));
+  }
+
+  @Test
+  public void toCompactedJson_shouldAddBaseLink() throws Exception {
+    JsonNode json = compact(hal);
+    assertEquals(BASE, json.at("/_links/base/href").asText());
+  }
+
+  @Test
+  public void toCompactedJson_shouldWriteRelativeHrefs() throws Exception {
+    JsonNode json = compact(hal);
+    assertEquals("products", json.at("/_links/self/href").asText());
+    assertEquals("products/2", json.at("/_links/item/1/href").asText());
+    assertEquals("products/1", json.at("/_embedded/item/0/_links/self/href").asText());
+  }
+
+  @Test
+  public void toCompactedJson_shouldKeepHrefsWithOtherOrigin() throws Exception {
+    JsonNode json = compact(hal);
+    assertEquals("https://docs.example.com/products", json.at("/_links/docs/href").asText());
+  }
+
+  @Test
+  public void toCompactedJson_shouldKeepTemplatesValid() throws Exception {
+    JsonNode json = compact(hal);
+
+    String search = json.at("/_links/search/href").asText();
+    assertEquals("products{?q,page}", search);
+    assertValidUriTemplate(search);
+    assertTrue(json.at("/_links/search/templated").asBoolean());
+
+    String variant = json.at("/_embedded/item/0/_links/variant/href").asText();
+    assertEquals("products/1/variants/{variantId}", variant);
+    assertValidUriTemplate(variant);
+  }
+
+  @Test
+  public void toCompactedJson_shouldNotModifyResource() throws Exception {
+    String original = hal.getModel().toString();
+    compact(hal);
+    assertEquals(original, hal.getModel().toString());
+    assertFalse(hal.hasLink(HalHrefCompaction.LINK_RELATION_BASE));
+  }
+
+  @Test
+  public void toCompactedJson_shouldNotCompactWithoutCommonBase() throws Exception {
+    HalResource resource = new HalResource("/relative");
+    assertEquals(resource.getModel(), compact(resource));
+  }
+
+  @Test
+  public void toCompactedJson_shouldRewriteLazilyAddedLinks() throws Exception {
+    hal.addLinksLazily("lazy", () -> new HalResource().addLinks("lazy", new Link(BASE + "lazy")).getLinks("lazy").iterator());
+    JsonNode json = compact(hal);
+    assertEquals("lazy", json.at("/_links/lazy/0/href").asText());
+  }
+
+  @Test
+  public void relativize_shouldPrefixSegmentsThatLookLikeAScheme() {
+    assertEquals("./urn:isbn:123", HalHrefCompaction.relativize(BASE, BASE + "urn:isbn:123"));
+    assertEquals("./", HalHrefCompaction.relativize(BASE, BASE));
+  }
+
+  @Test
+  public void resolve_shouldRestoreOriginalHrefs() throws Exception {
+    String original = hal.getModel().toString();
+
+    HalResource resolved = HalHrefCompaction.resolve(new HalResource((ObjectNode)compact(hal)));
+
+    assertFalse(resolved.hasLink(HalHrefCompaction.LINK_RELATION_BASE));
+    assertEquals(OBJECT_MAPPER.readTree(original), resolved.getModel());
+    assertEquals(BASE + "products{?q,page}", resolved.getLink("search").getHref());
+    assertEquals(BASE + "products/1/variants/{variantId}", resolved.getEmbeddedResource("item").getLink("variant").getHref());
+  }
+
+  @Test
+  public void resolve_shouldIgnoreResourcesWithoutBaseLink() {
+    HalResource resource = new HalResource("products");
+    HalHrefCompaction.resolve(resource);
+    assertEquals("products", resource.getLink().getHref());
+  }
+
+  @Test
+  public void resolveHref_shouldResolveRelativeReferences() {
+    assertEquals(BASE + "products", HalHrefCompaction.resolveHref(BASE, "products"));
+    assertEquals(BASE, HalHrefCompaction.resolveHref(BASE, "./"));
+    assertEquals("https://api.example.com/v2", HalHrefCompaction.resolveHref(BASE, "../v2"));
+    assertEquals("https://api.example.com/root", HalHrefCompaction.resolveHref(BASE, "/root"));
+    assertEquals(BASE + "urn:isbn:123", HalHrefCompaction.resolveHref(BASE, "./urn:isbn:123"));
+    assertEquals("https://other.example.com/", HalHrefCompaction.resolveHref(BASE, "https://other.example.com/"));
+  }
+
+  @Test
+  public void resolveHref_shouldKeepTemplateExpressions() {
+    assertEquals(BASE + "{id}", HalHrefCompaction.resolveHref(BASE, "{id}"));
+    assertEquals(BASE + "items{?page}", HalHrefCompaction.resolveHref(BASE, "items{?page}"));
+    assertEquals("https://api.example.com/items/{id}{?page}", HalHrefCompaction.resolveHref(BASE, "../items/{id}{?page}"));
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.wcm.caravan.hal.resource.HalChange;
+import io.wcm.caravan.hal.resource.HalChange.Operation;
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+public class HalHrefRewriterTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private HalHrefRewriter rewriter;
+  private HalResource hal;
+
+  @Before
+  public void setUp() {
+    rewriter = new HalHrefRewriter()
+        .addPrefixRule("http://backend:8080/", "https://api.example.com/")
+        .addPatternRule("/v(\\d+)/", "/api-v$1/");
+
+    hal = new HalResource("http://backend:8080/products")
+        .addLinks("item", new Link("http://backend:8080/products/1"), new Link("/v1/products/2"))
+        .setLink("search", new Link("http://backend:8080/products{?q}"))
+        .setLink("other", new Link("https://other.example.com/"))
+        .addEmbedded("item", new HalResource("http://backend:8080/products/1")
+            .setLink("variant", new Link("http://backend:8080/products/1/{variantId}")));
+  }
+
+  @Test
+  public void rewrite_shouldApplyFirstMatchingRule() {
+    assertEquals("https://api.example.com/v1/x", rewriter.rewrite("http://backend:8080/v1/x"));
+    assertEquals("/api-v2/x", rewriter.rewrite("/v2/x"));
+    assertEquals("/unchanged", rewriter.rewrite("/unchanged"));
+  }
+
+  @Test
+  public void rewrite_shouldOnlyRewriteLiteralPartOfTemplates() {
+    assertEquals("https://api.example.com/{id}", rewriter.rewrite("http://backend:8080/{id}"));
+    assertEquals("/x/{/v1/}", rewriter.rewrite("/x/{/v1/}"));
+    assertEquals("http://backend:{port}/", rewriter.rewrite("http://backend:{port}/"));
+  }
+
+  @Test
+  public void rewriteAll_shouldRewriteLinksAndEmbeddedResources() {
+    assertEquals(6, rewriter.rewriteAll(hal));
+
+    assertEquals("https://api.example.com/products", hal.getLink().getHref());
+    assertEquals("/api-v1/products/2", hal.getLinks("item").get(1).getHref());
+    assertEquals("https://api.example.com/products{?q}", hal.getLink("search").getHref());
+    assertEquals("https://other.example.com/", hal.getLink("other").getHref());
+
+    HalResource embedded = hal.getEmbeddedResource("item");
+    assertEquals("https://api.example.com/products/1", embedded.getLink().getHref());
+    assertEquals("https://api.example.com/products/1/{variantId}", embedded.getLink("variant").getHref());
+  }
+
+  @Test
+  public void rewriteAll_shouldRecordChangedHrefs() {
+    hal.startChangeTracking();
+    rewriter.rewriteAll(hal);
+
+    List<String> paths = hal.drainChanges().stream()
+        .filter(change -> change.getOperation() == Operation.REPLACE)
+        .map(HalChange::getPath)
+        .distinct()
+        .collect(Collectors.toList());
+
+    assertTrue(paths.contains("/_links/item/1/href"));
+    assertTrue(paths.contains("/_embedded/item/0/_links/variant/href"));
+    assertFalse(paths.contains("/_links/other/href"));
+  }
+
+  @Test
+  public void write_shouldProduceSameJsonAsRewriteAll() throws Exception {
+    String original = hal.getModel().toString();
+
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(writer)) {
+      rewriter.write(hal, generator);
+    }
+    JsonNode streamed = OBJECT_MAPPER.readTree(writer.toString());
+
+    assertEquals(original, hal.getModel().toString());
+    rewriter.rewriteAll(hal);
+    assertEquals(hal.getModel(), streamed);
+  }
+
+  @Test
+  public void write_shouldRewriteLazilyAddedLinks() throws Exception {
+    hal.addLinksLazily("lazy", () -> new HalResource().addLinks("lazy", new Link("/v3/lazy")).getLinks("lazy").iterator());
+
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(writer)) {
+      rewriter.write(hal, generator);
+    }
+
+    assertEquals("/api-v3/lazy", OBJECT_MAPPER.readTree(writer.toString()).at("/_links/lazy/0/href").asText());
+  }
+
+  @Test
+  public void write_shouldNotRewriteStateProperties() throws Exception {
+    hal.getModel().put("href", "http://backend:8080/state");
+
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(writer)) {
+      rewriter.write(hal, generator);
+    }
+
+    assertEquals("http://backend:8080/state", OBJECT_MAPPER.readTree(writer.toString()).get("href").asText());
+  }
+
+}
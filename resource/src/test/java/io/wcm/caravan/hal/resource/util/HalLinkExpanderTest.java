@@ -0,0 +1,228 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+public class HalLinkExpanderTest {
+
+  private final Map<String, HalResource> resources = new HashMap<>();
+  private final Map<String, AtomicInteger> resolveCounts = new HashMap<>();
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+
+  private ExecutorService executor;
+  private HalResource root;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(8);
+
+    for (int i = 0; i < 6; i++) {
+      register(new HalResource("/item/" + i)
+          .addLinks("variant", new Link("/variant/" + i + "a"), new Link("/variant/shared"))
+          .setLink("search", new Link("/variant{?q}").setTemplated(true)));
+      register(new HalResource("/variant/" + i + "a"));
+    }
+    register(new HalResource("/variant/shared"));
+
+    root = new HalResource("/");
+    for (int i = 0; i < 6; i++) {
+      root.addLinks("item", new Link("/item/" + i));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private void register(HalResource resource) {
+    resources.put(resource.getLink().getHref(), resource);
+    resolveCounts.put(resource.getLink().getHref(), new AtomicInteger());
+  }
+
+  private CompletionStage<HalResource> resolve(Link link) {
+    return CompletableFuture.supplyAsync(() -> {
+      int current = active.incrementAndGet();
+      maxActive.accumulateAndGet(current, Math::max);
+      try {
+        Thread.sleep(5);
+        resolveCounts.get(link.getHref()).incrementAndGet();
+        HalResource resource = resources.get(link.getHref());
+        if (resource == null) {
+          throw new IllegalArgumentException("Not found: " + link.getHref());
+        }
+        return resource;
+      }
+      catch (InterruptedException ex) {
+        throw new RuntimeException(ex);
+      }
+      finally {
+        active.decrementAndGet();
+      }
+    }, executor);
+  }
+
+  private HalResource expand(int maxConcurrency, String... relationPaths) throws Exception {
+    return new HalLinkExpander(this::resolve, maxConcurrency)
+        .expand(root, Arrays.asList(relationPaths))
+        .toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+
+  private static List<String> selfHrefs(List<HalResource> embedded) {
+    return embedded.stream().map(resource -> resource.getLink().getHref()).collect(Collectors.toList());
+  }
+
+  @Test
+  public void expand_shouldEmbedLinkedResourcesInLinkOrder() throws Exception {
+    HalResource expanded = expand(4, "item");
+
+    assertEquals(Arrays.asList("/item/0", "/item/1", "/item/2", "/item/3", "/item/4", "/item/5"),
+        selfHrefs(expanded.getEmbedded("item")));
+    assertEquals(6, expanded.getLinks("item").size());
+    assertFalse(expanded.getEmbeddedResource("item").hasEmbedded("variant"));
+  }
+
+  @Test
+  public void expand_shouldExpandNestedRelations() throws Exception {
+    HalResource expanded = expand(4, "item.variant");
+
+    for (HalResource item : expanded.getEmbedded("item")) {
+      String id = item.getLink().getHref().substring("/item/".length());
+      assertEquals(Arrays.asList("/variant/" + id + "a", "/variant/shared"), selfHrefs(item.getEmbedded("variant")));
+    }
+  }
+
+  @Test
+  public void expand_shouldResolveEachHrefOnlyOnce() throws Exception {
+    expand(4, "item.variant");
+
+    assertEquals(1, resolveCounts.get("/variant/shared").get());
+    assertEquals(1, resolveCounts.get("/item/0").get());
+  }
+
+  @Test
+  public void expand_shouldNotModifyResolvedResources() throws Exception {
+    expand(4, "item.variant");
+
+    assertFalse(resources.get("/item/0").hasEmbedded("variant"));
+  }
+
+  @Test
+  public void expand_shouldRespectConcurrencyLimit() throws Exception {
+    expand(2, "item.variant");
+
+    assertTrue("max active was " + maxActive.get(), maxActive.get() <= 2);
+  }
+
+  @Test
+  public void expand_shouldExpandNestedRelationsOfExistingEmbeddedResources() throws Exception {
+    root.addEmbedded("item", new HalResource("/item/embedded").addLinks("variant", new Link("/variant/shared")));
+
+    HalResource expanded = expand(4, "item.variant");
+
+    assertEquals(1, expanded.getEmbedded("item").size());
+    assertEquals(Arrays.asList("/variant/shared"), selfHrefs(expanded.getEmbeddedResource("item").getEmbedded("variant")));
+    assertEquals(0, resolveCounts.get("/item/0").get());
+  }
+
+  @Test
+  public void expand_shouldIgnoreTemplatedLinksAndMissingRelations() throws Exception {
+    HalResource expanded = expand(4, "item.search", "unknown");
+
+    assertFalse(expanded.getEmbeddedResource("item").hasEmbedded("search"));
+    assertFalse(expanded.hasEmbedded("unknown"));
+  }
+
+  @Test
+  public void expand_shouldFailIfResolverFails() throws Exception {
+    root.addLinks("item", new Link("/missing"));
+    resolveCounts.put("/missing", new AtomicInteger());
+
+    try {
+      expand(4, "item");
+      fail("expected failure");
+    }
+    catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof IllegalArgumentException);
+    }
+  }
+
+  @Test
+  public void expand_shouldDoNothingWithoutRelationPaths() throws Exception {
+    String before = root.getModel().toString();
+    expand(4);
+    assertEquals(before, root.getModel().toString());
+    assertEquals(Collections.emptySet(), HalLinkExpander.parseRelationPaths(null));
+  }
+
+  @Test
+  public void expand_shouldEmbedAllRelationsInRequestedOrder() throws Exception {
+    root.addLinks("author", new Link("/variant/shared"));
+    root.addEmbedded("existing", new HalResource("/item/embedded").addLinks("variant", new Link("/variant/0a")));
+
+    HalResource expanded = expand(4, "item.variant", "existing.variant", "author");
+
+    List<String> relations = new ArrayList<>();
+    expanded.getModel().path("_embedded").fieldNames().forEachRemaining(relations::add);
+    assertEquals(Arrays.asList("existing", "item", "author"), relations);
+    assertEquals(Arrays.asList("/variant/0a"), selfHrefs(expanded.getEmbeddedResource("existing").getEmbedded("variant")));
+    assertEquals(6, expanded.getEmbedded("item").size());
+  }
+
+  @Test
+  public void parseRelationPaths_shouldSplitAndTrim() {
+    assertEquals(ImmutableSet.of("item.variant", "author"), HalLinkExpander.parseRelationPaths("item.variant, author,,item.variant"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_shouldRejectInvalidConcurrency() {
+    new HalLinkExpander(this::resolve, 0);
+  }
+
+}
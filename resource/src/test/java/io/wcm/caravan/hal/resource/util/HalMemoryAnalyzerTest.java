@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+import io.wcm.caravan.hal.resource.util.HalMemoryReport.Usage;
+
+public class HalMemoryAnalyzerTest {
+
+  // counts each node as one byte, so that the bytes are equal to the node count
+  private final HalMemoryAnalyzer analyzer = new HalMemoryAnalyzer(node -> 1);
+
+  private static HalResource createResource(int items) {
+    HalResource hal = new HalResource("/root");
+    hal.getModel().put("title", "Root").put("visible", true).putObject("meta").put("a", 1).put("b", true);
+    for (int i = 0; i < items; i++) {
+      hal.addLinks("item", new Link("/item/" + i).setTitle("Item " + i));
+      hal.addEmbedded("item", new HalResource("/item/" + i).setLink("next", new Link("/item/" + (i + 1))));
+    }
+    return hal;
+  }
+
+  @Test
+  public void analyze_shouldReportLinkRelations() {
+    HalMemoryReport report = analyzer.analyze(createResource(2));
+
+    assertEquals(ImmutableList.of("self", "item"), ImmutableList.copyOf(report.getLinkRelations().keySet()));
+    // array + 2 * (object + href + title)
+    Usage items = report.getLinkRelation("item");
+    assertEquals(7, items.getNodeCount());
+    assertEquals(7, items.getBytes());
+    assertEquals(3, items.getMaxDepth());
+    // a single link object with a href
+    assertEquals(2, report.getLinkRelation("self").getNodeCount());
+  }
+
+  @Test
+  public void analyze_shouldReportEmbeddedRelationsWithTheirContent() {
+    HalMemoryReport report = analyzer.analyze(createResource(3));
+
+    // array + 3 * (resource + _links + self + href + next + href)
+    Usage items = report.getEmbeddedRelation("item");
+    assertEquals(19, items.getNodeCount());
+    assertEquals(5, items.getMaxDepth());
+  }
+
+  @Test
+  public void analyze_shouldReportStateFields() {
+    HalMemoryReport report = analyzer.analyze(createResource(1));
+
+    assertEquals(ImmutableList.of("title", "visible", "meta"), ImmutableList.copyOf(report.getStateFields().keySet()));
+    assertEquals(1, report.getStateField("title").getNodeCount());
+    assertEquals(3, report.getStateField("meta").getNodeCount());
+    assertEquals(2, report.getStateField("meta").getMaxDepth());
+    assertEquals(0, report.getStateField("missing").getNodeCount());
+  }
+
+  @Test
+  public void analyze_shouldIncludeContainersInTotal() {
+    HalMemoryReport report = analyzer.analyze(createResource(2));
+
+    long parts = report.getLinkRelations().values().stream().mapToLong(Usage::getBytes).sum()
+        + report.getEmbeddedRelations().values().stream().mapToLong(Usage::getBytes).sum()
+        + report.getStateFields().values().stream().mapToLong(Usage::getBytes).sum();
+    // the resource, _links and _embedded objects
+    assertEquals(parts + 3, report.getTotal().getBytes());
+    assertEquals(report.getTotal().getBytes(), report.getTotal().getNodeCount());
+    assertEquals(7, report.getTotal().getMaxDepth());
+  }
+
+  @Test
+  public void analyze_shouldCountSharedObjectsOnce() {
+    HalResource hal = new HalResource("/root");
+    ObjectNode shared = hal.getModel().putObject("first").put("a", "b");
+    hal.getModel().set("second", shared);
+
+    HalMemoryReport report = analyzer.analyze(hal);
+
+    assertEquals(2, report.getStateField("first").getNodeCount());
+    assertEquals(0, report.getStateField("second").getNodeCount());
+  }
+
+  @Test
+  public void analyze_shouldCountEachFieldNameInstanceOnce() {
+    NodeSizeModel namesOnly = new NodeSizeModel() {
+
+      @Override
+      public long getShallowSize(JsonNode node) {
+        return 0;
+      }
+
+      @Override
+      public long getFieldNameSize(String name) {
+        return 1;
+      }
+    };
+    HalResource hal = new HalResource("/root");
+    hal.getModel().putObject("a").put("x", 1);
+    hal.getModel().putObject("b").put("x", 2);
+
+    // _links, self, href, a, b and x
+    assertEquals(6, new HalMemoryAnalyzer(namesOnly).analyze(hal).getTotal().getBytes());
+
+    hal.getModel().putObject("c").put(new String("x"), 3);
+    assertEquals(8, new HalMemoryAnalyzer(namesOnly).analyze(hal).getTotal().getBytes());
+  }
+
+  @Test
+  public void getShallowSize_shouldEstimateCompactObjectsSmaller() {
+    ObjectNode compact = new Link("/item").setTitle("Item").getModel();
+    ObjectNode copy = compact.deepCopy();
+
+    assertTrue(NodeSizeModel.DEFAULT.getShallowSize(compact) < NodeSizeModel.DEFAULT.getShallowSize(copy));
+  }
+
+  @Test
+  public void analyze_shouldEstimateSizesWithDefaultModel() {
+    HalMemoryReport small = new HalMemoryAnalyzer().analyze(createResource(10));
+    HalMemoryReport large = new HalMemoryAnalyzer().analyze(createResource(100));
+
+    assertTrue(small.toString(), small.getEmbeddedRelation("item").getBytes() > 10 * 100);
+    assertTrue(large.toString(), large.getEmbeddedRelation("item").getBytes() > 9 * small.getEmbeddedRelation("item").getBytes());
+    assertEquals(0, small.getStateField("visible").getBytes());
+    assertTrue(small.toString().contains("_embedded/item: "));
+  }
+
+}
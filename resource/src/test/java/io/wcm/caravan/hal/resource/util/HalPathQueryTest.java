@@ -0,0 +1,170 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+public class HalPathQueryTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private HalResource hal;
+
+  @Before
+  public void setUp() {
+    hal = new HalResource(OBJECT_MAPPER.createObjectNode().put("title", "root"), "/")
+        .setEmbedded("section", new HalResource("/section")
+            .setLink("ex:related", new Link("/related")))
+        .addEmbedded("item",
+            createItem("1", variant("1-a", true), variant("1-b", false)),
+            createItem("2", variant("2-a", true)));
+  }
+
+  private static HalResource createItem(String id, HalResource... variants) {
+    return new HalResource(OBJECT_MAPPER.createObjectNode().put("id", id), "/item/" + id)
+        .addEmbedded("variant", variants);
+  }
+
+  private static HalResource variant(String sku, boolean available) {
+    HalResource variant = new HalResource(OBJECT_MAPPER.createObjectNode().put("sku", sku).put("available", available));
+    variant.getModel().putObject("price").put("amount", 10);
+    return variant;
+  }
+
+  private List<String> select(String query) {
+    return HalPathQuery.compile(query).selectText(hal);
+  }
+
+  @Test
+  public void select_shouldFollowEmbeddedRelationsWithWildcard() {
+    assertEquals(Arrays.asList("1-a", "1-b", "2-a"), select("item[*]/variant[*].sku"));
+  }
+
+  @Test
+  public void select_shouldTreatMissingSelectorAsWildcard() {
+    assertEquals(Arrays.asList("1-a", "1-b", "2-a"), select("item/variant.sku"));
+  }
+
+  @Test
+  public void select_shouldSelectByIndex() {
+    assertEquals(Arrays.asList("1-a", "2-a"), select("item/variant[0].sku"));
+    assertEquals(Arrays.asList("1-b"), select("item[0]/variant[1].sku"));
+    assertEquals(Arrays.asList(), select("item[5].id"));
+  }
+
+  @Test
+  public void select_shouldApplyIndexZeroToSingleObject() {
+    assertEquals(Arrays.asList("/section"), select("section[0]/self.href"));
+  }
+
+  @Test
+  public void select_shouldFilterByPredicate() {
+    assertEquals(Arrays.asList("2-a"), select("item[id='2']/variant.sku"));
+    assertEquals(Arrays.asList("1-a", "2-a"), select("item/variant[available=true].sku"));
+    assertEquals(Arrays.asList("1-b"), select("item/variant[@.available == false].sku"));
+    assertEquals(Arrays.asList("1"), select("item[id!='2'].id"));
+    assertEquals(Arrays.asList("1-a", "1-b", "2-a"), select("item/variant[price.amount=10].sku"));
+  }
+
+  @Test
+  public void select_shouldCompareNumbersByValue() {
+    hal.getEmbedded("item").get(0).getModel().put("number", 5L);
+    hal.getEmbedded("item").get(1).getModel().put("number", 5.0);
+
+    assertEquals(Arrays.asList("1", "2"), select("item[@.number == 5].id"));
+    assertEquals(Arrays.asList("1", "2"), select("item[number=5.0].id"));
+    assertEquals(Arrays.asList(), select("item[number!=5].id"));
+  }
+
+  @Test
+  public void select_shouldFallBackToLinks() {
+    assertEquals(Arrays.asList("/section"), select("section/self.href"));
+    assertEquals(Arrays.asList("/related"), select("section/ex:related.href"));
+    assertEquals(Arrays.asList("/item/1", "/item/2"), select("item/self.href"));
+  }
+
+  @Test
+  public void select_shouldReadRootProperties() {
+    assertEquals(Arrays.asList("root"), select(".title"));
+  }
+
+  @Test
+  public void select_shouldReadNestedProperties() {
+    assertEquals(Arrays.asList("10", "10", "10"), select("item/variant.price.amount"));
+  }
+
+  @Test
+  public void select_shouldReturnNodesFromModel() {
+    JsonNode variant = HalPathQuery.compile("item[1]/variant").selectFirst(hal);
+    assertSame(hal.getEmbedded("item").get(1).getEmbedded("variant").get(0).getModel(), variant);
+  }
+
+  @Test
+  public void select_shouldReturnEmptyListForMissingRelation() {
+    assertTrue(select("unknown/variant.sku").isEmpty());
+    assertNull(HalPathQuery.compile("unknown").selectFirst(hal));
+  }
+
+  @Test
+  public void compile_shouldKeepQueryString() {
+    assertEquals("item[*]/variant.sku", HalPathQuery.compile("item[*]/variant.sku").toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void compile_shouldFailForEmptyQuery() {
+    HalPathQuery.compile("");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void compile_shouldFailForUnclosedSelector() {
+    HalPathQuery.compile("item[0");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void compile_shouldFailForMissingRelation() {
+    HalPathQuery.compile("item//variant");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void compile_shouldFailForInvalidLiteral() {
+    HalPathQuery.compile("item[id=foo]");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void compile_shouldFailForUnterminatedString() {
+    HalPathQuery.compile("item[id='foo]");
+  }
+
+}
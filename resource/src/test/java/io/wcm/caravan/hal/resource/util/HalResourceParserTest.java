@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * wcm.io
+ * %%
+ * Copyright (C) 2014 wcm.io
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.wcm.caravan.hal.resource.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+
+import io.wcm.caravan.hal.resource.HalResource;
+import io.wcm.caravan.hal.resource.Link;
+
+public class HalResourceParserTest {
+
+  private static byte[] toBytes(HalResource hal) {
+    return hal.getModel().toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static HalResource createResource(int links, int embedded) {
+    HalResource hal = new HalResource("/root");
+    hal.getModel().put("title", "Root").put("count", 3).put("large", Long.MAX_VALUE).put("ratio", 0.5).putNull("none");
+    for (int i = 0; i < links; i++) {
+      hal.addLinks("item", new Link("/item/" + i).setTitle("Item " + i));
+    }
+    for (int i = 0; i < embedded; i++) {
+      hal.addEmbedded("variant", new HalResource("/variant/" + i).setLink("next", new Link("/variant/" + (i + 1))));
+    }
+    return hal;
+  }
+
+  private static void assertLimitExceeded(HalResourceParser parser, byte[] json, String expectedMessage) throws IOException {
+    try {
+      parser.parse(json);
+      fail("expected " + HalLimitExceededException.class.getSimpleName());
+    }
+    catch (HalLimitExceededException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().contains(expectedMessage));
+    }
+  }
+
+  @Test
+  public void parse_shouldBuildSameModelAsObjectMapper() throws IOException {
+    HalResource hal = createResource(3, 2);
+
+    HalResource parsed = new HalResourceParser().parse(toBytes(hal));
+
+    assertEquals(hal.getModel(), parsed.getModel());
+    assertEquals("/variant/1", parsed.getEmbedded("variant").get(1).getLink().getHref());
+  }
+
+  @Test
+  public void parse_shouldAcceptDocumentsWithinLimits() throws IOException {
+    byte[] json = toBytes(createResource(5, 5));
+    HalResourceParser parser = new HalResourceParser()
+        .setMaxBytes(json.length)
+        .setMaxLinksPerRelation(5)
+        .setMaxEmbeddedResources(5)
+        .setMaxDepth(6);
+
+    assertEquals(5, parser.parse(json).getLinks("item").size());
+  }
+
+  @Test
+  public void parse_shouldFailIfMaxBytesExceeded() throws IOException {
+    byte[] json = toBytes(createResource(5, 5));
+    assertLimitExceeded(new HalResourceParser().setMaxBytes(json.length - 1), json, "bytes");
+  }
+
+  @Test
+  public void parse_shouldStopReadingStreamAtMaxBytes() throws IOException {
+    // an endless stream of whitespace after the opening brace
+    InputStream endless = new SequenceInputStream(new ByteArrayInputStream("{\"a\":".getBytes(StandardCharsets.UTF_8)), new InputStream() {
+
+      @Override
+      public int read() {
+        return ' ';
+      }
+    });
+    try {
+      new HalResourceParser().setMaxBytes(1024).parse(endless);
+      fail("expected " + HalLimitExceededException.class.getSimpleName());
+    }
+    catch (HalLimitExceededException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().contains("larger than 1024 bytes"));
+    }
+  }
+
+  @Test
+  public void parse_shouldReadStreamWithUnlimitedMaxBytes() throws IOException {
+    byte[] json = toBytes(createResource(5, 5));
+
+    HalResource parsed = new HalResourceParser().setMaxBytes(Long.MAX_VALUE).parse(new ByteArrayInputStream(json));
+
+    assertEquals(5, parsed.getLinks("item").size());
+  }
+
+  @Test
+  public void parse_shouldFailIfMaxDepthExceeded() throws IOException {
+    String json = String.join("", Collections.nCopies(50, "{\"a\":")) + "1" + String.join("", Collections.nCopies(50, "}"));
+    assertLimitExceeded(new HalResourceParser().setMaxDepth(10), json.getBytes(StandardCharsets.UTF_8), "deeper than 10 levels");
+  }
+
+  @Test
+  public void parse_shouldAcceptMaxDepthLimit() throws IOException {
+    int depth = HalResourceParser.MAX_DEPTH_LIMIT;
+    String json = String.join("", Collections.nCopies(depth, "{\"a\":")) + "1" + String.join("", Collections.nCopies(depth, "}"));
+
+    HalResource parsed = new HalResourceParser().setMaxDepth(depth).parse(json.getBytes(StandardCharsets.UTF_8));
+
+    assertTrue(parsed.getModel().has("a"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setMaxDepth_shouldRejectValuesAboveLimit() {
+    new HalResourceParser().setMaxDepth(HalResourceParser.MAX_DEPTH_LIMIT + 1);
+  }
+
+  @Test
+  public void parse_shouldFailIfMaxLinksPerRelationExceeded() throws IOException {
+    assertLimitExceeded(new HalResourceParser().setMaxLinksPerRelation(4), toBytes(createResource(5, 0)), "links with relation 'item'");
+  }
+
+  @Test
+  public void parse_shouldCountLinksOfEmbeddedResources() throws IOException {
+    HalResource hal = new HalResource("/root").addEmbedded("child", createResource(3, 0));
+    assertLimitExceeded(new HalResourceParser().setMaxLinksPerRelation(2), toBytes(hal), "relation 'item'");
+  }
+
+  @Test
+  public void parse_shouldFailIfMaxEmbeddedResourcesExceeded() throws IOException {
+    assertLimitExceeded(new HalResourceParser().setMaxEmbeddedResources(4), toBytes(createResource(0, 5)), "embedded resources");
+  }
+
+  @Test
+  public void parse_shouldCountNestedEmbeddedResources() throws IOException {
+    HalResource hal = new HalResource("/root").setEmbedded("single", createResource(0, 2));
+    assertLimitExceeded(new HalResourceParser().setMaxEmbeddedResources(2), toBytes(hal), "embedded resources");
+  }
+
+  @Test
+  public void parse_shouldNotCountPropertiesNamedLikeRelations() throws IOException {
+    String json = "{\"state\":{\"_embedded\":{\"item\":[{},{},{}]},\"_links\":{\"item\":[{},{},{}]}}}";
+    HalResource hal = new HalResourceParser().setMaxEmbeddedResources(1).setMaxLinksPerRelation(1).parse(json.getBytes(StandardCharsets.UTF_8));
+    assertEquals(3, hal.getModel().path("state").path("_embedded").path("item").size());
+  }
+
+  @Test(expected = JsonParseException.class)
+  public void parse_shouldFailForArrays() throws IOException {
+    new HalResourceParser().parse("[]".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test(expected = JsonParseException.class)
+  public void parse_shouldFailForTrailingContent() throws IOException {
+    new HalResourceParser().parse("{}{}".getBytes(StandardCharsets.UTF_8));
+  }
+
+}